@@ -0,0 +1,76 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.benchmark;
+
+import com.ibm.decisions.uml.generator.BomGenerator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The BOMs used by the benchmarks: the BOMs of the tests, given by their name, and
+ * generated BOMs, given as "generated-" followed by their number of classes.
+ */
+public class BenchmarkBOMs {
+  static final String TEST_FOLDER = "com/ibm/decisions/uml/classdiagram/";
+  static final String GENERATED = "generated-";
+
+  public static String load(String name) throws IOException {
+    if (name.startsWith(GENERATED))
+      return generate(Integer.parseInt(name.substring(GENERATED.length())));
+    try (InputStream in = BenchmarkBOMs.class.getClassLoader().getResourceAsStream(TEST_FOLDER + name + ".bom")) {
+      if (in == null)
+        throw new FileNotFoundException(name);
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = in.read(buffer)) > 0)
+        content.write(buffer, 0, count);
+      return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Generates a BOM with the default shape of {@link BomGenerator}, operators and
+   * DSI supertypes included, always with the same seed.
+   */
+  static String generate(int classes) {
+    return new BomGenerator().seed(42).classes(classes).operators(2).dsi(20, 20).generate();
+  }
+
+  /**
+   * Output stream counting the bytes written to it, then discarding them.
+   */
+  static class CountingOutputStream extends OutputStream {
+    long count;
+
+    @Override
+    public void write(int b) {
+      ++count;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+}
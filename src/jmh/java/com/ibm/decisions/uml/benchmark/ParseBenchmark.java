@@ -0,0 +1,64 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.benchmark;
+
+import com.ibm.decisions.uml.Command;
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import ilog.rules.bom.IlrObjectModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the reading of a BOM text by the ODM serializer, as done by {@link Command},
+ * and by the native {@link BomParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+  @Param({"loanvalidation", "dsi-creditcard", "operator", "wrappers",
+      "generated-1000", "generated-10000", "generated-100000"})
+  public String bom;
+
+  String text;
+
+  @Setup
+  public void setUp() throws Exception {
+    text = BenchmarkBOMs.load(bom);
+  }
+
+  @Benchmark
+  public IlrObjectModel parse() throws Exception {
+    return Command.readBOM(new StringReader(text));
+  }
+
+  @Benchmark
+  public DiagramModel parseNative() throws Exception {
+    return new BomParser().read(new StringReader(text));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.benchmark;
+
+import com.ibm.decisions.uml.MappedReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the readers of a BOM file: the buffered reader used before, and the
+ * {@link MappedReader}. Each benchmark reads all the characters of a generated BOM,
+ * written once in a temporary file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+  @Param({"generated-10000", "generated-100000"})
+  public String bom;
+
+  Path file;
+
+  @Setup
+  public void setUp() throws Exception {
+    file = Files.createTempFile("benchmark", ".bom");
+    Files.write(file, BenchmarkBOMs.load(bom).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(file);
+  }
+
+  @Benchmark
+  public long bufferedReader() throws IOException {
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return readAll(reader);
+    }
+  }
+
+  @Benchmark
+  public long mappedReader() throws IOException {
+    try (Reader reader = new MappedReader(FileChannel.open(file, StandardOpenOption.READ), 0)) {
+      return readAll(reader);
+    }
+  }
+
+  static long readAll(Reader reader) throws IOException {
+    // the size of the buffer of the BOM parser
+    char[] buffer = new char[1 << 16];
+    long count = 0;
+    int read;
+    while ((read = reader.read(buffer, 0, buffer.length)) != -1)
+      count += read;
+    return count;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.benchmark;
+
+import com.ibm.decisions.uml.Command;
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.ObjectModelConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the writing of the class diagram of an already read BOM. The diagram is
+ * UTF-8 encoded into a stream that only counts its bytes, reported as the
+ * outputBytes counter. Run with "-prof gc" to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+  @Param({"loanvalidation", "dsi-creditcard", "operator", "wrappers",
+      "generated-1000", "generated-10000", "generated-100000"})
+  public String bom;
+
+  DiagramModel model;
+
+  @Setup
+  public void setUp() throws Exception {
+    model = ObjectModelConverter.convert(Command.readBOM(new StringReader(BenchmarkBOMs.load(bom))));
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Output {
+    public long outputBytes;
+  }
+
+  @Benchmark
+  public void render(Output output) {
+    BenchmarkBOMs.CountingOutputStream stream = new BenchmarkBOMs.CountingOutputStream();
+    PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8)));
+    new ClassDiagramWriter(writer).writeModel(model);
+    writer.flush();
+    output.outputBytes += stream.count;
+  }
+}
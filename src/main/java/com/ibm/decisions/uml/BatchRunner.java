@@ -0,0 +1,480 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.classdiagram.DiagramFormats;
+import com.ibm.decisions.uml.classdiagram.DiagramRules;
+import com.ibm.decisions.uml.classdiagram.FragmentCache;
+import com.ibm.decisions.uml.classdiagram.PlantUmlSink;
+import com.ibm.decisions.uml.metrics.DiagramMetrics;
+import com.ibm.decisions.uml.model.BomSyntaxException;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.ModelReader;
+import com.ibm.decisions.uml.model.OdmModelReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts a set of BOM files into class diagrams, one output file per BOM.
+ * Each BOM is read into its own object model and written on a bounded pool of
+ * worker threads. A BOM that cannot be converted, even on an Error, is reported in
+ * the summary and does not stop the other conversions.
+ */
+public class BatchRunner implements Closeable {
+  public static final String BOM_EXTENSION = ".bom";
+  public static final String DIAGRAM_EXTENSION = ".puml";
+  static final String[] ARCHIVE_EXTENSIONS = {".zip", ".jar"};
+
+  final Path baseDir;
+  final List<Path> inputs;
+  final Path outputDir;
+  final int threads;
+  // the file system of the archive of the BOMs, or null
+  FileSystem archive;
+  // the BOMs of the batch, including those created after the runner, or null for only the inputs
+  PathMatcher matcher;
+  Manifest manifest;
+  String optionsHash;
+  boolean streaming;
+  ModelReader modelReader = new OdmModelReader();
+  SnapshotCache snapshotCache;
+  DiagramRenderer renderer;
+  String format = DiagramFormats.PLANTUML;
+  DiagramMetrics metrics;
+  FragmentCache fragmentCache;
+  long layoutBudget;
+  DiagramRules rules = DiagramRules.createDefault();
+
+  public BatchRunner(Path baseDir, List<Path> inputs, Path outputDir, int threads) {
+    this.baseDir = baseDir;
+    this.inputs = inputs;
+    this.outputDir = outputDir;
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Creates a runner for a directory tree (all the .bom files below it) or for
+   * a glob pattern such as <code>models/**&#47;*.bom</code>.
+   */
+  public static BatchRunner create(String dirOrGlob, String outputDir, int threads) throws IOException {
+    if (isArchive(dirOrGlob))
+      return createForArchive(Paths.get(dirOrGlob), outputDir, threads);
+    Path baseDir;
+    PathMatcher matcher;
+    if (!isGlob(dirOrGlob) && Files.isDirectory(Paths.get(dirOrGlob))) {
+      baseDir = Paths.get(dirOrGlob);
+      matcher = p -> p.getFileName().toString().endsWith(BOM_EXTENSION);
+    } else {
+      baseDir = getGlobBase(dirOrGlob);
+      matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalizeGlob(dirOrGlob));
+    }
+    List<Path> inputs;
+    try (Stream<Path> files = Files.walk(baseDir)) {
+      inputs = files.filter(Files::isRegularFile)
+          .filter(p -> matcher.matches(p.normalize()))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    BatchRunner runner = new BatchRunner(baseDir, inputs, outputDir == null ? null : Paths.get(outputDir), threads);
+    runner.matcher = matcher;
+    return runner;
+  }
+
+  /**
+   * Creates a runner for the .bom entries of a zip or jar archive, such as a zipped
+   * Rule Designer project or a RuleApp. The entries are read from the archive through a
+   * single open file, without being extracted, until the runner is closed. The diagrams
+   * are written below the output directory, by default a directory named after the
+   * archive next to it.
+   */
+  public static BatchRunner createForArchive(Path archive, String outputDir, int threads) throws IOException {
+    FileSystem fileSystem = FileSystems.newFileSystem(archive, (ClassLoader) null);
+    try {
+      Path root = fileSystem.getPath("/");
+      PathMatcher matcher = p -> p.getFileName() != null && p.getFileName().toString().endsWith(BOM_EXTENSION);
+      List<Path> inputs;
+      try (Stream<Path> files = Files.walk(root)) {
+        inputs = files.filter(Files::isRegularFile)
+            .filter(matcher::matches)
+            .sorted()
+            .collect(Collectors.toList());
+      }
+      Path output;
+      if (outputDir != null) {
+        output = Paths.get(outputDir);
+      } else {
+        String name = archive.getFileName().toString();
+        output = archive.toAbsolutePath().resolveSibling(name.substring(0, name.lastIndexOf('.')));
+      }
+      BatchRunner runner = new BatchRunner(root, inputs, output, threads);
+      runner.matcher = matcher;
+      runner.archive = fileSystem;
+      return runner;
+    } catch (IOException | RuntimeException e) {
+      fileSystem.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Tells whether a file is a zip or jar archive, rather than a BOM, a directory or a
+   * glob pattern.
+   */
+  public static boolean isArchive(String file) {
+    String name = file.toLowerCase(Locale.ROOT);
+    for (String extension : ARCHIVE_EXTENSIONS) {
+      if (name.endsWith(extension))
+        return !isGlob(file) && Files.isRegularFile(Paths.get(file));
+    }
+    return false;
+  }
+
+  public boolean isArchive() {
+    return archive != null;
+  }
+
+  /**
+   * Closes the archive of the BOMs, if any.
+   */
+  @Override
+  public void close() throws IOException {
+    if (archive != null)
+      archive.close();
+  }
+
+  static boolean isGlob(String pattern) {
+    for (char c : "*?[{".toCharArray()) {
+      if (pattern.indexOf(c) >= 0)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the directory made of the leading segments of a glob pattern that
+   * do not contain any wildcard.
+   */
+  static Path getGlobBase(String glob) {
+    Path base = null;
+    for (String segment : glob.split("[/\\\\]")) {
+      if (isGlob(segment))
+        break;
+      base = base == null ? Paths.get(segment.isEmpty() ? "/" : segment) : base.resolve(segment);
+    }
+    return base == null ? Paths.get(".") : base;
+  }
+
+  /**
+   * Returns a glob pattern with a normalized base, such as <code>models/*.bom</code> for
+   * <code>./models/*.bom</code>, to match the normalized paths.
+   */
+  static String normalizeGlob(String glob) {
+    String[] segments = glob.split("[/\\\\]", -1);
+    int wildcard = 0;
+    while (wildcard < segments.length && !isGlob(segments[wildcard]))
+      ++wildcard;
+    StringBuilder pattern = new StringBuilder(getGlobBase(glob).normalize().toString().replace('\\', '/'));
+    for (int i = wildcard; i < segments.length; ++i) {
+      if (pattern.length() > 0 && pattern.charAt(pattern.length() - 1) != '/')
+        pattern.append('/');
+      pattern.append(segments[i]);
+    }
+    return pattern.toString();
+  }
+
+  /**
+   * Uses a manifest to skip the BOMs whose diagram is up to date. The manifest is
+   * updated with the diagrams written by {@link #run()}, but not saved.
+   */
+  public void setManifest(Manifest manifest, String optionsHash) {
+    this.manifest = manifest;
+    this.optionsHash = optionsHash;
+  }
+
+  public void setModelReader(ModelReader modelReader) {
+    this.modelReader = modelReader;
+  }
+
+  /**
+   * Reads the BOMs through their snapshots instead of the model reader.
+   */
+  public void setSnapshotCache(SnapshotCache snapshotCache) {
+    this.snapshotCache = snapshotCache;
+  }
+
+  /**
+   * Renders images with the given renderer instead of writing the diagram texts.
+   */
+  public void setRenderer(DiagramRenderer renderer) {
+    this.renderer = renderer;
+  }
+
+  /**
+   * Writes the diagram texts in the given format of {@link DiagramFormats}, PlantUML by default.
+   */
+  public void setFormat(String format) {
+    this.format = format;
+  }
+
+  /**
+   * Records the metrics of the conversions in the given metrics.
+   */
+  public void setMetrics(DiagramMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Shares the text of the classes found in several BOMs through the given cache.
+   */
+  public void setFragmentCache(FragmentCache fragmentCache) {
+    this.fragmentCache = fragmentCache;
+  }
+
+  /**
+   * Simplifies the diagrams whose estimated layout cost exceeds the budget, see
+   * {@link ClassDiagramWriter#setLayoutBudget(long)}.
+   */
+  public void setLayoutBudget(long layoutBudget) {
+    this.layoutBudget = layoutBudget;
+  }
+
+  /**
+   * Writes the classes accepted by the given rules, see {@link ClassDiagramWriter#setRules(DiagramRules)}.
+   */
+  public void setRules(DiagramRules rules) {
+    this.rules = rules;
+  }
+
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  public List<Path> getInputs() {
+    return inputs;
+  }
+
+  public Path getBaseDir() {
+    return baseDir;
+  }
+
+  /**
+   * Tells whether a file is one of the BOMs of the batch: one of its inputs, or a file
+   * matching its directory or glob pattern.
+   */
+  public boolean accepts(Path file) {
+    return matcher != null ? matcher.matches(file.normalize()) : inputs.contains(file);
+  }
+
+  /**
+   * Returns the diagram file of a BOM: the BOM path relative to the base
+   * directory resolved against the output directory, or the BOM path itself
+   * when there is no output directory, with the extension of the format.
+   */
+  public Path getOutput(Path input) {
+    Path target = outputDir == null ? input : outputDir.resolve(baseDir.relativize(input).toString());
+    String name = target.getFileName().toString();
+    if (name.endsWith(BOM_EXTENSION))
+      name = name.substring(0, name.length() - BOM_EXTENSION.length());
+    return target.resolveSibling(name + (renderer == null ? DiagramFormats.getExtension(format) : renderer.getExtension()));
+  }
+
+  public List<Result> run() throws InterruptedException {
+    return run(inputs);
+  }
+
+  /**
+   * Converts the given BOMs, in the order of the list.
+   */
+  public List<Result> run(List<Path> inputs) throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Result>> futures = new ArrayList<>(inputs.size());
+      for (Path input : inputs) {
+        futures.add(executor.submit(() -> convert(input)));
+      }
+      List<Result> results = new ArrayList<>(futures.size());
+      for (int i = 0; i < futures.size(); ++i) {
+        try {
+          results.add(futures.get(i).get());
+        } catch (ExecutionException e) {
+          // convert reports its own failures, this is only reached when the output cannot be computed
+          Result result = new Result(inputs.get(i), null);
+          result.errors = new String[]{e.getCause().toString()};
+          results.add(result);
+        }
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  Result convert(Path input) {
+    Result result = new Result(input, getOutput(input));
+    long start = System.nanoTime();
+    try {
+      if (manifest != null && manifest.isUpToDate(input, result.output, optionsHash)) {
+        result.upToDate = true;
+      } else {
+        byte[] content = manifest != null || snapshotCache != null ? Files.readAllBytes(input) : null;
+        if (manifest != null && manifest.isUpToDate(input, content, result.output, optionsHash)) {
+          result.upToDate = true;
+        } else {
+          writeDiagram(readModel(input, content), result.output);
+          if (metrics != null)
+            metrics.addBom();
+          if (manifest != null)
+            manifest.update(input, content, result.output, optionsHash);
+        }
+      }
+    } catch (BomSyntaxException e) {
+      result.errors = e.getErrorMessages();
+    } catch (IOException | RuntimeException | Error e) {
+      // an Error, such as a stack overflow on a deep model, only fails this BOM
+      result.errors = new String[]{e.toString()};
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.errors = new String[]{e.toString()};
+    }
+    result.nanos = System.nanoTime() - start;
+    return result;
+  }
+
+  /**
+   * Reads the model of a BOM, from its content when it has already been read.
+   */
+  DiagramModel readModel(Path input, byte[] content) throws IOException, BomSyntaxException {
+    if (snapshotCache != null)
+      return snapshotCache.read(input, content);
+    ModelReader modelReader = metrics == null ? this.modelReader : metrics.instrument(this.modelReader);
+    if (content != null)
+      return modelReader.read(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+    try (Reader reader = MappedReader.open(input)) {
+      return modelReader.read(reader);
+    }
+  }
+
+  void writeDiagram(DiagramModel bom, Path output) throws IOException, InterruptedException {
+    Path parent = output.toAbsolutePath().getParent();
+    if (parent != null)
+      Files.createDirectories(parent);
+    if (renderer != null) {
+      try (OutputStream out = new BufferedOutputStream(countBytes(Files.newOutputStream(output)))) {
+        renderer.render(writer -> writeDiagram(bom, writer), out);
+      }
+      return;
+    }
+    try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(countBytes(Files.newOutputStream(output)), StandardCharsets.UTF_8)))) {
+      writeDiagram(bom, writer);
+    }
+  }
+
+  private void writeDiagram(DiagramModel bom, PrintWriter writer) {
+    ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(renderer == null ? DiagramFormats.createSink(format, writer) : new PlantUmlSink(writer));
+    classDiagramWriter.setStreaming(streaming);
+    classDiagramWriter.setMetrics(metrics);
+    classDiagramWriter.setFragmentCache(fragmentCache);
+    classDiagramWriter.setLayoutBudget(layoutBudget);
+    classDiagramWriter.setRules(rules);
+    classDiagramWriter.writeModel(bom);
+  }
+
+  private OutputStream countBytes(OutputStream out) {
+    return metrics == null ? out : metrics.countBytes(out);
+  }
+
+  /**
+   * Prints one line per BOM with its conversion time, followed by the error
+   * messages of the failed ones, and a total line.
+   */
+  public void printSummary(List<Result> results, long elapsedNanos, PrintStream out) {
+    int failed = 0;
+    int upToDate = 0;
+    for (Result result : results) {
+      if (result.upToDate) {
+        ++upToDate;
+        out.printf("%8d ms  %s is up to date%n", result.getMillis(), result.input);
+      } else if (result.isSuccess()) {
+        out.printf("%8d ms  %s -> %s%n", result.getMillis(), result.input, result.output);
+      } else {
+        ++failed;
+        out.printf("%8d ms  %s FAILED%n", result.getMillis(), result.input);
+        for (String error : result.errors)
+          out.println("            " + error);
+      }
+    }
+    out.printf("%d BOM(s) converted, %d up to date, %d failed in %d ms using %d thread(s)%n",
+        results.size() - failed - upToDate, upToDate, failed, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), threads);
+    if (fragmentCache != null)
+      out.printf("%d class(es) reused from the fragment cache, %d written%n", fragmentCache.getHits(), fragmentCache.getMisses());
+  }
+
+  /**
+   * The outcome of the conversion of one BOM.
+   */
+  public static class Result {
+    final Path input;
+    final Path output;
+    long nanos;
+    boolean upToDate;
+    String[] errors;
+
+    Result(Path input, Path output) {
+      this.input = input;
+      this.output = output;
+    }
+
+    public Path getInput() {
+      return input;
+    }
+
+    public Path getOutput() {
+      return output;
+    }
+
+    public long getMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Tells whether the diagram was already up to date, and so was not written.
+     */
+    public boolean isUpToDate() {
+      return upToDate;
+    }
+
+    public boolean isSuccess() {
+      return errors == null;
+    }
+
+    public String[] getErrors() {
+      return errors;
+    }
+  }
+}
@@ -3,30 +3,142 @@ package com.ibm.decisions.uml;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
-import ilog.rules.bom.IlrObjectModel;
-import ilog.rules.bom.dynamic.IlrDynamicObjectModel;
+import com.ibm.decisions.uml.classdiagram.CompositeSink;
+import com.ibm.decisions.uml.classdiagram.DiagramFormats;
+import com.ibm.decisions.uml.classdiagram.DiagramRules;
+import com.ibm.decisions.uml.classdiagram.DiagramSink;
+import com.ibm.decisions.uml.classdiagram.FragmentCache;
+import com.ibm.decisions.uml.classdiagram.PlantUmlSink;
+import com.ibm.decisions.uml.metrics.DiagramMetrics;
+import com.ibm.decisions.uml.model.*;
 import ilog.rules.bom.mutable.IlrMutableObjectModel;
-import ilog.rules.bom.serializer.IlrJavaSerializer;
 import ilog.rules.bom.serializer.IlrSyntaxError;
 
+import javax.management.JMException;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Created by ardoint on 11/04/2018.
  */
 public class Command {
 
-  @Parameter(names = {"-bom", "-model"}, description = "a BOM file")
+  @Parameter(names = {"-bom", "-model"}, description = "a BOM file, or a zip or jar archive whose BOMs each produce their own diagram, as in batch mode")
   private String bomFile;
 
 
   @Parameter(names = {"-output"}, description = "an output file")
   private String output;
 
+  @Parameter(names = {"-batch"}, description = "a directory, a glob pattern of BOM files or a zip or jar archive, each BOM producing its own diagram")
+  private String batch;
+
+  @Parameter(names = {"-outputDir"}, description = "the output directory of the batch mode, by default diagrams are written next to the BOMs")
+  private String outputDir;
+
+  @Parameter(names = {"-threads"}, description = "the number of worker threads of the batch and server modes")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Parameter(names = {"-manifest"}, description = "a manifest file recording the generated diagrams, so that the diagrams of unchanged BOMs are not generated again")
+  private String manifest;
+
+  @Parameter(names = {"-streaming"}, description = "writes each class as soon as it is complete, keeping as little state as possible, for very large BOMs")
+  private boolean streaming;
+
+  @Parameter(names = {"-parallel"}, description = "writes the diagram of a single BOM with -threads threads, the diagram is the same")
+  private boolean parallel;
+
+  @Parameter(names = {"-parser"}, description = "the BOM parser: odm (the default) uses the ODM serializer, native does not need ODM")
+  private String parser = "odm";
+
+  @Parameter(names = {"-cache"}, description = "writes a binary snapshot of the parsed model next to each BOM, read instead of the BOM while the BOM does not change")
+  private boolean cache;
+
+  @Parameter(names = {"-fragmentCache"}, description = "keeps the PlantUML text of at most the given number of classes, reused by the BOMs of a batch that share the same classes")
+  private Integer fragmentCacheSize;
+
+  @Parameter(names = {"-fragmentCacheDir"}, description = "also writes the cached class texts to this directory, to reuse them in later runs")
+  private String fragmentCacheDir;
+
+  @Parameter(names = {"-layoutBudget"}, description = "simplifies the diagrams whose estimated layout cost exceeds this budget: methods hidden, then inlined attributes collapsed, notes on links dropped and utility classes folded")
+  private long layoutBudget;
+
+  @Parameter(names = {"-rules"}, description = "a file of rules added to the default ones: include and exclude namespace patterns, types of inlined attributes and superclasses shown as stereotypes, one rule per line")
+  private String rulesFile;
+
+  @Parameter(names = {"-include"}, description = "a comma separated list of namespace patterns: only the classes of the namespaces starting with one of them are written, unless a longer -exclude pattern matches")
+  private List<String> includes;
+
+  @Parameter(names = {"-exclude"}, description = "a comma separated list of namespace patterns: the classes of the namespaces starting with one of them are not written, unless a longer -include pattern matches")
+  private List<String> excludes;
+
+  @Parameter(names = {"-inline"}, description = "a comma separated list of types whose attributes are written in the class blocks instead of as relations")
+  private List<String> inlinedTypes;
+
+  @Parameter(names = {"-format"}, description = "the output format: puml (the default) for the PlantUML text, mermaid, dot or json for the Mermaid, Graphviz or JSON text, svg or png for an image rendered by PlantUML; a comma separated list of formats writes them all from one traversal, to the -output base name followed by the extension of each format")
+  private String format = DiagramRenderer.TEXT;
+
+  @Parameter(names = {"-renderThreads"}, description = "the maximum number of images rendered at the same time, by default limited by the processors and the heap")
+  private Integer renderThreads;
+
+  @Parameter(names = {"-partition"}, description = "writes one diagram per package in -outputDir, with an index diagram; packages of more than the given number of classes are cut (0 for no limit)")
+  private Integer partition;
+
+  @Parameter(names = {"-focus"}, description = "the fully qualified name of a class: only the classes around it are written")
+  private String focus;
+
+  @Parameter(names = {"-depth"}, description = "the maximum number of links between the -focus class and the written classes")
+  private int depth = 1;
+
+  @Parameter(names = {"-diff"}, arity = 2, description = "an old and a new BOM file: only writes the classes added, removed or modified between them, and the classes linked to them")
+  private List<String> diff;
+
+  @Parameter(names = {"-merge"}, description = "a comma separated list of BOM files merged into a single diagram, each class being written once; the classes defined differently by two BOMs are reported on the standard error")
+  private List<String> merge;
+
+  @Parameter(names = {"-watch"}, description = "keeps running after the -batch conversion and converts the BOMs again as soon as they change")
+  private boolean watch;
+
+  @Parameter(names = {"-debounce"}, description = "the quiet time in milliseconds after a change of a watched BOM before it is converted")
+  private long debounce = DiagramWatcher.DEFAULT_DEBOUNCE_MILLIS;
+
+  @Parameter(names = {"-multi"}, description = "reads several BOMs from the standard input, each one followed by a line @@end, and writes their diagrams in the same order, each one framed by @@diagram n or @@error n and @@end")
+  private boolean multi;
+
+  @Parameter(names = {"-queueSize"}, description = "the number of BOMs waiting between two stages of the -multi mode")
+  private int queueSize = DocumentPipeline.DEFAULT_QUEUE_SIZE;
+
+  @Parameter(names = {"-server"}, description = "keeps running and renders the BOMs received on the standard input, or on the HTTP port if -port is given")
+  private boolean server;
+
+  @Parameter(names = {"-port"}, description = "the local HTTP port of the server mode")
+  private Integer port;
+
+  @Parameter(names = {"-metrics"}, description = "prints the phase times, counts, bytes written, peak heap and slowest classes on the standard error in the given format: json; the batch and server modes also publish them as a JMX MBean")
+  private String metricsFormat;
+
+  private DiagramMetrics metrics;
+
+  private List<String> formats;
+
+  private FragmentCache fragmentCache;
+
+  private DiagramRules rules;
+
+  /**
+   * Identifies the diagram format. It is part of the options hash recorded in the manifest,
+   * so it should be changed whenever a change of the writer changes the output.
+   */
+  static final String DIAGRAM_VERSION = "plantuml-2";
+
+  static final int DEFAULT_FRAGMENT_CACHE_SIZE = 10000;
+
 
   public static void main(String[] args) {
 
@@ -38,61 +150,531 @@ public class Command {
   }
 
   private void run() {
+    if (bomFile != null && BatchRunner.isArchive(bomFile)) {
+      // each BOM of the archive gets its own diagram, as in batch mode
+      if (batch != null || output != null) {
+        System.err.println("The diagrams of an archive are written to -outputDir, it cannot be combined with -batch or -output");
+        System.exit(1);
+      }
+      batch = bomFile;
+      bomFile = null;
+    }
+    if ((partition != null || focus != null) && (batch != null || server)) {
+      System.err.println("-partition and -focus only apply to a single BOM");
+      System.exit(1);
+    }
+    if (metricsFormat != null) {
+      if (!metricsFormat.equals("json")) {
+        System.err.println("Unknown metrics format " + metricsFormat + ", expecting json");
+        System.exit(1);
+      }
+      metrics = new DiagramMetrics();
+    }
+    if (fragmentCacheSize != null || fragmentCacheDir != null) {
+      fragmentCache = new FragmentCache(fragmentCacheSize != null ? fragmentCacheSize : DEFAULT_FRAGMENT_CACHE_SIZE,
+          fragmentCacheDir != null ? Paths.get(fragmentCacheDir) : null);
+    }
+    rules = createRules();
+    formats = Arrays.asList(format.split(","));
+    for (String f : formats) {
+      if (!DiagramFormats.isSupported(f) && !DiagramRenderer.isSupported(f)) {
+        System.err.println("Unknown format " + f + ", expecting puml, mermaid, dot, json, svg or png");
+        System.exit(1);
+      }
+      if (fragmentCache != null && DiagramFormats.isSupported(f) && !f.equals(DiagramFormats.PLANTUML)) {
+        System.err.println("-fragmentCache only applies to puml, svg or png diagrams");
+        System.exit(1);
+      }
+    }
+    if (formats.size() > 1) {
+      if (output == null || batch != null || server || partition != null || diff != null || this.manifest != null) {
+        System.err.println("Several formats need an -output base name, and cannot be combined with -batch, -server, -partition, -diff or -manifest");
+        System.exit(1);
+      }
+    } else if (partition != null && isTextFormat() && !format.equals(DiagramRenderer.TEXT)) {
+      System.err.println("-partition only writes puml, svg or png diagrams");
+      System.exit(1);
+    }
+    if (partition != null && (layoutBudget > 0 || streaming || fragmentCache != null)) {
+      System.err.println("-partition cannot be combined with -layoutBudget, -streaming or -fragmentCache");
+      System.exit(1);
+    }
+    if (merge != null && (bomFile != null || batch != null || server || multi || diff != null)) {
+      System.err.println("-merge cannot be combined with -bom, -batch, -server, -multi or -diff");
+      System.exit(1);
+    }
+    if (diff != null) {
+      if (batch != null || server || multi || partition != null || focus != null) {
+        System.err.println("-diff cannot be combined with -batch, -server, -multi, -partition or -focus");
+        System.exit(1);
+      }
+      runDiff();
+      return;
+    }
+    if (watch && batch == null) {
+      System.err.println("-watch needs a -batch directory, glob pattern or BOM file");
+      System.exit(1);
+    }
+    if (multi) {
+      if (bomFile != null || batch != null || server || partition != null || focus != null || formats.size() > 1 || !isTextFormat()) {
+        System.err.println("-multi reads the standard input, it cannot be combined with -bom, -batch, -server, -partition, -focus, several formats or images");
+        System.exit(1);
+      }
+      runMulti();
+      return;
+    }
+    if (batch != null) {
+      runBatch();
+      return;
+    }
+    if (server) {
+      runServer();
+      return;
+    }
     try {
-    Reader reader;
-    boolean closeReader = false;
-    if (bomFile != null) {
-      reader = getReader(bomFile);
-      closeReader = true;
-    } else {
-      reader = new BufferedReader(new InputStreamReader(System.in));
+      Manifest manifest = null;
+      if (this.manifest != null && bomFile != null && output != null) {
+        manifest = Manifest.load(Paths.get(this.manifest));
+        if (manifest.isUpToDate(Paths.get(bomFile), Paths.get(output), getOptionsHash()))
+          return;
+      }
+
+      byte[] content = null;
+      if (manifest != null || cache && bomFile != null)
+        content = Files.readAllBytes(Paths.get(bomFile));
+      if (manifest != null && manifest.isUpToDate(Paths.get(bomFile), content, Paths.get(output), getOptionsHash())) {
+        manifest.save(Paths.get(this.manifest));
+        return;
+      }
+
+      DiagramModel bom = null;
+      try {
+        bom = merge != null ? readMergedModel() : readModel(content);
+      } catch (BomSyntaxException e) {
+        writeError(e);
+      }
+
+      if (partition != null) {
+        writePartitions(bom);
+      } else if (formats.size() > 1) {
+        writeFormats(bom);
+      } else {
+        final DiagramModel model = bom;
+        writeOutput(writer -> writeDiagram(model, createSink(writer)));
+      }
+      if (metrics != null) {
+        metrics.addBom();
+        System.err.print(metrics.toJson());
+      }
+
+      if (manifest != null) {
+        manifest.update(Paths.get(bomFile), content, Paths.get(output), getOptionsHash());
+        manifest.save(Paths.get(this.manifest));
+      }
+    } catch (IOException | InterruptedException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Returns the default rules, with the rules of the -rules file and of the -include,
+   * -exclude and -inline options.
+   */
+  private DiagramRules createRules() {
+    DiagramRules rules = DiagramRules.createDefault();
+    try {
+      if (rulesFile != null)
+        rules.load(Paths.get(rulesFile));
+    } catch (IOException e) {
+      System.err.println("Cannot read the rules " + rulesFile + ": " + e);
+      System.exit(1);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+    if (includes != null)
+      includes.forEach(rules::include);
+    if (excludes != null)
+      excludes.forEach(rules::exclude);
+    if (inlinedTypes != null)
+      inlinedTypes.forEach(rules::inline);
+    return rules;
+  }
+
+  private void writePartitions(DiagramModel bom) throws IOException, InterruptedException {
+    if (outputDir == null) {
+      System.err.println("-partition needs an -outputDir");
+      System.exit(1);
     }
+    PartitionWriter partitionWriter = new PartitionWriter(Paths.get(outputDir), partition, threads);
+    if (!format.equals(DiagramRenderer.TEXT))
+      partitionWriter.setRenderer(getRenderer(format));
+    partitionWriter.setMetrics(metrics);
+    partitionWriter.setRules(rules);
+    List<Path> files = partitionWriter.write(bom);
+    System.out.println(files.size() - 1 + " partition(s) written, index in " + files.get(0));
+  }
 
+  /**
+   * Writes a diagram to the output file or the standard output, as text or as an image
+   * according to -format.
+   */
+  private void writeOutput(DiagramRenderer.Diagram diagram) throws IOException, InterruptedException {
+    if (!isTextFormat()) {
+      DiagramRenderer renderer = getRenderer(format);
+      if (output != null) {
+        try (OutputStream out = new BufferedOutputStream(countBytes(Files.newOutputStream(Paths.get(output))))) {
+          renderer.render(diagram, out);
+        }
+      } else {
+        renderer.render(diagram, countBytes(System.out));
+        System.out.flush();
+      }
+      return;
+    }
     PrintWriter writer;
     boolean closeWriter = false;
     if (output != null) {
       writer = new PrintWriter(getWriter(output));
       closeWriter =true;
     } else {
-      writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+      writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(countBytes(System.out))));
     }
+    diagram.write(writer);
 
-      ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(writer);
-      classDiagramWriter.writeModel(readBOM(reader));
-      if (closeReader)
-        reader.close();
+    if (closeWriter)
+      writer.close();
+    else
+      writer.flush();
+  }
 
-      if (closeWriter)
+  /**
+   * Writes the diagram in each -format from a single traversal of the model, to the -output
+   * base name followed by the extension of the format. The images are rendered from the
+   * PlantUML text of the same traversal.
+   */
+  private void writeFormats(DiagramModel bom) throws IOException, InterruptedException {
+    List<PrintWriter> writers = new ArrayList<>();
+    List<DiagramSink> sinks = new ArrayList<>();
+    List<String> images = new ArrayList<>();
+    StringWriter text = new StringWriter();
+    try {
+      for (String f : formats) {
+        if (DiagramFormats.isSupported(f)) {
+          PrintWriter writer = new PrintWriter(getWriter(output + DiagramFormats.getExtension(f)));
+          writers.add(writer);
+          sinks.add(DiagramFormats.createSink(f, writer));
+        } else {
+          images.add(f);
+        }
+      }
+      if (!images.isEmpty())
+        sinks.add(new PlantUmlSink(new PrintWriter(text)));
+      writeDiagram(bom, new CompositeSink(sinks.toArray(new DiagramSink[sinks.size()])));
+    } finally {
+      for (PrintWriter writer : writers)
         writer.close();
+    }
+    String diagram = text.toString();
+    for (String image : images) {
+      DiagramRenderer renderer = getRenderer(image);
+      try (OutputStream out = new BufferedOutputStream(countBytes(Files.newOutputStream(Paths.get(output + renderer.getExtension()))))) {
+        renderer.render(writer -> writer.write(diagram), out);
+      }
+    }
+  }
+
+  /**
+   * Tells whether the single -format is a text format, rather than an image.
+   */
+  private boolean isTextFormat() {
+    return DiagramFormats.isSupported(format);
+  }
+
+  /**
+   * Creates the sink of the single -format, the PlantUML sink for an image.
+   */
+  private DiagramSink createSink(PrintWriter writer) {
+    return isTextFormat() ? DiagramFormats.createSink(format, writer) : new PlantUmlSink(writer);
+  }
+
+  /**
+   * Writes the diagram of the model, or of the classes around the -focus class.
+   */
+  private void writeDiagram(DiagramModel bom, DiagramSink sink) {
+    ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(sink);
+    classDiagramWriter.setStreaming(streaming);
+    classDiagramWriter.setMetrics(metrics);
+    classDiagramWriter.setFragmentCache(fragmentCache);
+    classDiagramWriter.setLayoutBudget(layoutBudget);
+    classDiagramWriter.setRules(rules);
+    if (parallel)
+      classDiagramWriter.setParallelism(threads);
+    if (focus != null) {
+      DiagramType type = bom.getType(focus);
+      if (type == null) {
+        System.err.println("Unknown class " + focus);
+        System.exit(1);
+      }
+      classDiagramWriter.writeFocus(classDiagramWriter.indexRelations(bom), type, depth);
+    } else {
+      classDiagramWriter.writeModel(bom);
+    }
+  }
+
+
+  /**
+   * Writes the diagram of the changes between the two -diff BOMs.
+   */
+  private void runDiff() {
+    try {
+      DiagramModel oldModel = readModel(diff.get(0));
+      DiagramModel newModel = readModel(diff.get(1));
+      writeOutput(writer -> {
+        ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(createSink(writer));
+        classDiagramWriter.setMetrics(metrics);
+        classDiagramWriter.setRules(rules);
+        classDiagramWriter.writeDiff(classDiagramWriter.compare(oldModel, newModel));
+      });
+      if (metrics != null) {
+        metrics.addBom();
+        System.err.print(metrics.toJson());
+      }
+    } catch (BomSyntaxException e) {
+      writeError(e);
+    } catch (IOException | InterruptedException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  private void runBatch() {
+    try (BatchRunner runner = BatchRunner.create(batch, outputDir, threads)) {
+      if (runner.isArchive() && (cache || watch)) {
+        System.err.println("-cache and -watch do not apply to the BOMs of an archive");
+        System.exit(1);
+      }
+      runner.setStreaming(streaming);
+      runner.setFragmentCache(fragmentCache);
+      runner.setLayoutBudget(layoutBudget);
+      runner.setRules(rules);
+      runner.setModelReader(getModelReader());
+      if (cache)
+        runner.setSnapshotCache(new SnapshotCache(getInstrumentedModelReader(), parser));
+      if (!isTextFormat())
+        runner.setRenderer(getRenderer(format));
       else
-        writer.flush();
-    } catch (IOException e) {
+        runner.setFormat(format);
+      if (metrics != null) {
+        runner.setMetrics(metrics);
+        registerMetrics();
+      }
+      Manifest manifest = null;
+      if (this.manifest != null) {
+        manifest = Manifest.load(Paths.get(this.manifest));
+        runner.setManifest(manifest, getOptionsHash());
+      }
+      // watching starts before the first conversion, so that no change is missed
+      DiagramWatcher watcher = watch ? new DiagramWatcher(runner, debounce) : null;
+      long start = System.nanoTime();
+      List<BatchRunner.Result> results = runner.run();
+      if (manifest != null)
+        manifest.save(Paths.get(this.manifest));
+      runner.printSummary(results, System.nanoTime() - start, System.out);
+      if (metrics != null)
+        System.err.print(metrics.toJson());
+      if (watcher != null)
+        watch(watcher, runner, manifest);
+      for (BatchRunner.Result result : results) {
+        if (!result.isSuccess())
+          System.exit(1);
+      }
+    } catch (IOException | InterruptedException e) {
       e.printStackTrace();
       System.exit(1);
     }
   }
 
+  /**
+   * Converts the changed BOMs again after each burst of changes, until the command is stopped.
+   */
+  private void watch(DiagramWatcher watcher, BatchRunner runner, Manifest manifest) throws IOException, InterruptedException {
+    System.err.println("Watching " + runner.getBaseDir() + " for changes");
+    try {
+      while (true) {
+        List<Path> changed = watcher.awaitChanges();
+        long start = System.nanoTime();
+        List<BatchRunner.Result> results = runner.run(changed);
+        if (manifest != null)
+          manifest.save(Paths.get(this.manifest));
+        runner.printSummary(results, System.nanoTime() - start, System.out);
+      }
+    } finally {
+      watcher.close();
+    }
+  }
+
+  private void runMulti() {
+    DocumentPipeline pipeline = new DocumentPipeline(queueSize);
+    pipeline.setModelReader(getModelReader());
+    pipeline.setFormat(format);
+    pipeline.setMetrics(metrics);
+    pipeline.setFragmentCache(fragmentCache);
+    pipeline.setRules(rules);
+    try {
+      PrintStream out = output != null ? new PrintStream(countBytes(Files.newOutputStream(Paths.get(output))), false, "UTF-8") : System.out;
+      int failed;
+      try {
+        failed = pipeline.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), out);
+      } finally {
+        if (out != System.out)
+          out.close();
+      }
+      if (metrics != null)
+        System.err.print(metrics.toJson());
+      if (failed > 0)
+        System.exit(1);
+    } catch (IOException | InterruptedException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+  }
 
-  private IlrMutableObjectModel readBOM(Reader reader) throws IOException {
-    IlrDynamicObjectModel bom = new IlrDynamicObjectModel(IlrObjectModel.Kind.BUSINESS);
+  private void runServer() {
     try {
-      IlrJavaSerializer javaSerializer = new IlrJavaSerializer();
-      javaSerializer.readObjectModel(bom, reader);
-    } catch (IlrSyntaxError e) {
+      DiagramServer diagramServer = new DiagramServer(threads);
+      diagramServer.setModelReader(getModelReader());
+      diagramServer.setRules(rules);
+      diagramServer.warmUp();
+      if (metrics != null) {
+        diagramServer.setMetrics(metrics);
+        registerMetrics();
+      }
+      if (port != null) {
+        com.sun.net.httpserver.HttpServer httpServer = diagramServer.startHttp(port);
+        System.err.println("Diagram server listening on http://localhost:" + httpServer.getAddress().getPort() + DiagramServer.CONTEXT);
+      } else {
+        diagramServer.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), System.out);
+      }
+    } catch (BomSyntaxException e) {
       writeError(e);
+    } catch (IOException | InterruptedException e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Publishes the metrics as an MBean, so that they can be followed while the batch
+   * or the server is running.
+   */
+  private void registerMetrics() {
+    try {
+      metrics.register();
+    } catch (JMException e) {
+      System.err.println("Cannot register the metrics MBean: " + e);
+    }
+  }
+
+  /**
+   * Returns the hash of the options that change the content of a diagram.
+   */
+  String getOptionsHash() {
+    return Manifest.hash(getOptionsSignature());
+  }
+
+  String getOptionsSignature() {
+    String signature = DIAGRAM_VERSION + ";parser=" + parser;
+    if (focus != null)
+      signature += ";focus=" + focus + ";depth=" + depth;
+    if (!format.equals(DiagramRenderer.TEXT))
+      signature += ";format=" + format;
+    if (layoutBudget > 0)
+      signature += ";layoutBudget=" + layoutBudget;
+    if (rulesFile != null || includes != null || excludes != null || inlinedTypes != null)
+      signature += ";rules=" + Long.toHexString(rules.getSignature());
+    return signature;
+  }
+
+  DiagramRenderer getRenderer(String format) {
+    return renderThreads == null ? new DiagramRenderer(format) : new DiagramRenderer(format, renderThreads);
+  }
+
+  /**
+   * Reads the BOM file, or the standard input when there is no BOM file. The content is
+   * passed when the file has already been read.
+   */
+  private DiagramModel readModel(byte[] content) throws IOException, BomSyntaxException {
+    if (cache && bomFile != null)
+      return new SnapshotCache(getInstrumentedModelReader(), parser).read(Paths.get(bomFile), content);
+    if (content != null)
+      return getInstrumentedModelReader().read(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+    if (bomFile != null) {
+      try (Reader reader = getReader(bomFile)) {
+        return getInstrumentedModelReader().read(reader);
+      }
+    }
+    return getInstrumentedModelReader().read(MappedReader.openStandardInput());
+  }
+
+  private DiagramModel readModel(String name) throws IOException, BomSyntaxException {
+    try (Reader reader = getReader(name)) {
+      return getInstrumentedModelReader().read(reader);
     }
-    return bom;
+  }
+
+  /**
+   * Reads the -merge BOM files one at a time into a merged model, and reports the
+   * classes defined differently by two of them.
+   */
+  private DiagramModel readMergedModel() throws IOException, BomSyntaxException {
+    ModelMerger merger = new ModelMerger();
+    for (String name : merge)
+      merger.add(name, readModel(name));
+    for (ModelMerger.Conflict conflict : merger.getConflicts())
+      System.err.println("Warning: " + conflict);
+    return merger.getModel();
+  }
+
+  private ModelReader getInstrumentedModelReader() {
+    return metrics == null ? getModelReader() : metrics.instrument(getModelReader());
+  }
+
+  ModelReader getModelReader() {
+    switch (parser) {
+      case "odm":
+        return new OdmModelReader();
+      case "native":
+        return new BomParser();
+      default:
+        throw new IllegalArgumentException("Unknown parser " + parser + ", expecting odm or native");
+    }
+  }
+
+  /**
+   * Reads a BOM in a new object model. Each call uses its own model and serializer,
+   * so that it can be called concurrently.
+   */
+  public static IlrMutableObjectModel readBOM(Reader reader) throws IOException, IlrSyntaxError {
+    return OdmModelReader.readObjectModel(reader);
   }
 
   private Reader getReader(String name) throws IOException {
     Path path = Paths.get(name);
-    return Files.newBufferedReader(path, StandardCharsets.UTF_8);
+    return MappedReader.open(path);
   }
 
 
   private Writer getWriter(String name) throws IOException {
     Path path = Paths.get(name);
-    return Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+    if (metrics == null)
+      return Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+    return new BufferedWriter(new OutputStreamWriter(countBytes(Files.newOutputStream(path)), StandardCharsets.UTF_8));
+  }
+
+  private OutputStream countBytes(OutputStream out) {
+    return metrics == null ? out : metrics.countBytes(out);
   }
 
   public static void writeError(IlrSyntaxError error) {
@@ -102,4 +684,11 @@ public class Command {
     System.exit(1);
   }
 
+  public static void writeError(BomSyntaxException error) {
+    String[] messages = error.getErrorMessages();
+    for (String message : messages)
+      System.err.println(message);
+    System.exit(1);
+  }
+
 }
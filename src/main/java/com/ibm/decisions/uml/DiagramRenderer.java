@@ -0,0 +1,140 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.model.DiagramModel;
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+import net.sourceforge.plantuml.core.DiagramDescription;
+
+import java.io.*;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Renders class diagrams as images with the PlantUML library, in the current process.
+ * <p>
+ * PlantUML needs much more memory than the writing of the diagram text, so the number
+ * of diagrams rendered at the same time is limited, by default by the number of
+ * processors and by the heap: one rendering for every {@link #MEMORY_PER_RENDERING}
+ * bytes of maximum heap. The renderer can be shared by the threads of a batch.
+ */
+public class DiagramRenderer {
+  public static final String TEXT = "puml";
+  static final long MEMORY_PER_RENDERING = 256L << 20;
+
+  final FileFormat format;
+  final Semaphore permits;
+  final int concurrency;
+
+  public DiagramRenderer(String format) {
+    this(format, getDefaultConcurrency());
+  }
+
+  public DiagramRenderer(String format, int concurrency) {
+    this.format = getFileFormat(format);
+    this.concurrency = Math.max(1, concurrency);
+    this.permits = new Semaphore(this.concurrency, true);
+  }
+
+  static int getDefaultConcurrency() {
+    long byMemory = Runtime.getRuntime().maxMemory() / MEMORY_PER_RENDERING;
+    return (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), byMemory));
+  }
+
+  /**
+   * Tells whether a format is one of the image formats: svg or png.
+   */
+  public static boolean isSupported(String format) {
+    return "svg".equals(format) || "png".equals(format);
+  }
+
+  static FileFormat getFileFormat(String format) {
+    switch (format) {
+      case "svg":
+        return FileFormat.SVG;
+      case "png":
+        return FileFormat.PNG;
+      default:
+        throw new IllegalArgumentException("Unknown image format " + format + ", expecting svg or png");
+    }
+  }
+
+  /**
+   * Returns the extension of the image files, with its dot.
+   */
+  public String getExtension() {
+    return "." + format.name().toLowerCase(Locale.ROOT);
+  }
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * Writer of the text of a diagram.
+   */
+  public interface Diagram {
+    void write(PrintWriter writer);
+  }
+
+  /**
+   * Writes the diagram of a model and renders it into the given stream.
+   */
+  public void render(DiagramModel model, boolean streaming, OutputStream out) throws IOException, InterruptedException {
+    render(writer -> {
+      ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(writer);
+      classDiagramWriter.setStreaming(streaming);
+      classDiagramWriter.writeModel(model);
+    }, out);
+  }
+
+  /**
+   * Writes a diagram, then renders it into the given stream.
+   */
+  public void render(Diagram diagram, OutputStream out) throws IOException, InterruptedException {
+    StringWriter text = new StringWriter();
+    PrintWriter writer = new PrintWriter(text);
+    text.write("@startuml\n");
+    diagram.write(writer);
+    writer.flush();
+    text.write("@enduml\n");
+    render(text.toString(), out);
+  }
+
+  /**
+   * Renders a diagram text, starting with @startuml, into the given stream. The calling
+   * thread waits while the maximum number of renderings are in progress.
+   */
+  public void render(String diagram, OutputStream out) throws IOException, InterruptedException {
+    permits.acquire();
+    try {
+      DiagramDescription description = new SourceStringReader(diagram).outputImage(out, new FileFormatOption(format));
+      if (description == null)
+        throw new IOException("PlantUML did not find a diagram");
+    } finally {
+      permits.release();
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.classdiagram.DiagramRules;
+import com.ibm.decisions.uml.metrics.DiagramMetrics;
+import com.ibm.decisions.uml.model.BomSyntaxException;
+import com.ibm.decisions.uml.model.ModelReader;
+import com.ibm.decisions.uml.model.OdmModelReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long running diagram server, keeping the BOM classes loaded and warmed up
+ * between requests. BOMs are received either as the body of HTTP POST requests
+ * on a local port, or on a line framed input stream:
+ * <pre>
+ * request:  BOM lines, followed by a line containing only @@end
+ * response: "@@diagram n" or "@@error n", the diagram or the error messages, then @@end
+ * </pre>
+ * where n is the number of the request in the stream, starting at 1. Requests
+ * are rendered concurrently, so the responses may come in a different order.
+ * At most a fixed number of requests wait for a thread: the HTTP requests beyond
+ * are rejected with the status 503, and the input stream is read no further until
+ * a thread is free.
+ */
+public class DiagramServer {
+  public static final String END = "@@end";
+  public static final String DIAGRAM = "@@diagram ";
+  public static final String ERROR = "@@error ";
+  public static final String CONTEXT = "/diagram";
+  public static final int DEFAULT_QUEUE_SIZE = 100;
+
+  static final String WARMUP_BOM = "warmup.bom";
+  static final int WARMUP_ITERATIONS = 200;
+
+  final ThreadPoolExecutor executor;
+  ModelReader modelReader = new OdmModelReader();
+  volatile DiagramMetrics metrics;
+  DiagramRules rules = DiagramRules.createDefault();
+
+  public DiagramServer(int threads) {
+    this(threads, DEFAULT_QUEUE_SIZE);
+  }
+
+  /**
+   * Creates a server rendering on the given number of threads, with at most queueSize
+   * requests waiting for a thread.
+   */
+  public DiagramServer(int threads, int queueSize) {
+    this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queueSize)));
+  }
+
+  public void setModelReader(ModelReader modelReader) {
+    this.modelReader = modelReader;
+  }
+
+  /**
+   * Records the metrics of the following requests in the given metrics. It is usually
+   * set after {@link #warmUp()}, so that the warm-up renderings are not counted.
+   */
+  public void setMetrics(DiagramMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Writes the classes accepted by the given rules, see {@link ClassDiagramWriter#setRules(DiagramRules)}.
+   */
+  public void setRules(DiagramRules rules) {
+    this.rules = rules;
+  }
+
+  /**
+   * Returns the class diagram of a BOM.
+   */
+  public String render(Reader bom) throws IOException, BomSyntaxException {
+    DiagramMetrics metrics = this.metrics;
+    StringWriter diagram = new StringWriter();
+    PrintWriter writer = new PrintWriter(diagram);
+    ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(writer);
+    classDiagramWriter.setMetrics(metrics);
+    classDiagramWriter.setRules(rules);
+    classDiagramWriter.writeModel((metrics == null ? modelReader : metrics.instrument(modelReader)).read(bom));
+    writer.flush();
+    String result = diagram.toString();
+    if (metrics != null) {
+      metrics.addBom();
+      metrics.addBytes(result.getBytes(StandardCharsets.UTF_8).length);
+    }
+    return result;
+  }
+
+  /**
+   * Renders a sample BOM several times, so that the BOM classes are loaded and
+   * the rendering is compiled before the first request.
+   */
+  public void warmUp() throws IOException, BomSyntaxException {
+    String sample = readWarmupBOM();
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i)
+      render(new StringReader(sample));
+  }
+
+  static String readWarmupBOM() throws IOException {
+    try (InputStream in = DiagramServer.class.getResourceAsStream(WARMUP_BOM)) {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int count;
+      while ((count = in.read(buffer)) > 0)
+        content.write(buffer, 0, count);
+      return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Starts an HTTP server on the loopback interface. A POST to /diagram with a BOM
+   * as body returns the PlantUML text of its class diagram, or the syntax errors
+   * with the status 400. The requests are dispatched by the thread of the server to
+   * the rendering threads, and rejected with the status 503 when too many are waiting.
+   */
+  public HttpServer startHttp(int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext(CONTEXT, this::handle);
+    server.start();
+    return server;
+  }
+
+  void handle(HttpExchange exchange) throws IOException {
+    // the dispatched exchanges are closed by the rendering thread
+    boolean dispatched = false;
+    try {
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        send(exchange, 405, "Only POST is supported\n");
+        return;
+      }
+      try {
+        executor.execute(() -> respond(exchange));
+        dispatched = true;
+      } catch (RejectedExecutionException e) {
+        send(exchange, 503, "Too many pending requests\n");
+      }
+    } finally {
+      if (!dispatched)
+        exchange.close();
+    }
+  }
+
+  void respond(HttpExchange exchange) {
+    try {
+      String diagram;
+      try (Reader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+        diagram = render(reader);
+      } catch (BomSyntaxException e) {
+        send(exchange, 400, join(e.getErrorMessages()));
+        return;
+      } catch (RuntimeException | Error e) {
+        send(exchange, 500, e.toString() + '\n');
+        return;
+      }
+      send(exchange, 200, diagram);
+    } catch (IOException e) {
+      // the client is gone
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void send(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Serves the line framed requests of an input stream until its end, then waits
+   * for the pending requests. When too many requests are waiting, the request is
+   * rendered by the reading thread.
+   */
+  public void serve(BufferedReader in, PrintStream out) throws IOException, InterruptedException {
+    StringBuilder bom = new StringBuilder();
+    int count = 0;
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (line.equals(END)) {
+        final int id = ++count;
+        final String text = bom.toString();
+        try {
+          executor.execute(() -> respond(id, text, out));
+        } catch (RejectedExecutionException e) {
+          respond(id, text, out);
+        }
+        bom.setLength(0);
+      } else {
+        bom.append(line).append('\n');
+      }
+    }
+    shutdown();
+  }
+
+  void respond(int id, String bom, PrintStream out) {
+    String response;
+    try {
+      response = DIAGRAM + id + '\n' + render(new StringReader(bom));
+    } catch (BomSyntaxException e) {
+      response = ERROR + id + '\n' + join(e.getErrorMessages());
+    } catch (Throwable e) {
+      // any failure, even an Error, is answered so that the client does not wait for the request
+      response = ERROR + id + '\n' + e.toString() + '\n';
+    }
+    if (!response.endsWith("\n"))
+      response += '\n';
+    synchronized (out) {
+      out.print(response);
+      out.println(END);
+      out.flush();
+    }
+  }
+
+  static String join(String[] messages) {
+    StringBuilder builder = new StringBuilder();
+    for (String message : messages)
+      builder.append(message).append('\n');
+    return builder.toString();
+  }
+
+  public void shutdown() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+}
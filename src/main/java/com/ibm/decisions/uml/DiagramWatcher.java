@@ -0,0 +1,118 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the BOMs of a batch for changes. The directories below the base directory of
+ * the batch are registered in a {@link WatchService}, and a burst of changes, such as the
+ * several writes of a save, is reported once it has been quiet for the debounce delay.
+ * Only the changed BOMs are reported, so that only they are converted again.
+ */
+public class DiagramWatcher implements Closeable {
+  public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+
+  final BatchRunner runner;
+  final long debounceMillis;
+  final WatchService watchService;
+  final Map<WatchKey, Path> directories = new HashMap<>();
+
+  public DiagramWatcher(BatchRunner runner, long debounceMillis) throws IOException {
+    this.runner = runner;
+    this.debounceMillis = debounceMillis;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    Path base = runner.getBaseDir();
+    if (Files.isDirectory(base)) {
+      register(base);
+    } else {
+      // a single BOM: its directory is watched
+      Path parent = base.getParent();
+      register(parent == null ? Paths.get(".") : parent);
+    }
+  }
+
+  private void register(Path directory) throws IOException {
+    List<Path> tree;
+    try (Stream<Path> files = Files.walk(directory)) {
+      tree = files.filter(Files::isDirectory).collect(Collectors.toList());
+    }
+    for (Path path : tree)
+      directories.put(path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), path);
+  }
+
+  /**
+   * Waits for the next burst of changes of BOMs and returns the changed BOMs, sorted.
+   */
+  public List<Path> awaitChanges() throws IOException, InterruptedException {
+    Set<Path> changed = new TreeSet<>();
+    while (changed.isEmpty()) {
+      WatchKey key = watchService.take();
+      while (key != null) {
+        collect(key, changed);
+        key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    return new ArrayList<>(changed);
+  }
+
+  private void collect(WatchKey key, Set<Path> changed) throws IOException {
+    Path directory = directories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        // some events were lost: every BOM may have changed
+        for (Path input : runner.getInputs()) {
+          if (Files.isRegularFile(input))
+            changed.add(input);
+        }
+        continue;
+      }
+      Path path = directory.resolve((Path) event.context());
+      if (Files.isDirectory(path)) {
+        if (event.kind() == ENTRY_CREATE) {
+          register(path);
+          // the BOMs written before the directory was registered
+          try (Stream<Path> files = Files.walk(path)) {
+            files.filter(Files::isRegularFile).filter(runner::accepts).forEach(changed::add);
+          }
+        }
+      } else if (Files.isRegularFile(path) && runner.accepts(path)) {
+        changed.add(path);
+      }
+    }
+    if (!key.reset())
+      directories.remove(key);
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+}
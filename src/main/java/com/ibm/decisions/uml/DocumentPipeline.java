@@ -0,0 +1,258 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.classdiagram.DiagramFormats;
+import com.ibm.decisions.uml.classdiagram.DiagramRules;
+import com.ibm.decisions.uml.classdiagram.FragmentCache;
+import com.ibm.decisions.uml.metrics.DiagramMetrics;
+import com.ibm.decisions.uml.model.BomSyntaxException;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.ModelReader;
+import com.ibm.decisions.uml.model.OdmModelReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Converts a stream of BOMs into a stream of diagrams, with the framing of the line
+ * protocol of {@link DiagramServer}:
+ * <pre>
+ * input:  BOM lines, followed by a line containing only @@end
+ * output: "@@diagram n" or "@@error n", the diagram or the error messages, then @@end
+ * </pre>
+ * Unlike the server, the diagrams come in the order of the BOMs. Reading, parsing,
+ * rendering and writing are run by their own threads, connected by bounded queues: the
+ * stages overlap, and a slow stage blocks the previous ones rather than letting the
+ * documents pile up in memory.
+ */
+public class DocumentPipeline {
+  public static final int DEFAULT_QUEUE_SIZE = 4;
+
+  final int queueSize;
+  ModelReader modelReader = new OdmModelReader();
+  String format = DiagramFormats.PLANTUML;
+  DiagramMetrics metrics;
+  FragmentCache fragmentCache;
+  DiagramRules rules = DiagramRules.createDefault();
+  int failed;
+  // the first Throwable not handled by a stage, after which no more BOM is read
+  volatile Throwable failure;
+
+  /**
+   * A BOM of the input, carried through the stages.
+   */
+  static class Document {
+    final int id;
+    String bom;
+    DiagramModel model;
+    String diagram;
+    String[] errors;
+
+    Document(int id, String bom) {
+      this.id = id;
+      this.bom = bom;
+    }
+  }
+
+  // the end of the input, passed from stage to stage
+  static final Document END_OF_INPUT = new Document(0, null);
+
+  public DocumentPipeline(int queueSize) {
+    this.queueSize = Math.max(1, queueSize);
+  }
+
+  public void setModelReader(ModelReader modelReader) {
+    this.modelReader = modelReader;
+  }
+
+  /**
+   * Writes the diagrams in the given format of {@link DiagramFormats}, PlantUML by default.
+   */
+  public void setFormat(String format) {
+    this.format = format;
+  }
+
+  public void setMetrics(DiagramMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public void setFragmentCache(FragmentCache fragmentCache) {
+    this.fragmentCache = fragmentCache;
+  }
+
+  /**
+   * Writes the classes accepted by the given rules, see {@link ClassDiagramWriter#setRules(DiagramRules)}.
+   */
+  public void setRules(DiagramRules rules) {
+    this.rules = rules;
+  }
+
+  /**
+   * Converts the BOMs of the input until its end, and returns the number of BOMs that
+   * could not be converted. A last BOM without its @@end line is converted as well.
+   * If a stage fails on an unexpected Throwable, it is written as the error of its BOM,
+   * the rest of the input is not read and the Throwable is rethrown once the BOMs already
+   * read are written.
+   */
+  public int run(BufferedReader in, PrintStream out) throws IOException, InterruptedException {
+    BlockingQueue<Document> parseQueue = new ArrayBlockingQueue<>(queueSize);
+    BlockingQueue<Document> renderQueue = new ArrayBlockingQueue<>(queueSize);
+    BlockingQueue<Document> writeQueue = new ArrayBlockingQueue<>(queueSize);
+    Thread[] stages = {
+        start("bom-parse", () -> parse(parseQueue, renderQueue)),
+        start("bom-render", () -> render(renderQueue, writeQueue)),
+        start("bom-write", () -> write(writeQueue, out))
+    };
+    failed = 0;
+    failure = null;
+    try {
+      read(in, parseQueue);
+    } finally {
+      parseQueue.put(END_OF_INPUT);
+      for (Thread stage : stages)
+        stage.join();
+    }
+    if (failure instanceof Error)
+      throw (Error) failure;
+    if (failure instanceof RuntimeException)
+      throw (RuntimeException) failure;
+    if (failure != null)
+      throw new IllegalStateException(failure);
+    return failed;
+  }
+
+  private static Thread start(String name, Runnable stage) {
+    Thread thread = new Thread(stage, name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Splits the input into BOMs.
+   */
+  void read(BufferedReader in, BlockingQueue<Document> next) throws IOException, InterruptedException {
+    StringBuilder bom = new StringBuilder();
+    int count = 0;
+    String line;
+    while (failure == null && (line = in.readLine()) != null) {
+      if (line.equals(DiagramServer.END)) {
+        next.put(new Document(++count, bom.toString()));
+        bom.setLength(0);
+      } else {
+        bom.append(line).append('\n');
+      }
+    }
+    if (failure == null && bom.length() != 0)
+      next.put(new Document(++count, bom.toString()));
+  }
+
+  void parse(BlockingQueue<Document> queue, BlockingQueue<Document> next) {
+    ModelReader modelReader = metrics == null ? this.modelReader : metrics.instrument(this.modelReader);
+    run(queue, next, document -> {
+      try {
+        document.model = modelReader.read(new StringReader(document.bom));
+      } catch (BomSyntaxException e) {
+        document.errors = e.getErrorMessages();
+      } catch (IOException | RuntimeException e) {
+        document.errors = new String[]{e.toString()};
+      }
+      document.bom = null;
+    });
+  }
+
+  void render(BlockingQueue<Document> queue, BlockingQueue<Document> next) {
+    run(queue, next, document -> {
+      if (document.errors != null)
+        return;
+      try {
+        StringWriter text = new StringWriter();
+        ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(DiagramFormats.createSink(format, new PrintWriter(text)));
+        classDiagramWriter.setMetrics(metrics);
+        classDiagramWriter.setFragmentCache(fragmentCache);
+        classDiagramWriter.setRules(rules);
+        classDiagramWriter.writeModel(document.model);
+        document.diagram = text.toString();
+        if (metrics != null)
+          metrics.addBom();
+      } catch (RuntimeException e) {
+        document.errors = new String[]{e.toString()};
+      }
+      document.model = null;
+    });
+  }
+
+  void write(BlockingQueue<Document> queue, PrintStream out) {
+    run(queue, null, document -> {
+      String response;
+      if (document.errors != null) {
+        ++failed;
+        response = DiagramServer.ERROR + document.id + '\n' + DiagramServer.join(document.errors);
+      } else {
+        response = DiagramServer.DIAGRAM + document.id + '\n' + document.diagram;
+        if (metrics != null)
+          metrics.addBytes(document.diagram.getBytes(StandardCharsets.UTF_8).length);
+      }
+      if (!response.endsWith("\n"))
+        response += '\n';
+      out.print(response);
+      out.println(DiagramServer.END);
+      out.flush();
+    });
+  }
+
+  interface Stage {
+    void process(Document document);
+  }
+
+  /**
+   * Processes the documents of a queue and passes them to the next queue, if any, until
+   * the end of the input. A Throwable thrown by the stage becomes the error of its
+   * document, so that the stages keep running until the end of the input.
+   */
+  private void run(BlockingQueue<Document> queue, BlockingQueue<Document> next, Stage stage) {
+    try {
+      while (true) {
+        Document document = queue.take();
+        if (document != END_OF_INPUT) {
+          try {
+            stage.process(document);
+          } catch (Throwable e) {
+            document.errors = new String[]{e.toString()};
+            if (failure == null)
+              failure = e;
+          }
+        }
+        if (next != null)
+          next.put(document);
+        if (document == END_OF_INPUT)
+          return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
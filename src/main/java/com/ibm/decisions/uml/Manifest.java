@@ -0,0 +1,173 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk index of the diagrams already generated. For each BOM it records the
+ * content hash of the BOM, the hash of the diagram options and the output file,
+ * so that a BOM that did not change since the previous run is not read again.
+ * The size and modification time of the BOM are recorded as well: when they did
+ * not change, the BOM is not even hashed.
+ * <p>
+ * The file is a text file with one tab separated line per BOM.
+ */
+public class Manifest {
+  static final String HEADER = "# diagrammer manifest 1";
+
+  final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public static Manifest load(Path file) throws IOException {
+    Manifest manifest = new Manifest();
+    if (Files.exists(file)) {
+      try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.isEmpty() || line.startsWith("#"))
+            continue;
+          String[] fields = line.split("\t");
+          if (fields.length == 6) {
+            Entry entry = new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3], fields[4], fields[5]);
+            manifest.entries.put(fields[0], entry);
+          }
+        }
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * Saves the manifest, going through a temporary file so that an interrupted
+   * run never leaves a truncated manifest.
+   */
+  public void save(Path file) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))) {
+      writer.println(HEADER);
+      for (Map.Entry<String, Entry> e : new TreeMap<>(entries).entrySet()) {
+        Entry entry = e.getValue();
+        writer.println(e.getKey() + '\t' + entry.size + '\t' + entry.lastModified + '\t'
+            + entry.contentHash + '\t' + entry.optionsHash + '\t' + entry.output);
+      }
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Tells whether the diagram of a BOM is up to date, without reading the BOM if
+   * its size and modification time did not change.
+   */
+  public boolean isUpToDate(Path input, Path output, String optionsHash) throws IOException {
+    Entry entry = entries.get(getKey(input));
+    if (entry == null || !isSameOutput(entry, output, optionsHash))
+      return false;
+    BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+    return entry.size == attributes.size()
+        && entry.lastModified == attributes.lastModifiedTime().toMillis();
+  }
+
+  /**
+   * Tells whether the diagram of a BOM whose content has already been read is up
+   * to date. When it is, the recorded size and modification time are refreshed
+   * so that the next check does not need to read the BOM.
+   */
+  public boolean isUpToDate(Path input, byte[] content, Path output, String optionsHash) throws IOException {
+    String key = getKey(input);
+    Entry entry = entries.get(key);
+    if (entry == null || !isSameOutput(entry, output, optionsHash) || !entry.contentHash.equals(hash(content)))
+      return false;
+    BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+    entries.put(key, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(),
+        entry.contentHash, optionsHash, entry.output));
+    return true;
+  }
+
+  private boolean isSameOutput(Entry entry, Path output, String optionsHash) {
+    return entry.optionsHash.equals(optionsHash)
+        && entry.output.equals(getKey(output))
+        && Files.exists(output);
+  }
+
+  /**
+   * Records the diagram generated from a BOM.
+   */
+  public void update(Path input, byte[] content, Path output, String optionsHash) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+    entries.put(getKey(input), new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(),
+        hash(content), optionsHash, getKey(output)));
+  }
+
+  static String getKey(Path path) {
+    // the entries of an archive are identified by their URI, which includes the archive
+    if (path.getFileSystem() != FileSystems.getDefault())
+      return path.toAbsolutePath().normalize().toUri().toString();
+    return path.toAbsolutePath().normalize().toString();
+  }
+
+  public static String hash(byte[] content) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return toHex(digest.digest(content));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static String hash(String text) {
+    return hash(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+      builder.append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  static class Entry {
+    final long size;
+    final long lastModified;
+    final String contentHash;
+    final String optionsHash;
+    final String output;
+
+    Entry(long size, long lastModified, String contentHash, String optionsHash, String output) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.contentHash = contentHash;
+      this.optionsHash = optionsHash;
+      this.output = output;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of a UTF-8 file that memory-maps the file and decodes it into the buffer of the
+ * caller. The mapped bytes are copied by chunks into a small array before being decoded,
+ * as the UTF-8 decoder is much faster on arrays than on mapped buffers. The file is mapped
+ * by regions, so that files larger than 2GB can be read as well.
+ * <p>
+ * Mapping a file has a cost of its own, so {@link #open(Path)} only maps the files of at
+ * least {@link #THRESHOLD} bytes.
+ */
+public class MappedReader extends Reader {
+  /**
+   * The size from which a file is mapped rather than read through a buffered reader.
+   */
+  public static final long THRESHOLD = 8L << 20;
+
+  static final long REGION_SIZE = 1L << 28;
+  static final int CHUNK_SIZE = 1 << 16;
+
+  final FileChannel channel;
+  final long size;
+  final long regionSize;
+  final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+  long regionStart;
+  ByteBuffer region;
+  final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+  boolean flushed;
+  // the low surrogate of a character decoded when there was room for its high surrogate only, or -1
+  int pendingChar = -1;
+  final CharBuffer surrogates = CharBuffer.allocate(2);
+
+  public MappedReader(FileChannel channel, long start) throws IOException {
+    this(channel, start, REGION_SIZE);
+  }
+
+  MappedReader(FileChannel channel, long start, long regionSize) throws IOException {
+    this.channel = channel;
+    this.size = channel.size();
+    this.regionSize = regionSize;
+    map(start);
+    chunk.flip();
+  }
+
+  /**
+   * Returns a reader of a UTF-8 file, mapping the file when it is large enough. The
+   * entries of an archive are never mapped, but inflated while they are read.
+   */
+  public static Reader open(Path path) throws IOException {
+    if (path.getFileSystem() != FileSystems.getDefault() || Files.size(path) < THRESHOLD)
+      return Files.newBufferedReader(path, StandardCharsets.UTF_8);
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new MappedReader(channel, 0);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a UTF-8 reader of the standard input. When the standard input is redirected from a
+   * large enough file, the rest of that file is mapped.
+   */
+  public static Reader openStandardInput() {
+    FileChannel channel = new FileInputStream(FileDescriptor.in).getChannel();
+    try {
+      long position = channel.position();
+      if (channel.size() - position >= THRESHOLD)
+        return new MappedReader(channel, position);
+    } catch (IOException e) {
+      // not a regular file, such as a pipe
+    }
+    return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+  }
+
+  void map(long start) throws IOException {
+    regionStart = start;
+    region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+  }
+
+  /**
+   * Copies the next bytes of the file into the chunk, after the bytes not decoded yet.
+   */
+  void fill() throws IOException {
+    if (!region.hasRemaining())
+      map(regionStart + region.limit());
+    chunk.compact();
+    int limit = region.limit();
+    region.limit(region.position() + Math.min(chunk.remaining(), region.remaining()));
+    chunk.put(region);
+    region.limit(limit);
+    chunk.flip();
+  }
+
+  boolean isEndOfFile() {
+    return !region.hasRemaining() && regionStart + region.limit() == size;
+  }
+
+  @Override
+  public int read(char[] buffer, int offset, int length) throws IOException {
+    if (length == 0)
+      return 0;
+    if (pendingChar >= 0) {
+      buffer[offset] = (char) pendingChar;
+      pendingChar = -1;
+      return 1;
+    }
+    if (flushed)
+      return -1;
+    CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+    while (out.position() == offset) {
+      boolean end = isEndOfFile();
+      CoderResult result = decoder.decode(chunk, out, end);
+      if (result.isOverflow() && out.position() == offset)
+        result = decodeSurrogates(out, end);
+      if (result.isError())
+        result.throwException();
+      if (result.isUnderflow()) {
+        if (end) {
+          decoder.flush(out);
+          flushed = true;
+          break;
+        }
+        fill();
+      }
+    }
+    int count = out.position() - offset;
+    return count == 0 ? -1 : count;
+  }
+
+  /**
+   * Decodes the next character when it does not fit in the single char left in the
+   * buffer: its high surrogate is returned now, and its low surrogate by the next read.
+   */
+  private CoderResult decodeSurrogates(CharBuffer out, boolean end) {
+    surrogates.clear();
+    CoderResult result = decoder.decode(chunk, surrogates, end);
+    surrogates.flip();
+    if (surrogates.hasRemaining()) {
+      out.put(surrogates.get());
+      if (surrogates.hasRemaining())
+        pendingChar = surrogates.get();
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    region = null;
+    channel.close();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.classdiagram.DiagramPartition;
+import com.ibm.decisions.uml.classdiagram.DiagramPartitioning;
+import com.ibm.decisions.uml.classdiagram.DiagramRules;
+import com.ibm.decisions.uml.metrics.DiagramMetrics;
+import com.ibm.decisions.uml.model.DiagramModel;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Writes the diagram of a model as one diagram per partition, plus an index diagram
+ * linking the partitions, into a directory. The diagrams are written, or rendered as
+ * images, by several threads.
+ */
+public class PartitionWriter {
+  final Path directory;
+  final int maxClasses;
+  final int threads;
+  DiagramRenderer renderer;
+  DiagramMetrics metrics;
+  DiagramRules rules = DiagramRules.createDefault();
+
+  /**
+   * @param maxClasses the maximum number of classes of a partition, or 0 for one partition per package
+   */
+  public PartitionWriter(Path directory, int maxClasses, int threads) {
+    this.directory = directory;
+    this.maxClasses = maxClasses;
+    this.threads = Math.max(1, threads);
+  }
+
+  public void setRenderer(DiagramRenderer renderer) {
+    this.renderer = renderer;
+  }
+
+  /**
+   * Records the metrics of the written diagrams in the given metrics.
+   */
+  public void setMetrics(DiagramMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Writes the classes accepted by the given rules, see {@link ClassDiagramWriter#setRules(DiagramRules)}.
+   */
+  public void setRules(DiagramRules rules) {
+    this.rules = rules;
+  }
+
+  String getExtension() {
+    return renderer == null ? BatchRunner.DIAGRAM_EXTENSION : renderer.getExtension();
+  }
+
+  /**
+   * Writes the partitions and the index, returning the written files, the index first.
+   */
+  public List<Path> write(DiagramModel model) throws IOException, InterruptedException {
+    Files.createDirectories(directory);
+    ClassDiagramWriter partitioner = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+    partitioner.setRules(rules);
+    DiagramPartitioning partitioning = partitioner.partition(model, maxClasses);
+
+    List<Callable<Path>> tasks = new ArrayList<>();
+    tasks.add(() -> write(DiagramPartitioning.INDEX,
+        writer -> newClassDiagramWriter(writer).writeIndex(partitioning, getExtension())));
+    for (DiagramPartition partition : partitioning.getPartitions()) {
+      tasks.add(() -> write(partition.getName(),
+          writer -> newClassDiagramWriter(writer).writePartition(partitioning, partition, getExtension())));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Path> files = new ArrayList<>(tasks.size());
+      for (Future<Path> future : executor.invokeAll(tasks)) {
+        try {
+          files.add(future.get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException)
+            throw (IOException) e.getCause();
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+      return files;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private ClassDiagramWriter newClassDiagramWriter(PrintWriter writer) {
+    ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(writer);
+    classDiagramWriter.setMetrics(metrics);
+    classDiagramWriter.setRules(rules);
+    return classDiagramWriter;
+  }
+
+  Path write(String name, DiagramRenderer.Diagram diagram) throws IOException, InterruptedException {
+    Path file = directory.resolve(name + getExtension());
+    OutputStream fileOut = Files.newOutputStream(file);
+    if (metrics != null)
+      fileOut = metrics.countBytes(fileOut);
+    if (renderer == null) {
+      try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fileOut, StandardCharsets.UTF_8)))) {
+        diagram.write(writer);
+      }
+    } else {
+      try (OutputStream out = new BufferedOutputStream(fileOut)) {
+        renderer.render(diagram, out);
+      }
+    }
+    return file;
+  }
+}
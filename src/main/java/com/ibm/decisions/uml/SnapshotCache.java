@@ -0,0 +1,76 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.model.BomSyntaxException;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.ModelReader;
+import com.ibm.decisions.uml.model.ModelSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads BOMs through a {@link ModelSnapshot} written next to each BOM. The snapshot is used
+ * when it was written from the same content by the same parser, otherwise the BOM is parsed
+ * and its snapshot written again.
+ */
+public class SnapshotCache {
+  public static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+  final ModelReader modelReader;
+  final String parser;
+
+  /**
+   * @param parser the name of the parser, part of the snapshot key as parsers may build different models
+   */
+  public SnapshotCache(ModelReader modelReader, String parser) {
+    this.modelReader = modelReader;
+    this.parser = parser;
+  }
+
+  public static Path getSnapshotPath(Path bom) {
+    return bom.resolveSibling(bom.getFileName() + SNAPSHOT_EXTENSION);
+  }
+
+  /**
+   * Returns the model of a BOM, given its content.
+   */
+  public DiagramModel read(Path bom, byte[] content) throws IOException, BomSyntaxException {
+    Path snapshot = getSnapshotPath(bom);
+    String key = Manifest.hash(content) + ";parser=" + parser;
+    DiagramModel model = ModelSnapshot.read(snapshot, key);
+    if (model == null) {
+      model = modelReader.read(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+      ModelSnapshot.write(model, key, snapshot);
+    }
+    return model;
+  }
+
+  public DiagramModel read(Path bom) throws IOException, BomSyntaxException {
+    return read(bom, Files.readAllBytes(bom));
+  }
+}
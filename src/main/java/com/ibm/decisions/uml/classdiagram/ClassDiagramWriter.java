@@ -21,15 +21,14 @@
 **/
 package com.ibm.decisions.uml.classdiagram;
 
-import ilog.rules.bom.*;
-import ilog.rules.bom.util.IlrModelUtilities;
-import ilog.rules.util.IlrVisitable;
-import ilog.rules.util.IlrVisitor;
+import com.ibm.decisions.uml.metrics.DiagramMetrics;
+import com.ibm.decisions.uml.model.*;
+import ilog.rules.bom.IlrObjectModel;
 
 import java.io.PrintWriter;
 import java.util.*;
-
-import static ilog.rules.bom.util.IlrClassUtilities.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Class diagram writer from a BOM
@@ -37,380 +36,1067 @@ import static ilog.rules.bom.util.IlrClassUtilities.*;
  */
 public class ClassDiagramWriter {
 
-  final PrintWriter writer;
+  static final int MIN_CHUNK_SIZE = 64;
+  static final String ADDED_COLOR = "#ccffcc";
+  static final String REMOVED_COLOR = "#ffcccc";
+  static final String MODIFIED_COLOR = "#ffffcc";
+
+  // the classification of a type by the rules
+  static final byte CLASSIFIED = 1;
+  static final byte ACCEPTED = 1 << 1;
+  static final byte INLINED = 1 << 2;
+
+  final DiagramSink sink;
+  boolean streaming;
+  int parallelism = 1;
+  int peakRetainedClasses;
+  DiagramMetrics metrics;
+  FragmentCache fragmentCache;
+  long layoutBudget;
+  LayoutCost layoutCost;
+  Set<Simplification> simplifications = EnumSet.noneOf(Simplification.class);
+  DiagramRules rules = DiagramRules.createDefault();
+  // the visitor of the focus queries, reused while they are on the same model and rules
+  Visitor focusVisitor;
 
+  /**
+   * Creates a writer of PlantUML diagrams.
+   */
   public ClassDiagramWriter(PrintWriter writer) {
-    this.writer = writer;
+    this(new PlantUmlSink(writer));
   }
 
-  public void writeModel(IlrObjectModel model) {
-    model.getStringClass(); // just to avoid missing reference for string
-    Visitor v = new Visitor(model);
+  /**
+   * Creates a writer of diagrams in the format of the given sink. Several formats are
+   * written by a single traversal with a {@link CompositeSink}.
+   */
+  public ClassDiagramWriter(DiagramSink sink) {
+    this.sink = sink;
+  }
 
+  /**
+   * In streaming mode, each class block is flushed as soon as it is written, and
+   * the writer does not keep track of every class it has written.
+   * <p>
+   * The state retained across classes is then the superclasses written ahead of their
+   * own position in the packages. The peak number of retained classes, returned by
+   * {@link #getPeakRetainedClasses()}, is at most the largest number, over the positions
+   * in the packages, of classes after the position that are a superclass, direct or not,
+   * of a class up to the position, plus the superclasses that belong to no package. It is
+   * at most the size of the largest package when classes only extend classes of their package.
+   * Besides the model itself, the peak memory is this retained state, the members
+   * of the current class, its text and the buffer of the underlying writer. The output is
+   * identical to the default mode. The members of the classes of an ODM model are then
+   * converted class by class, see {@link #writeModel(IlrObjectModel)}.
+   */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
   }
 
-  public class Visitor extends IlrVisitor {
-    Set<String> excludedNamespaces = new HashSet<>();
-    Set<String> inlinedAttributeTypes = new HashSet<>();
-    Map<String, String> type2inheritedNode = new HashMap<>();
-    Map<IlrClass, String> visitedClasses = new HashMap<>();
-    final IlrObjectModel model;
+  /**
+   * With a parallelism greater than 1, the class blocks are written by that many threads
+   * of a fork-join pool. The order of the blocks is first computed by the same traversal
+   * as the sequential mode, then consecutive chunks of blocks are written in separate
+   * buffers and the buffers written in order, so the output is identical. Writing a block
+   * only reads the model and the settings of the visitor, and the traversal state is only
+   * used by the calling thread.
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = Math.max(1, parallelism);
+  }
 
-    Visitor(IlrObjectModel model) {
-      this.model = model;
-      excludedNamespaces.add("java");
-      excludedNamespaces.add("ilog.rules.xml");
-      inlinedAttributeTypes.add("java.lang.Double");
-      inlinedAttributeTypes.add("java.util.Float");
-      inlinedAttributeTypes.add("java.util.Boolean");
-      inlinedAttributeTypes.add("java.util.Integer");
-      inlinedAttributeTypes.add("java.util.Short");
-      inlinedAttributeTypes.add("java.util.Byte");
-      inlinedAttributeTypes.add("java.util.Character");
-      inlinedAttributeTypes.add("java.time.ZonedDateTime");
+  /**
+   * Records the traversal and write times, the render time of each class block and the
+   * number of elements written in the given metrics, or nothing when it is null. The
+   * write time is the time spent writing the text of the blocks to the writer, and the
+   * traversal time the rest of the time spent building the text.
+   */
+  public void setMetrics(DiagramMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Reuses the text of the classes found in the given cache, and adds the text of the
+   * other classes to it. The cache only applies to the PlantUML sink, and may be shared
+   * by the writers of several models and threads.
+   */
+  public void setFragmentCache(FragmentCache fragmentCache) {
+    this.fragmentCache = fragmentCache;
+    focusVisitor = null;
+  }
 
-      type2inheritedNode.put("com.ibm.ia.model.Event", "<< (V,#ff704d) Event >>");
-      type2inheritedNode.put("com.ibm.ia.model.Entity", "<< (N,#b3ffd9) Entity >>");
+  /**
+   * With a budget greater than 0, the layout cost of the diagram of a model is estimated
+   * before it is written. While the estimate exceeds the budget, the simplifications are
+   * applied in their order: methods hidden, inlined attributes collapsed, notes on links
+   * dropped, then utility classes folded into a node without members or links. The applied
+   * simplifications are written as a comment in the header of the diagram.
+   */
+  public void setLayoutBudget(long layoutBudget) {
+    this.layoutBudget = layoutBudget;
+  }
+
+  /**
+   * Writes the classes accepted by the given rules, with their attributes and superclasses
+   * shown as the rules tell. By default, the rules are {@link DiagramRules#createDefault()}.
+   */
+  public void setRules(DiagramRules rules) {
+    this.rules = rules;
+    focusVisitor = null;
+  }
+
+  /**
+   * Returns the layout cost estimated by the last call to {@link #writeModel(DiagramModel)}
+   * with a layout budget, or null.
+   */
+  public LayoutCost getLayoutCost() {
+    return layoutCost;
+  }
 
-      visit(model.getDefaultPackage());
-      writer.println();
-      writer.flush();
+  /**
+   * Returns the simplifications applied by the last call to {@link #writeModel(DiagramModel)}.
+   */
+  public Set<Simplification> getSimplifications() {
+    return simplifications;
+  }
+
+  /**
+   * Returns the peak number of classes remembered as written by the last call to
+   * {@link #writeModel(DiagramModel)}.
+   */
+  public int getPeakRetainedClasses() {
+    return peakRetainedClasses;
+  }
+
+  /**
+   * Writes the diagram of an ODM object model. The model is first converted into a
+   * {@link DiagramModel}, which holds a copy of the members of all the classes next to
+   * the ODM model. In sequential streaming mode, only the types and the packages are
+   * converted first: the members of a class are converted before its block is written
+   * and dropped after it.
+   */
+  public void writeModel(IlrObjectModel model) {
+    if (streaming && parallelism == 1) {
+      ObjectModelConverter converter = ObjectModelConverter.convertTypes(model);
+      writeModel(converter.getModel(), converter);
+    } else {
+      writeModel(ObjectModelConverter.convert(model));
     }
+  }
 
+  public void writeModel(DiagramModel model) {
+    writeModel(model, null);
+  }
 
-    public void inspect(IlrPackage pkg) {
-      if (acceptNamespace(pkg.getDisplayName())) {
-        iterateVisit(sort(pkg.getClasses()));
-        iterateVisit(sort(pkg.getNestedPackages()));
+  private void writeModel(DiagramModel model, ObjectModelConverter memberConverter) {
+    peakRetainedClasses = 0;
+    long start = System.nanoTime();
+    Visitor visitor = new Visitor(model);
+    visitor.memberConverter = memberConverter;
+    simplifications = EnumSet.noneOf(Simplification.class);
+    layoutCost = null;
+    if (layoutBudget > 0)
+      visitor.simplify(layoutBudget);
+    if (parallelism > 1) {
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        visitor.writeAll(pool);
+      } finally {
+        pool.shutdown();
       }
+    } else {
+      visitor.writeAll();
     }
+    recordTimes(visitor, start);
+  }
 
-    protected void callAccept(IlrVisitable visitable) {
-      // visitable.accept(this);
-    }
+  /**
+   * Cuts the classes of a model into partitions, one for each package. A package of
+   * more than maxClasses classes is cut into several partitions, unless maxClasses is 0.
+   */
+  public DiagramPartitioning partition(DiagramModel model, int maxClasses) {
+    return new Visitor(model).partition(maxClasses);
+  }
 
+  /**
+   * Writes the diagram of the classes of a partition. The classes of other partitions
+   * that they extend or refer to are declared as stubs, named after their partition
+   * and linked to its file when linkExtension is not null.
+   */
+  public void writePartition(DiagramPartitioning partitioning, DiagramPartition partition, String linkExtension) {
+    long start = System.nanoTime();
+    Visitor visitor = new Visitor(partitioning.getModel());
+    visitor.writePartition(partitioning, partition, linkExtension);
+    recordTimes(visitor, start);
+  }
 
-    private boolean acceptNamespace(String namespace) {
-      if (namespace != null)
-        for (String excluded : excludedNamespaces) {
-          if (namespace.startsWith(excluded))
-            return false;
-        }
-      return true;
-    }
+  /**
+   * Writes the index diagram of a partitioning: a node for each partition, linked to its
+   * file when linkExtension is not null, and the number of references between partitions.
+   */
+  public void writeIndex(DiagramPartitioning partitioning, String linkExtension) {
+    long start = System.nanoTime();
+    Visitor visitor = new Visitor(partitioning.getModel());
+    visitor.writeIndex(partitioning, linkExtension);
+    recordTimes(visitor, start);
+  }
 
-    private boolean acceptClass(IlrClass clazz) {
-      return !clazz.isMissingReference()
-          && acceptNamespace(clazz.getEnclosingNamespace().getDisplayName());
+  /**
+   * Builds the index of the links between the classes written in the diagram of a model.
+   */
+  public RelationIndex indexRelations(DiagramModel model) {
+    return new Visitor(model).indexRelations();
+  }
+
+  /**
+   * Writes the diagram of the classes at most depth links away from the focus class.
+   */
+  public void writeFocus(RelationIndex index, DiagramType focus, int depth) {
+    long start = System.nanoTime();
+    // the visitor is kept across the queries on a model, so that a query only costs its subgraph
+    if (focusVisitor == null || focusVisitor.model != index.getModel())
+      focusVisitor = new Visitor(index.getModel());
+    focusVisitor.writeNanos = 0;
+    focusVisitor.writeSubset(index.getNeighbourhood(focus, depth));
+    recordTimes(focusVisitor, start);
+  }
+
+  /**
+   * Compares two versions of a model, in a time linear in the number of classes.
+   */
+  public ModelDiff compare(DiagramModel oldModel, DiagramModel newModel) {
+    return new Visitor(newModel).compare(oldModel);
+  }
+
+  /**
+   * Writes the diagram of the changes between two models: the added, removed and modified
+   * classes, coloured, and the declarations of the classes linked to them, with those links.
+   * The blocks of the unchanged classes are not written.
+   */
+  public void writeDiff(ModelDiff diff) {
+    long start = System.nanoTime();
+    Visitor visitor = new Visitor(diff.getNewModel());
+    visitor.writeDiff(diff);
+    recordTimes(visitor, start);
+  }
+
+  private void recordTimes(Visitor visitor, long start) {
+    if (metrics != null) {
+      metrics.addWrite(visitor.writeNanos);
+      metrics.addTraverse(System.nanoTime() - start - visitor.writeNanos);
     }
+  }
+
+  public class Visitor {
+    // the classification of each type by the rules, indexed by type id: 0 when not computed yet
+    final byte[] typeClasses;
+    // the hash of the rules, part of the fragment keys
+    final long rulesSignature;
+    // the ids of the written classes
+    final BitSet writtenIds = new BitSet();
+    int writtenCount;
+    // streaming mode: only the classes written ahead of their package
+    Set<DiagramType> visitedClasses = new HashSet<>();
+    // streaming mode: the written classes are tracked by their order, only valid when traversing the packages
+    boolean orderTracking;
+    // streaming mode position: the order of the current class in the package traversal
+    int currentOrder;
+    Stereotype inheritedStereotype;
+    // the partition being written, or null when writing the whole model
+    DiagramPartitioning partitioning;
+    DiagramPartition partition;
+    // the classes to write, or null to write all of them
+    Set<DiagramType> subset;
+    // when not null, the traversal only records the classes in the order they are to be written
+    List<DiagramType> emissionOrder;
+    // the background color of the written classes, or null
+    String classColor;
+    // the comment of the header of the diagram, or null
+    String header;
+    // the work stack of the traversal of the superclasses: the classes and their next superclass
+    DiagramType[] stack = new DiagramType[16];
+    int[] nextSuperclass = new int[16];
+    final DiagramModel model;
+    final DiagramSink sink;
+    // the time spent writing the blocks to the writer, when recording metrics
+    long writeNanos;
+    // when not null, converts the members of each class before it is used, and drops them after
+    ObjectModelConverter memberConverter;
 
+    Visitor(DiagramModel model) {
+      this(model, ClassDiagramWriter.this.sink);
+    }
 
-    public void inspect(IlrClass clazz) {
-      if (acceptClass(clazz)) {
-        if (!visitedClasses.containsKey(clazz)) {
-          visitedClasses.put(clazz, null);
-          // visit super classes first
-          iterateVisit(clazz.getSuperclasses());
-          writeInheritance(clazz);
-          writeClassHeader(clazz);
-          writer.println('{');
-          List<IlrAttribute> rel = writeAttributes(clazz);
+    Visitor(DiagramModel model, DiagramSink sink) {
+      this.model = model;
+      this.sink = sink;
+      this.typeClasses = new byte[model.getTypes().size()];
+      this.rulesSignature = fragmentCache == null ? 0 : rules.getSignature();
+    }
 
-          final List ctors = sortWithParameters(clazz.getConstructors());
-          final List methods = sortWithParameters(clazz.getMethods());
-          if (!ctors.isEmpty()) {
-            writer.println("__");
-            iterateVisit(ctors);
-            if (!methods.isEmpty())
-              writer.println("__");
-          } else if (!methods.isEmpty()) {
+    /**
+     * Estimates the layout cost of the model, then applies the simplifications until it
+     * fits the budget, or all of them.
+     */
+    void simplify(long budget) {
+      layoutCost = new LayoutCost();
+      estimate(model.getDefaultPackage(), layoutCost);
+      long cost = layoutCost.estimate(simplifications);
+      for (Simplification simplification : Simplification.values()) {
+        if (cost <= budget)
+          break;
+        simplifications.add(simplification);
+        long simplified = layoutCost.estimate(simplifications);
+        // a simplification that does not change the diagram is not applied
+        if (simplified == cost)
+          simplifications.remove(simplification);
+        cost = simplified;
+      }
+      if (simplifications.isEmpty())
+        return;
+      StringBuilder comment = new StringBuilder("simplified for a layout budget of ").append(budget)
+          .append(", estimated cost ").append(layoutCost.estimate(EnumSet.noneOf(Simplification.class)))
+          .append(" -> ").append(cost).append(':');
+      String separator = " ";
+      for (Simplification simplification : simplifications) {
+        comment.append(separator).append(simplification.getDescription());
+        separator = ", ";
+      }
+      header = comment.toString();
+      sink.simplify(simplifications);
+    }
 
-            writer.println("__");
+    /**
+     * Counts the nodes, edges, notes and member lines of the classes of a package and of
+     * its nested packages.
+     */
+    private void estimate(DiagramPackage pkg, LayoutCost cost) {
+      if (!acceptNamespace(pkg.getName()))
+        return;
+      for (DiagramType clazz : pkg.getClasses()) {
+        if (!acceptClass(clazz))
+          continue;
+        if (memberConverter != null)
+          memberConverter.convertMembers(clazz);
+        int edges = 0;
+        int notes = 0;
+        int attributeLines = 0;
+        for (DiagramType superClass : clazz.getSuperclasses()) {
+          if (isInheritanceLink(clazz, superClass))
+            ++edges;
+        }
+        for (DiagramAttribute attribute : clazz.getAttributes()) {
+          if (isInlined(attribute)) {
+            ++attributeLines;
+          } else {
+            ++edges;
+            if (attribute.isCollection() || attribute.getType().isArray())
+              ++notes;
           }
-          iterateVisit(methods);
-          writer.println("}");
-          writeRelations(clazz, rel);
+        }
+        int methodLines = clazz.getConstructors().length + clazz.getMethods().length;
+        if (memberConverter != null)
+          memberConverter.releaseMembers(clazz);
+        ++cost.nodes;
+        cost.edges += edges;
+        cost.notes += notes;
+        cost.attributeLines += attributeLines;
+        cost.methodLines += methodLines;
+        if (isUtility(clazz)) {
+          cost.utilityEdges += edges;
+          cost.utilityNotes += notes;
+          cost.utilityAttributeLines += attributeLines;
+          cost.utilityMethodLines += methodLines;
         }
       }
+      for (DiagramPackage nested : pkg.getNestedPackages())
+        estimate(nested, cost);
+    }
 
+    private boolean isUtility(DiagramType clazz) {
+      return clazz.is(DiagramType.UTILITY) && !clazz.is(DiagramType.ENUM);
     }
 
-    protected void writeClassHeader(IlrClass clazz) {
-      if (isEnumClass(clazz)) {
-        writer.print("enum ");
-        printType(clazz);
-      } else if (isUtilityClass(clazz)) {
-        writer.print("class ");
-        printType(clazz);
-        writer.print(" << (U,#99ccff) Utilities >>");
+    void writeAll() {
+      sink.startDiagram();
+      if (header != null)
+        sink.comment(header);
+      if (streaming) {
+        orderTracking = true;
+        inspect(model.getDefaultPackage());
       } else {
-        if (clazz.isInterface()) {
-          writer.print("interface ");
-        } else
-          writer.print("class ");
-        printType(clazz);
-        String inherited = visitedClasses.get(clazz);
-        if (inherited != null) {
-          writer.print(inherited);
+        for (DiagramType clazz : computeOrder()) {
+          writeClassBlock(clazz);
+          writeBlock(sink);
         }
       }
+      sink.endDiagram();
+      writeBlock(sink);
+      flush();
     }
 
+    void writeAll(ForkJoinPool pool) {
+      sink.startDiagram();
+      if (header != null)
+        sink.comment(header);
+      writeBlock(sink);
+      List<DiagramType> classes = computeOrder();
 
-    private void writeInheritance(IlrClass clazz) {
-      List supers = clazz.getSuperclasses();
-      if (supers != null) {
-        IlrObjectModel objectModel = clazz.getObjectModel();
-        for (Object aSuper : supers) {
-          IlrClass superClass = (IlrClass) aSuper;
-          if ((!superClass.isInterface() || clazz.isInterface())
-              && !objectModel.isObjectClass(superClass)) {
-            String inheritedNote = type2inheritedNode.get(superClass.getFullyQualifiedName());
-            if (inheritedNote != null) {
-              visitedClasses.put(clazz, inheritedNote);
-            } else {
-              printType(superClass);
-              writer.print(" <|-- ");
-              printType(clazz);
-              writer.println();
-            }
+      int chunkSize = Math.max(MIN_CHUNK_SIZE, classes.size() / (4 * pool.getParallelism()) + 1);
+      List<ForkJoinTask<DiagramSink>> chunks = new ArrayList<>();
+      for (int start = 0; start < classes.size(); start += chunkSize) {
+        List<DiagramType> chunk = classes.subList(start, Math.min(classes.size(), start + chunkSize));
+        chunks.add(pool.submit(() -> {
+          Visitor visitor = new Visitor(model, sink.fork());
+          for (DiagramType clazz : chunk)
+            visitor.writeClassBlock(clazz);
+          return visitor.sink;
+        }));
+      }
+      // the chunks are written as soon as they and the previous ones are done
+      for (ForkJoinTask<DiagramSink> chunk : chunks) {
+        writeBlock(chunk.join());
+        if (streaming)
+          flush();
+      }
+      sink.endDiagram();
+      writeBlock(sink);
+      flush();
+    }
+
+    /**
+     * Returns the classes of the model in the order they are written: each class after its
+     * superclasses, otherwise in the order of the packages.
+     */
+    List<DiagramType> computeOrder() {
+      emissionOrder = new ArrayList<>();
+      inspect(model.getDefaultPackage());
+      List<DiagramType> classes = emissionOrder;
+      emissionOrder = null;
+      return classes;
+    }
+
+    DiagramPartitioning partition(int maxClasses) {
+      DiagramPartitioning partitioning = new DiagramPartitioning(model);
+      partition(model.getDefaultPackage(), maxClasses, partitioning);
+      return partitioning;
+    }
+
+    private void partition(DiagramPackage pkg, int maxClasses, DiagramPartitioning partitioning) {
+      if (!acceptNamespace(pkg.getName()))
+        return;
+      List<DiagramType> classes = new ArrayList<>();
+      for (DiagramType clazz : pkg.getClasses()) {
+        if (acceptClass(clazz))
+          classes.add(clazz);
+      }
+      if (!classes.isEmpty()) {
+        String name = pkg.getName() == null ? "default" : pkg.getName();
+        int size = maxClasses > 0 ? maxClasses : classes.size();
+        int parts = (classes.size() + size - 1) / size;
+        for (int part = 0; part < parts; ++part) {
+          DiagramPartition partition = partitioning.addPartition(parts == 1 ? name : name + "-" + (part + 1));
+          for (DiagramType clazz : classes.subList(part * size, Math.min(classes.size(), (part + 1) * size)))
+            partitioning.add(partition, clazz);
+        }
+      }
+      for (DiagramPackage nested : pkg.getNestedPackages())
+        partition(nested, maxClasses, partitioning);
+    }
+
+    void writePartition(DiagramPartitioning partitioning, DiagramPartition partition, String linkExtension) {
+      this.partitioning = partitioning;
+      this.partition = partition;
+      sink.startDiagram();
+      Set<DiagramType> stubs = new LinkedHashSet<>();
+      List<DiagramType> references = new ArrayList<>();
+      for (DiagramType clazz : partition.getClasses()) {
+        references.clear();
+        collectReferences(clazz, references);
+        for (DiagramType reference : references) {
+          DiagramPartition other = partitioning.getPartition(reference);
+          if (other != null && other != partition)
+            stubs.add(reference);
+        }
+      }
+      for (DiagramType stub : stubs) {
+        DiagramPartition other = partitioning.getPartition(stub);
+        sink.declaration(stub, new Stereotype('R', "#dddddd", other.getName()),
+            linkExtension == null ? null : other.getName() + linkExtension);
+      }
+      for (DiagramType clazz : partition.getClasses()) {
+        inspect(clazz);
+      }
+      sink.endDiagram();
+      writeBlock(sink);
+      flush();
+    }
+
+    void writeIndex(DiagramPartitioning partitioning, String linkExtension) {
+      sink.startDiagram();
+      List<DiagramPartition> partitions = partitioning.getPartitions();
+      // the number of references from a partition to another one, by source * size + target
+      Map<Long, Integer> counts = new TreeMap<>();
+      List<DiagramType> references = new ArrayList<>();
+      for (DiagramPartition partition : partitions) {
+        sink.partition(partition, linkExtension == null ? null : partition.getName() + linkExtension);
+        for (DiagramType clazz : partition.getClasses()) {
+          references.clear();
+          collectReferences(clazz, references);
+          for (DiagramType reference : references) {
+            DiagramPartition other = partitioning.getPartition(reference);
+            if (other != null && other != partition)
+              counts.merge((long) partition.getIndex() * partitions.size() + other.getIndex(), 1, Integer::sum);
           }
         }
+        writeBlock(sink);
       }
+      for (Map.Entry<Long, Integer> count : counts.entrySet()) {
+        sink.partitionLink(partitions.get((int) (count.getKey() / partitions.size())),
+            partitions.get((int) (count.getKey() % partitions.size())), count.getValue());
+      }
+      sink.endDiagram();
+      writeBlock(sink);
+      flush();
     }
 
-    private List<IlrAttribute> writeAttributes(IlrClass clazz) {
-      final List attributes = clazz.getAttributes();
-      if (attributes != null) {
-        int size = attributes.size();
-        List<IlrAttribute> result = new ArrayList<>(size);
-        for (Object attribute1 : attributes) {
-          IlrAttribute attribute = (IlrAttribute) attribute1;
-          String inlinedTypeRepresentation = getInlinedTypeRepresentation(attribute);
-          if (inlinedTypeRepresentation != null) {
-            writeModifiers(attribute);
-            boolean bold = isBoldAttribute(attribute);
-            if (bold)
-              writer.print("<b>");
-            writer.print(attribute.getName());
-            if (bold)
-              writer.print("</b>");
-
-            writer.print(": ");
-            writer.println(inlinedTypeRepresentation);
-          } else {
-            result.add(attribute);
+    RelationIndex indexRelations() {
+      int[] sources = new int[1024];
+      int[] targets = new int[1024];
+      int count = 0;
+      List<DiagramType> references = new ArrayList<>();
+      for (DiagramType clazz : model.getTypes()) {
+        if (!acceptClass(clazz))
+          continue;
+        references.clear();
+        collectReferences(clazz, references);
+        for (DiagramType reference : references) {
+          if (!acceptClass(reference))
+            continue;
+          if (count == sources.length) {
+            sources = Arrays.copyOf(sources, 2 * count);
+            targets = Arrays.copyOf(targets, 2 * count);
           }
+          sources[count] = clazz.getId();
+          targets[count] = reference.getId();
+          ++count;
         }
-        return result;
       }
-      return Collections.emptyList();
+      return new RelationIndex(model, sources, targets, count);
     }
 
-    private boolean isBoldAttribute(IlrAttribute attribute) {
-      return attribute.getPropertyValue("ia.timestamp") != null
-          || attribute.getPropertyValue("ia.entity.id") != null;
+    void collectClasses(DiagramPackage pkg, List<DiagramType> classes) {
+      if (acceptNamespace(pkg.getName())) {
+        for (DiagramType clazz : pkg.getClasses()) {
+          if (acceptClass(clazz))
+            classes.add(clazz);
+        }
+        for (DiagramPackage nested : pkg.getNestedPackages())
+          collectClasses(nested, classes);
+      }
     }
 
-    private void writeRelations(IlrClass clazz, List<IlrAttribute> attributes) {
-      for (IlrAttribute attribute : attributes) {
-        printType(clazz);
-        writer.print(" --> ");
-        String note = null;
-        IlrDomain domain = attribute.getLocalDomain();
-        if (domain instanceof IlrCollectionDomain) {
-          IlrCollectionDomain collectionDomain = (IlrCollectionDomain) domain;
-          writer.print("\"");
-          writer.print(getMultiplicity(collectionDomain));
-          writer.print("\" ");
-          if (collectionDomain.getElementType() != null) {
-            printType(collectionDomain.getElementType());
-          } else {
-            printType(model.getObjectClass());
-          }
-          note = attribute.getAttributeType().getFullyQualifiedName();
-        } else {
-          IlrType attributeType = attribute.getAttributeType();
-          if (attributeType.isArray()) {
-            note = attributeType.getFullyQualifiedName();
-            while (attributeType.isArray()) {
-              attributeType = attributeType.getComponentType();
-            }
+    ModelDiff compare(DiagramModel oldModel) {
+      List<DiagramType> oldClasses = new ArrayList<>();
+      collectClasses(oldModel.getDefaultPackage(), oldClasses);
+      Map<String, Long> oldSignatures = new HashMap<>(2 * oldClasses.size());
+      for (DiagramType clazz : oldClasses)
+        oldSignatures.put(clazz.getFullyQualifiedName(), ModelDiff.signature(clazz));
+
+      List<DiagramType> classes = new ArrayList<>();
+      collectClasses(model.getDefaultPackage(), classes);
+      List<DiagramType> added = new ArrayList<>();
+      List<DiagramType> modified = new ArrayList<>();
+      Set<String> names = new HashSet<>(2 * classes.size());
+      for (DiagramType clazz : classes) {
+        names.add(clazz.getFullyQualifiedName());
+        Long oldSignature = oldSignatures.get(clazz.getFullyQualifiedName());
+        if (oldSignature == null)
+          added.add(clazz);
+        else if (oldSignature != ModelDiff.signature(clazz))
+          modified.add(clazz);
+      }
+      List<DiagramType> removed = new ArrayList<>();
+      for (DiagramType clazz : oldClasses) {
+        if (!names.contains(clazz.getFullyQualifiedName()))
+          removed.add(clazz);
+      }
+      return new ModelDiff(oldModel, model, added, removed, modified);
+    }
+
+    void writeDiff(ModelDiff diff) {
+      sink.rename(getOldNames(diff));
+      sink.startDiagram();
+      Set<String> declared = new HashSet<>();
+      Set<DiagramType> changed = new HashSet<>(diff.getAdded());
+      changed.addAll(diff.getModified());
+      writeChanged(diff.getAdded(), ADDED_COLOR, declared);
+      writeChanged(diff.getModified(), MODIFIED_COLOR, declared);
+      Visitor oldVisitor = new Visitor(diff.getOldModel());
+      oldVisitor.writeChanged(diff.getRemoved(), REMOVED_COLOR, declared);
+
+      if (!changed.isEmpty()) {
+        RelationIndex index = indexRelations();
+        writeNeighbours(index, diff.getAdded(), changed, declared);
+        writeNeighbours(index, diff.getModified(), changed, declared);
+      }
+      if (!diff.getRemoved().isEmpty())
+        oldVisitor.writeNeighbours(oldVisitor.indexRelations(), diff.getRemoved(), new HashSet<>(diff.getRemoved()), declared);
+      writeNanos += oldVisitor.writeNanos;
+
+      sink.legend(new String[]{"added", "removed", "modified"},
+          new String[]{ADDED_COLOR, REMOVED_COLOR, MODIFIED_COLOR},
+          new int[]{diff.getAdded().size(), diff.getRemoved().size(), diff.getModified().size()});
+      sink.endDiagram();
+      writeBlock(sink);
+      flush();
+    }
+
+    /**
+     * Returns the names of the types of the old model written differently in the diff: the
+     * name in the new model of the same class, or the fully qualified name of a removed class
+     * whose name is used by another class of the new model, such as a class moved to another
+     * package.
+     */
+    private Map<DiagramType, String> getOldNames(ModelDiff diff) {
+      DiagramModel newModel = diff.getNewModel();
+      Set<String> newNames = new HashSet<>();
+      for (DiagramType type : newModel.getTypes())
+        newNames.add(type.getName());
+      Map<DiagramType, String> names = new HashMap<>();
+      for (DiagramType type : diff.getOldModel().getTypes()) {
+        DiagramType newType = newModel.getType(type.getFullyQualifiedName());
+        String name = newType != null ? newType.getName()
+            : newNames.contains(type.getName()) ? type.getFullyQualifiedName() : type.getName();
+        if (!name.equals(type.getName()))
+          names.put(type, name);
+      }
+      return names;
+    }
+
+    private void writeChanged(List<DiagramType> classes, String color, Set<String> declared) {
+      classColor = color;
+      for (DiagramType clazz : classes) {
+        declared.add(clazz.getFullyQualifiedName());
+        writeClassBlock(clazz);
+        writeBlock(sink);
+      }
+      classColor = null;
+    }
+
+    /**
+     * Declares the classes linked to the changed ones, with their links to them.
+     */
+    private void writeNeighbours(RelationIndex index, List<DiagramType> classes, Set<DiagramType> changed, Set<String> declared) {
+      for (DiagramType clazz : classes) {
+        for (DiagramType neighbour : index.getIncoming(clazz))
+          writeNeighbour(neighbour, changed, declared);
+        for (DiagramType neighbour : index.getOutgoing(clazz))
+          writeNeighbour(neighbour, changed, declared);
+      }
+    }
+
+    private void writeNeighbour(DiagramType clazz, Set<DiagramType> changed, Set<String> declared) {
+      if (!declared.add(clazz.getFullyQualifiedName()))
+        return;
+      sink.declaration(clazz, null, null);
+      for (DiagramType superClass : clazz.getSuperclasses()) {
+        if (changed.contains(superClass))
+          sink.inheritance(superClass, clazz);
+      }
+      writeRelations(clazz, changed);
+      writeBlock(sink);
+    }
+
+    void writeSubset(List<DiagramType> classes) {
+      sink.startDiagram();
+      subset = new HashSet<>(classes);
+      for (DiagramType clazz : classes)
+        inspect(clazz);
+      sink.endDiagram();
+      writeBlock(sink);
+      flush();
+      // only the classes of the subset are written: clearing them makes the visitor ready for the next one
+      for (DiagramType clazz : classes)
+        writtenIds.clear(clazz.getId());
+      writtenCount = 0;
+      subset = null;
+    }
+
+    /**
+     * Adds the classes linked from a class in its diagram: its superclasses and the types
+     * of its attributes written as relations.
+     */
+    void collectReferences(DiagramType clazz, Collection<DiagramType> references) {
+      for (DiagramType superClass : clazz.getSuperclasses()) {
+        if ((!superClass.is(DiagramType.INTERFACE) || clazz.is(DiagramType.INTERFACE))
+            && !superClass.is(DiagramType.OBJECT)
+            && rules.getStereotype(superClass.getFullyQualifiedName()) == null)
+          references.add(superClass);
+      }
+      for (DiagramAttribute attribute : clazz.getAttributes()) {
+        if (!isInlined(attribute))
+          references.add(getRelationTarget(attribute));
+      }
+    }
+
+
+    public void inspect(DiagramPackage pkg) {
+      if (acceptNamespace(pkg.getName())) {
+        for (DiagramType clazz : pkg.getClasses()) {
+          currentOrder = clazz.getOrder();
+          inspect(clazz);
+          if (orderTracking) {
+            // from now on, its position tells that it is written
+            visitedClasses.remove(clazz);
           }
-          printType(attributeType);
         }
-        writer.print(" : ");
-        writer.print(attribute.getName());
-        writer.println();
+        for (DiagramPackage nested : pkg.getNestedPackages())
+          inspect(nested);
+      }
+    }
 
-        // add note
-        if (note != null) {
-          writer.println("note on link:" + note);
-        }
+    private boolean isWritten(DiagramType clazz) {
+      if (!orderTracking)
+        return writtenIds.get(clazz.getId());
+      return visitedClasses.contains(clazz)
+          || (clazz.getOrder() >= 0 && clazz.getOrder() < currentOrder);
+    }
+
+    private void setWritten(DiagramType clazz) {
+      if (!orderTracking) {
+        writtenIds.set(clazz.getId());
+        peakRetainedClasses = Math.max(peakRetainedClasses, ++writtenCount);
+      } else if (clazz.getOrder() != currentOrder) {
+        visitedClasses.add(clazz);
+        peakRetainedClasses = Math.max(peakRetainedClasses, visitedClasses.size());
       }
     }
 
-    String getMultiplicity(IlrCollectionDomain domain) {
-      final int min = domain.getMin();
-      final int max = domain.getMax();
-      if (min == max)
-        return "" + min;
-      if (max == IlrCollectionDomain.INFINITE)
-        if (min == 0)
-          return "*";
-        else
-          return min + "..*";
 
-      return min + ".." + max;
+    /**
+     * Tells whether a package is traversed, its classes being accepted one by one.
+     */
+    private boolean acceptNamespace(String namespace) {
+      return rules.acceptPackage(namespace);
+    }
+
+    private boolean acceptClass(DiagramType clazz) {
+      return (classify(clazz) & ACCEPTED) != 0;
+    }
+
+    /**
+     * Returns the classification of a type by the rules, computed on its first use.
+     */
+    private byte classify(DiagramType type) {
+      byte typeClass = typeClasses[type.getId()];
+      if (typeClass == 0) {
+        typeClass = CLASSIFIED;
+        if (!type.is(DiagramType.MISSING_REFERENCE) && rules.acceptNamespace(type.getNamespace()))
+          typeClass |= ACCEPTED;
+        if (type.is(DiagramType.PRIMITIVE) || type.is(DiagramType.STRING) || type.is(DiagramType.ENUM)
+            || rules.isInlinedType(type.getFullyQualifiedName()))
+          typeClass |= INLINED;
+        typeClasses[type.getId()] = typeClass;
+      }
+      return typeClass;
     }
 
-    private String getInlinedTypeRepresentation(IlrAttribute attribute) {
-      String rep = getInlinedTypeRepresentation(attribute.getAttributeType());
 
-      if (rep == null) {
-        IlrDomain domain = attribute.getLocalDomain();
-        if (domain instanceof IlrCollectionDomain) {
-          IlrCollectionDomain collectionDomain = (IlrCollectionDomain) domain;
-          if (collectionDomain.getElementType() != null) {
-            rep =  getInlinedTypeRepresentation(collectionDomain.getElementType());
-            if (rep != null) {
-              return rep + " [" + getMultiplicity(collectionDomain) + "]";
+    /**
+     * Writes a class after its superclasses that are not written yet. The superclasses are
+     * visited depth first with an explicit work stack, so that the depth of the hierarchy
+     * is not limited by the depth of the thread stack.
+     */
+    public void inspect(DiagramType clazz) {
+      if (!enter(clazz))
+        return;
+      int depth = 0;
+      stack[0] = clazz;
+      nextSuperclass[0] = 0;
+      while (depth >= 0) {
+        DiagramType current = stack[depth];
+        DiagramType[] superclasses = current.getSuperclasses();
+        if (nextSuperclass[depth] < superclasses.length) {
+          DiagramType superClass = superclasses[nextSuperclass[depth]++];
+          if (enter(superClass)) {
+            if (++depth == stack.length) {
+              stack = Arrays.copyOf(stack, 2 * depth);
+              nextSuperclass = Arrays.copyOf(nextSuperclass, 2 * depth);
             }
+            stack[depth] = superClass;
+            nextSuperclass[depth] = 0;
           }
+        } else {
+          stack[depth--] = null;
+          emit(current);
         }
       }
-      return rep;
     }
 
-    private String getInlinedTypeRepresentation(IlrType attributeType) {
+    /**
+     * Marks a class as written if it is to be written and not written yet.
+     */
+    private boolean enter(DiagramType clazz) {
+      if (acceptClass(clazz)
+          && (partition == null || partitioning.getPartition(clazz) == partition)
+          && (subset == null || subset.contains(clazz))
+          && !isWritten(clazz)) {
+        setWritten(clazz);
+        return true;
+      }
+      return false;
+    }
 
-      if (attributeType.isPrimitiveType()
-          || attributeType == model.getStringClass()
-          || inlinedAttributeTypes.contains(attributeType.getFullyQualifiedName())
-          || isEnumClass(attributeType))
-          return getShortName(attributeType);
+    private void emit(DiagramType clazz) {
+      if (emissionOrder != null) {
+        emissionOrder.add(clazz);
+        return;
+      }
+      if (memberConverter != null)
+        memberConverter.convertMembers(clazz);
+      writeClassBlock(clazz);
+      if (memberConverter != null)
+        memberConverter.releaseMembers(clazz);
+      writeBlock(sink);
+      if (streaming)
+        flush();
+    }
 
-       if(attributeType.isArray()) {
-         String rep = getInlinedTypeRepresentation(attributeType.getComponentType());
-         if (rep != null)
-           return rep+"[]";
-       };
-       return null;
+    private void writeBlock(DiagramSink sink) {
+      if (metrics == null) {
+        sink.writeBlock();
+        return;
+      }
+      long start = System.nanoTime();
+      sink.writeBlock();
+      writeNanos += System.nanoTime() - start;
     }
 
+    private void flush() {
+      long start = System.nanoTime();
+      sink.flush();
+      writeNanos += System.nanoTime() - start;
+    }
 
+    private void writeClassBlock(DiagramType clazz) {
+      if (metrics == null) {
+        writeClass(clazz);
+        return;
+      }
+      long start = System.nanoTime();
+      writeClass(clazz);
+      long nanos = System.nanoTime() - start;
+      int inlined = 0;
+      for (DiagramAttribute attribute : clazz.getAttributes()) {
+        if (isInlined(attribute))
+          ++inlined;
+      }
+      int operators = 0;
+      for (DiagramMethod method : clazz.getMethods()) {
+        if (method.isOperator())
+          ++operators;
+      }
+      metrics.addClass(clazz.getFullyQualifiedName(), nanos, clazz.getAttributes().length, inlined,
+          clazz.getConstructors().length + clazz.getMethods().length - operators, operators);
+    }
 
-    void printType(IlrType type) {
-      String FQN = type.getFullyQualifiedName();
-      String shortName = model.getShortname(FQN);
-      writer.print(shortName);
+    /**
+     * Writes the block of a class and its relations. It only depends on the class, so the
+     * blocks of different classes can be written by different visitors.
+     */
+    void writeClass(DiagramType clazz) {
+      if (fragmentCache != null && classColor == null && sink instanceof PlantUmlSink) {
+        writeFragment(clazz, ((PlantUmlSink) sink).out);
+        return;
+      }
+      writeClassElements(clazz);
     }
 
-    void printShortType(IlrType type) {
-        writer.print(getShortName(type));
+    /**
+     * Writes the text of a class from the fragment cache, or writes it and adds it to the cache.
+     */
+    private void writeFragment(DiagramType clazz, DiagramEmitter out) {
+      String name = clazz.getFullyQualifiedName();
+      long key = getFragmentKey(clazz);
+      String fragment = fragmentCache.get(name, key);
+      if (fragment != null) {
+        out.print(fragment);
+        return;
+      }
+      int start = out.buffer.length();
+      writeClassElements(clazz);
+      fragmentCache.put(name, key, out.buffer.substring(start));
     }
 
-    String getShortName(IlrType type) {
+    /**
+     * Returns the key of the text of a class: its signature, its name, and what its text
+     * shows of other classes, the kind of its superclasses and of the types of its attributes.
+     */
+    private long getFragmentKey(DiagramType clazz) {
+      long hash = ModelDiff.hash(ModelDiff.signature(clazz), clazz.getFullyQualifiedName());
+      // the names written depend on the model: a short name becomes qualified when it is ambiguous
+      hash = ModelDiff.hash(hash, clazz.getName());
+      for (DiagramType superClass : clazz.getSuperclasses()) {
+        hash = ModelDiff.hash(hash, superClass.getFlags());
+        hash = ModelDiff.hash(hash, superClass.getName());
+      }
+      for (DiagramAttribute attribute : clazz.getAttributes()) {
+        for (DiagramType type = attribute.getType(); type != null; type = type.getComponentType())
+          hash = hashType(hash, type);
+        for (DiagramType type = attribute.getElementType(); type != null; type = type.getComponentType())
+          hash = hashType(hash, type);
+        DiagramType target = getRelationTarget(attribute);
+        hash = ModelDiff.hash(hash, target);
+        hash = ModelDiff.hash(hash, target == null ? null : target.getName());
+      }
+      hash = hashMemberTypes(hash, clazz.getConstructors());
+      hash = hashMemberTypes(hash, clazz.getMethods());
+      for (Simplification simplification : simplifications)
+        hash = ModelDiff.hash(hash, simplification.ordinal());
+      hash = ModelDiff.hash(hash, (int) rulesSignature);
+      return ModelDiff.hash(hash, (int) (rulesSignature >>> 32));
+    }
 
-      String FQN = type.getFullyQualifiedName();
-      String shortName = model.getShortname(FQN);
-      if (shortName != FQN)
-        return shortName;
-      else
-        return type.getShortDisplayName();
+    private long hashType(long hash, DiagramType type) {
+      return ModelDiff.hash(ModelDiff.hash(hash, type.getFlags()), type.getName());
     }
 
-    List sort(List list) {
-      if (list != null) {
-        ArrayList newList = new ArrayList(list);
-        Collections.sort(newList, IlrModelUtilities.ModelElementComparator);
-        return newList;
+    private long hashMemberTypes(long hash, DiagramMethod[] methods) {
+      for (DiagramMethod method : methods) {
+        if (method.getReturnType() != null)
+          hash = ModelDiff.hash(hash, method.getReturnType().getName());
+        for (DiagramType parameterType : method.getParameterTypes())
+          hash = ModelDiff.hash(hash, parameterType.getName());
       }
-      return Collections.emptyList();
+      return hash;
     }
 
-    List sortWithParameters(List list) {
-      if (list != null) {
-        ArrayList newList = new ArrayList(list);
-        Collections.sort(newList, IlrModelUtilities.MemberWithParametersComparator);
-        return newList;
+    private void writeClassElements(DiagramType clazz) {
+      if (simplifications.contains(Simplification.FOLD_UTILITIES) && isUtility(clazz)) {
+        sink.declaration(clazz, Stereotype.UTILITIES, null);
+        return;
       }
-      return Collections.emptyList();
+      writeInheritance(clazz);
+      sink.startClass(clazz, getStereotype(clazz), classColor);
+      writeAttributes(clazz);
+      if (!simplifications.contains(Simplification.HIDE_METHODS))
+        writeMethods(clazz);
+      sink.endClass(clazz);
+      writeRelations(clazz, null);
+    }
 
+    private void writeMethods(DiagramType clazz) {
+      for (DiagramMethod ctor : clazz.getConstructors())
+        sink.constructor(ctor);
+      for (DiagramMethod method : clazz.getMethods())
+        sink.method(method);
     }
 
-    public void inspect(IlrMethod method) {
-      //if (!acceptsMethod(method))
-      //  return;
-      IlrType retType = method.getReturnType();
-      writeModifiers(method);
-      //writeMethodModifiers(method);
-      String methodName = method.getName();
-      if (method.getGenericInfo() != null) {
-        IlrType[] typeParameters = method.getGenericInfo().getTypeParameters();
-        GenericSignatureWriter gwriter = new GenericSignatureWriter(method);
-        gwriter.write(typeParameters);
-        writer.print(gwriter.toString());
-        writer.print(' ');
+    private Stereotype getStereotype(DiagramType clazz) {
+      if (clazz.is(DiagramType.ENUM))
+        return null;
+      if (clazz.is(DiagramType.UTILITY))
+        return Stereotype.UTILITIES;
+      return inheritedStereotype;
+    }
+
+    private void writeInheritance(DiagramType clazz) {
+      inheritedStereotype = null;
+      for (DiagramType superClass : clazz.getSuperclasses()) {
+        if ((!superClass.is(DiagramType.INTERFACE) || clazz.is(DiagramType.INTERFACE))
+            && !superClass.is(DiagramType.OBJECT)) {
+          Stereotype stereotype = rules.getStereotype(superClass.getFullyQualifiedName());
+          if (stereotype != null) {
+            inheritedStereotype = stereotype;
+          } else {
+            sink.inheritance(superClass, clazz);
+          }
+        }
       }
-      if (method.isConstructor()) {
-        writer.print(methodName);
-      } else if (method.isOperator()) {
-        if (!method.getReturnType().getFullyQualifiedName().equals(methodName))
-          printType(retType);
-        writer.print(' ');
-        writer.print("operator ");
-        writer.print(methodName);
-      } else {
-        // regular method
-        printType(retType);
-
-        writer.print(' ');
-        writer.print(methodName);
-      }
-      writer.print('(');
-
-      writeParameterList(method.getParameters(), method.isVarArgs());
-      writer.println(')');
-
-      /*
-      writeThrowsClause(method.getMethodExceptions());
-      printMemberFooter(method);
-      */
-    }
-
-    void writeModifiers(IlrMember member) {
-      if (member.isStatic())
-        writer.print("{static} ");
-      //if (member.)
-    }
-
-    void writeParameterList(List parameters, boolean isVarArgs) {
-      if (parameters != null) {
-
-        int count = parameters.size();
-        int length = 0;
-        for (int i = 0; i < count; ++i) {
-          if (i > 0)
-            writer.print(",\n\\t");
-          IlrParameter param = (IlrParameter) parameters.get(i);
-          if (isVarArgs && i == count - 1) {
-            printShortType(param.getParameterType().getComponentType());
-            writer.print("...");
-          } else
-            printShortType(param.getParameterType());
-          writer.print(' ');
-          writer.print(param.getName());
-          /* todo
-          if (param.getParameterDomain() != null) {
-            space().printsp(DOMAIN);
-            visit(param.getParameterDomain());
+    }
+
+    /**
+     * Tells whether the link from a class to one of its superclasses is written.
+     */
+    private boolean isInheritanceLink(DiagramType clazz, DiagramType superClass) {
+      return (!superClass.is(DiagramType.INTERFACE) || clazz.is(DiagramType.INTERFACE))
+          && !superClass.is(DiagramType.OBJECT)
+          && rules.getStereotype(superClass.getFullyQualifiedName()) == null;
+    }
+
+    /**
+     * Writes the attributes that are inlined in the class block, with the inlined type
+     * they are shown with: the element type of a collection, without its array dimensions.
+     */
+    private void writeAttributes(DiagramType clazz) {
+      if (simplifications.contains(Simplification.COLLAPSE_ATTRIBUTES))
+        return;
+      for (DiagramAttribute attribute : clazz.getAttributes()) {
+        if (isInlined(attribute)) {
+          boolean collection = !isInlined(attribute.getType());
+          DiagramType type = collection ? attribute.getElementType() : attribute.getType();
+          int dimensions = 0;
+          while (!isInlinedType(type)) {
+            type = type.getComponentType();
+            ++dimensions;
           }
-          */
+          sink.attribute(attribute, type, dimensions, collection, isBoldAttribute(attribute));
         }
       }
     }
 
+    private boolean isBoldAttribute(DiagramAttribute attribute) {
+      return attribute.is(DiagramAttribute.TIMESTAMP)
+          || attribute.is(DiagramAttribute.ENTITY_ID);
+    }
+
+    /**
+     * Writes the relations of the attributes that are not inlined in the class block, or
+     * only those to the given targets when they are not null.
+     */
+    private void writeRelations(DiagramType clazz, Set<DiagramType> targets) {
+      for (DiagramAttribute attribute : clazz.getAttributes()) {
+        if (isInlined(attribute))
+          continue;
+        DiagramType target = getRelationTarget(attribute);
+        if (targets == null || targets.contains(target))
+          sink.relation(clazz, attribute, target);
+      }
+    }
+
+    /**
+     * Returns the class at the other end of the relation of an attribute: the element type
+     * of a collection, or the component type of an array.
+     */
+    private DiagramType getRelationTarget(DiagramAttribute attribute) {
+      if (attribute.isCollection())
+        return attribute.getElementType() != null ? attribute.getElementType() : model.getObjectClass();
+      DiagramType attributeType = attribute.getType();
+      while (attributeType.isArray()) {
+        attributeType = attributeType.getComponentType();
+      }
+      return attributeType;
+    }
+
+    /**
+     * Tells whether the attribute is written in the class block, rather than as a relation.
+     */
+    private boolean isInlined(DiagramAttribute attribute) {
+      return isInlined(attribute.getType())
+          || attribute.isCollection() && attribute.getElementType() != null && isInlined(attribute.getElementType());
+    }
+
+    private boolean isInlined(DiagramType attributeType) {
+      if (isInlinedType(attributeType))
+        return true;
+      return attributeType.isArray() && isInlined(attributeType.getComponentType());
+    }
+
+    private boolean isInlinedType(DiagramType attributeType) {
+      return (classify(attributeType) & INLINED) != 0;
+    }
+
   }
 
 
@@ -0,0 +1,157 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramAttribute;
+import com.ibm.decisions.uml.model.DiagramMethod;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Forwards the elements of a diagram to several sinks, to write a diagram in several
+ * formats from a single traversal of the model.
+ */
+public class CompositeSink implements DiagramSink {
+  final DiagramSink[] sinks;
+
+  public CompositeSink(DiagramSink... sinks) {
+    this.sinks = sinks;
+  }
+
+  @Override
+  public void simplify(Set<Simplification> simplifications) {
+    for (DiagramSink sink : sinks)
+      sink.simplify(simplifications);
+  }
+
+  @Override
+  public void rename(Map<DiagramType, String> names) {
+    for (DiagramSink sink : sinks)
+      sink.rename(names);
+  }
+
+  @Override
+  public void startDiagram() {
+    for (DiagramSink sink : sinks)
+      sink.startDiagram();
+  }
+
+  @Override
+  public void comment(String text) {
+    for (DiagramSink sink : sinks)
+      sink.comment(text);
+  }
+
+  @Override
+  public void inheritance(DiagramType superClass, DiagramType clazz) {
+    for (DiagramSink sink : sinks)
+      sink.inheritance(superClass, clazz);
+  }
+
+  @Override
+  public void startClass(DiagramType clazz, Stereotype stereotype, String color) {
+    for (DiagramSink sink : sinks)
+      sink.startClass(clazz, stereotype, color);
+  }
+
+  @Override
+  public void attribute(DiagramAttribute attribute, DiagramType type, int dimensions, boolean collection, boolean bold) {
+    for (DiagramSink sink : sinks)
+      sink.attribute(attribute, type, dimensions, collection, bold);
+  }
+
+  @Override
+  public void constructor(DiagramMethod constructor) {
+    for (DiagramSink sink : sinks)
+      sink.constructor(constructor);
+  }
+
+  @Override
+  public void method(DiagramMethod method) {
+    for (DiagramSink sink : sinks)
+      sink.method(method);
+  }
+
+  @Override
+  public void endClass(DiagramType clazz) {
+    for (DiagramSink sink : sinks)
+      sink.endClass(clazz);
+  }
+
+  @Override
+  public void relation(DiagramType clazz, DiagramAttribute attribute, DiagramType target) {
+    for (DiagramSink sink : sinks)
+      sink.relation(clazz, attribute, target);
+  }
+
+  @Override
+  public void declaration(DiagramType clazz, Stereotype stereotype, String link) {
+    for (DiagramSink sink : sinks)
+      sink.declaration(clazz, stereotype, link);
+  }
+
+  @Override
+  public void partition(DiagramPartition partition, String link) {
+    for (DiagramSink sink : sinks)
+      sink.partition(partition, link);
+  }
+
+  @Override
+  public void partitionLink(DiagramPartition source, DiagramPartition target, int count) {
+    for (DiagramSink sink : sinks)
+      sink.partitionLink(source, target, count);
+  }
+
+  @Override
+  public void legend(String[] labels, String[] colors, int[] counts) {
+    for (DiagramSink sink : sinks)
+      sink.legend(labels, colors, counts);
+  }
+
+  @Override
+  public void endDiagram() {
+    for (DiagramSink sink : sinks)
+      sink.endDiagram();
+  }
+
+  @Override
+  public void writeBlock() {
+    for (DiagramSink sink : sinks)
+      sink.writeBlock();
+  }
+
+  @Override
+  public void flush() {
+    for (DiagramSink sink : sinks)
+      sink.flush();
+  }
+
+  @Override
+  public DiagramSink fork() {
+    DiagramSink[] forks = new DiagramSink[sinks.length];
+    for (int i = 0; i < sinks.length; ++i)
+      forks[i] = sinks[i].fork();
+    return new CompositeSink(forks);
+  }
+}
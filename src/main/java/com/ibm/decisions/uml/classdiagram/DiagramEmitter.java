@@ -0,0 +1,101 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramAttribute;
+
+import java.io.PrintWriter;
+
+/**
+ * Buffer of the text of a class block. The text is appended to a reused builder and
+ * written to the underlying writer in a single call when the block is complete, rather
+ * than token by token.
+ */
+class DiagramEmitter {
+  static final String LINE_SEPARATOR = System.lineSeparator();
+
+  final PrintWriter writer;
+  final StringBuilder buffer = new StringBuilder(1024);
+  char[] chars = new char[1024];
+
+  DiagramEmitter(PrintWriter writer) {
+    this.writer = writer;
+  }
+
+  DiagramEmitter print(String text) {
+    buffer.append(text);
+    return this;
+  }
+
+  DiagramEmitter print(char c) {
+    buffer.append(c);
+    return this;
+  }
+
+  DiagramEmitter print(int i) {
+    buffer.append(i);
+    return this;
+  }
+
+  /**
+   * Ends the line with the line separator, as {@link PrintWriter#println()} does.
+   */
+  DiagramEmitter println() {
+    buffer.append(LINE_SEPARATOR);
+    return this;
+  }
+
+  DiagramEmitter println(String text) {
+    return print(text).println();
+  }
+
+  DiagramEmitter println(char c) {
+    return print(c).println();
+  }
+
+  /**
+   * Prints the multiplicity of a collection: "n", "*", "n..*" or "n..m".
+   */
+  DiagramEmitter printMultiplicity(DiagramAttribute domain) {
+    final int min = domain.getMin();
+    final int max = domain.getMax();
+    if (min == max)
+      return print(min);
+    if (max == DiagramAttribute.INFINITE)
+      return min == 0 ? print('*') : print(min).print("..*");
+    return print(min).print("..").print(max);
+  }
+
+  /**
+   * Writes the buffered text to the writer and clears the buffer.
+   */
+  void writeBlock() {
+    int length = buffer.length();
+    if (length == 0)
+      return;
+    if (chars.length < length)
+      chars = new char[Math.max(length, 2 * chars.length)];
+    buffer.getChars(0, length, chars, 0);
+    writer.write(chars, 0, length);
+    buffer.setLength(0);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import java.io.PrintWriter;
+
+/**
+ * The text formats in which a class diagram can be written.
+ */
+public final class DiagramFormats {
+  public static final String PLANTUML = "puml";
+  public static final String MERMAID = "mermaid";
+  public static final String DOT = "dot";
+  public static final String JSON = "json";
+
+  private DiagramFormats() {
+  }
+
+  public static boolean isSupported(String format) {
+    return PLANTUML.equals(format) || MERMAID.equals(format) || DOT.equals(format) || JSON.equals(format);
+  }
+
+  /**
+   * Returns the file extension of a text format.
+   */
+  public static String getExtension(String format) {
+    switch (format) {
+      case PLANTUML:
+        return ".puml";
+      case MERMAID:
+        return ".mmd";
+      case DOT:
+        return ".dot";
+      case JSON:
+        return ".json";
+      default:
+        throw new IllegalArgumentException("Unsupported diagram format: " + format);
+    }
+  }
+
+  /**
+   * Creates the sink writing a diagram in a text format to a writer.
+   */
+  public static DiagramSink createSink(String format, PrintWriter writer) {
+    switch (format) {
+      case PLANTUML:
+        return new PlantUmlSink(writer);
+      case MERMAID:
+        return new MermaidSink(writer);
+      case DOT:
+        return new DotSink(writer);
+      case JSON:
+        return new JsonSink(writer);
+      default:
+        throw new IllegalArgumentException("Unsupported diagram format: " + format);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A part of a partitioned class diagram: the classes of a package, or a slice of them
+ * when the package is too large.
+ */
+public class DiagramPartition {
+  final String name;
+  final int index;
+  final List<DiagramType> classes = new ArrayList<>();
+
+  DiagramPartition(String name, int index) {
+    this.name = name;
+    this.index = index;
+  }
+
+  /**
+   * Returns the name of the partition, also the base name of its file.
+   */
+  public String getName() {
+    return name;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public List<DiagramType> getClasses() {
+    return Collections.unmodifiableList(classes);
+  }
+}
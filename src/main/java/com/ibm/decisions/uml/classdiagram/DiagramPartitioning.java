@@ -0,0 +1,86 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The partitions of a model, built by {@link ClassDiagramWriter#partition(DiagramModel, int)}.
+ * Each class written in a diagram belongs to exactly one partition.
+ */
+public class DiagramPartitioning {
+  public static final String INDEX = "index";
+
+  final DiagramModel model;
+  final List<DiagramPartition> partitions = new ArrayList<>();
+  // the partition of each type, by type id
+  final DiagramPartition[] partitionsByType;
+  // the names of the partitions and of the index, in lower case as they name files
+  final Set<String> names = new HashSet<>();
+
+  DiagramPartitioning(DiagramModel model) {
+    this.model = model;
+    this.partitionsByType = new DiagramPartition[model.getTypes().size()];
+    names.add(INDEX);
+  }
+
+  public DiagramModel getModel() {
+    return model;
+  }
+
+  public List<DiagramPartition> getPartitions() {
+    return Collections.unmodifiableList(partitions);
+  }
+
+  /**
+   * Returns the partition of a type, or null if the type is not written in any diagram.
+   */
+  public DiagramPartition getPartition(DiagramType type) {
+    return partitionsByType[type.getId()];
+  }
+
+  /**
+   * Adds a partition, with a suffix added to its name if it is already used by another
+   * partition or by the index.
+   */
+  DiagramPartition addPartition(String name) {
+    String unique = name;
+    for (int n = 2; !names.add(unique.toLowerCase(Locale.ROOT)); ++n)
+      unique = name + "_" + n;
+    DiagramPartition partition = new DiagramPartition(unique, partitions.size());
+    partitions.add(partition);
+    return partition;
+  }
+
+  void add(DiagramPartition partition, DiagramType type) {
+    partition.classes.add(type);
+    partitionsByType[type.getId()] = partition;
+  }
+}
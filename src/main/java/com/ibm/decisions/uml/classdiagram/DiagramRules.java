@@ -0,0 +1,281 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The rules telling which classes are written and how: the namespaces included and
+ * excluded, the types of the attributes inlined in the class blocks, and the
+ * superclasses shown as a stereotype rather than as an inheritance link.
+ * <p>
+ * A namespace pattern matches the namespaces starting with it, a trailing '*' being
+ * ignored. The longest pattern matching a namespace decides whether it is written;
+ * when there are include patterns, the namespaces matching none are excluded. The
+ * patterns are compiled into a prefix trie, so matching a namespace costs the length
+ * of the namespace, whatever the number of patterns.
+ * <p>
+ * Rule files have one rule per line, blank lines and lines starting with '#' being ignored:
+ * <pre>
+ * include com.acme
+ * exclude com.acme.internal
+ * inline java.math.BigDecimal
+ * stereotype com.acme.Message Message M #ffcc66
+ * </pre>
+ * The rules are not modified while diagrams are written, they can then be shared by threads.
+ */
+public class DiagramRules {
+  static final byte INCLUDE = 1;
+  static final byte EXCLUDE = 2;
+
+  /**
+   * A node of the trie of the namespace patterns: a pattern ends at the node when its
+   * rule is set.
+   */
+  static class Node {
+    char[] keys = new char[0];
+    Node[] children = new Node[0];
+    byte rule;
+    // an include pattern ends at this node or below
+    boolean includes;
+
+    Node get(char key) {
+      for (int i = 0; i < keys.length; ++i) {
+        if (keys[i] == key)
+          return children[i];
+      }
+      return null;
+    }
+
+    Node add(char key) {
+      Node child = get(key);
+      if (child == null) {
+        child = new Node();
+        keys = Arrays.copyOf(keys, keys.length + 1);
+        children = Arrays.copyOf(children, children.length + 1);
+        keys[keys.length - 1] = key;
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+  }
+
+  final Node root = new Node();
+  final Map<String, Byte> patterns = new TreeMap<>();
+  final Set<String> inlinedTypes = new HashSet<>();
+  final Map<String, Stereotype> stereotypes = new HashMap<>();
+
+  /**
+   * Returns the default rules: the java and ilog.rules.xml namespaces are excluded, the
+   * wrappers of the primitive types are inlined, and the subclasses of the DSI entities
+   * and events get their stereotype.
+   */
+  public static DiagramRules createDefault() {
+    DiagramRules rules = new DiagramRules();
+    rules.exclude("java");
+    rules.exclude("ilog.rules.xml");
+    rules.inline("java.lang.Double");
+    rules.inline("java.lang.Float");
+    rules.inline("java.lang.Boolean");
+    rules.inline("java.lang.Integer");
+    rules.inline("java.lang.Short");
+    rules.inline("java.lang.Byte");
+    rules.inline("java.lang.Character");
+    rules.inline("java.time.ZonedDateTime");
+    rules.stereotype("com.ibm.ia.model.Event", Stereotype.EVENT);
+    rules.stereotype("com.ibm.ia.model.Entity", Stereotype.ENTITY);
+    return rules;
+  }
+
+  public void include(String pattern) {
+    addPattern(pattern, INCLUDE);
+  }
+
+  public void exclude(String pattern) {
+    addPattern(pattern, EXCLUDE);
+  }
+
+  private void addPattern(String pattern, byte rule) {
+    if (pattern.endsWith("*"))
+      pattern = pattern.substring(0, pattern.length() - 1);
+    patterns.put(pattern, rule);
+    Node node = root;
+    node.includes |= rule == INCLUDE;
+    for (int i = 0; i < pattern.length(); ++i) {
+      node = node.add(pattern.charAt(i));
+      node.includes |= rule == INCLUDE;
+    }
+    node.rule = rule;
+  }
+
+  /**
+   * Inlines the attributes of the given type, and of its arrays, in the class blocks.
+   */
+  public void inline(String fullyQualifiedName) {
+    inlinedTypes.add(fullyQualifiedName);
+  }
+
+  /**
+   * Shows the subclasses of the given class with a stereotype, instead of an inheritance link.
+   */
+  public void stereotype(String fullyQualifiedName, Stereotype stereotype) {
+    stereotypes.put(fullyQualifiedName, stereotype);
+  }
+
+  /**
+   * Adds the rules of a file.
+   *
+   * @throws IllegalArgumentException if a line is not a rule
+   */
+  public void load(Path file) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        ++lineNumber;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#"))
+          continue;
+        String[] fields = line.split("\\s+");
+        if (!addRule(fields))
+          throw new IllegalArgumentException(file + " line " + lineNumber + ": unknown rule '" + line + "'");
+      }
+    }
+  }
+
+  private boolean addRule(String[] fields) {
+    switch (fields[0]) {
+      case "include":
+        if (fields.length != 2)
+          return false;
+        include(fields[1]);
+        return true;
+      case "exclude":
+        if (fields.length != 2)
+          return false;
+        exclude(fields[1]);
+        return true;
+      case "inline":
+        if (fields.length != 2)
+          return false;
+        inline(fields[1]);
+        return true;
+      case "stereotype":
+        if (fields.length < 3)
+          return false;
+        Stereotype stereotype = getStereotype(Arrays.copyOfRange(fields, 2, fields.length));
+        if (stereotype == null)
+          return false;
+        stereotype(fields[1], stereotype);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the stereotype with a name, a spot letter and a color, or one of the predefined
+   * stereotypes given by its name only.
+   */
+  private static Stereotype getStereotype(String[] fields) {
+    if (fields.length == 1) {
+      for (Stereotype stereotype : new Stereotype[]{Stereotype.UTILITIES, Stereotype.EVENT, Stereotype.ENTITY}) {
+        if (stereotype.getName().equals(fields[0]))
+          return stereotype;
+      }
+    } else if (fields.length == 3 && fields[1].length() == 1) {
+      return new Stereotype(fields[1].charAt(0), fields[2], fields[0]);
+    }
+    return null;
+  }
+
+  /**
+   * Tells whether the classes of a namespace are written. The default namespace is
+   * always accepted.
+   */
+  public boolean acceptNamespace(String namespace) {
+    if (namespace == null)
+      return true;
+    byte rule = root.rule != 0 ? root.rule : root.includes ? EXCLUDE : INCLUDE;
+    Node node = root;
+    for (int i = 0; i < namespace.length(); ++i) {
+      node = node.get(namespace.charAt(i));
+      if (node == null)
+        break;
+      if (node.rule != 0)
+        rule = node.rule;
+    }
+    return rule == INCLUDE;
+  }
+
+  /**
+   * Tells whether a package is traversed: its classes are written, or the classes of
+   * its nested packages may be, when its name starts an include pattern.
+   */
+  public boolean acceptPackage(String name) {
+    if (acceptNamespace(name))
+      return true;
+    Node node = root;
+    for (int i = 0; i < name.length() && node != null; ++i)
+      node = node.get(name.charAt(i));
+    return node != null && node.includes;
+  }
+
+  public boolean isInlinedType(String fullyQualifiedName) {
+    return inlinedTypes.contains(fullyQualifiedName);
+  }
+
+  /**
+   * Returns the stereotype of the subclasses of a class, or null if it is an inheritance link.
+   */
+  public Stereotype getStereotype(String fullyQualifiedName) {
+    return stereotypes.get(fullyQualifiedName);
+  }
+
+  /**
+   * Returns a hash of the rules, equal for the same rules whatever their order.
+   */
+  public long getSignature() {
+    long hash = ModelDiff.hash(ModelDiff.FNV_OFFSET, patterns.size());
+    for (Map.Entry<String, Byte> entry : patterns.entrySet()) {
+      hash = ModelDiff.hash(hash, entry.getKey());
+      hash = ModelDiff.hash(hash, entry.getValue());
+    }
+    hash = ModelDiff.hash(hash, inlinedTypes.size());
+    for (String type : new TreeSet<>(inlinedTypes))
+      hash = ModelDiff.hash(hash, type);
+    hash = ModelDiff.hash(hash, stereotypes.size());
+    for (Map.Entry<String, Stereotype> entry : new TreeMap<>(stereotypes).entrySet()) {
+      Stereotype stereotype = entry.getValue();
+      hash = ModelDiff.hash(hash, entry.getKey());
+      hash = ModelDiff.hash(hash, stereotype.getName());
+      hash = ModelDiff.hash(hash, stereotype.getSpot());
+      hash = ModelDiff.hash(hash, stereotype.getColor());
+    }
+    return hash;
+  }
+}
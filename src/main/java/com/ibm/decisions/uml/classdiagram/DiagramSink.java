@@ -0,0 +1,136 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramAttribute;
+import com.ibm.decisions.uml.model.DiagramMethod;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Receives the elements of a class diagram from the traversal of {@link ClassDiagramWriter},
+ * and writes them in the syntax of a diagram format.
+ * <p>
+ * The block of a class is received as its inheritance links, then {@link #startClass},
+ * its attributes, constructors and methods, {@link #endClass}, then its relations. The
+ * elements are buffered until {@link #writeBlock()}, so that a sink can be forked to write
+ * blocks concurrently, the buffers being written in order by the calling thread.
+ */
+public interface DiagramSink {
+
+  /**
+   * Applies the simplifications that concern the syntax of the diagram, such as the notes
+   * on links. It comes before {@link #startDiagram()}, and also applies to the forks.
+   */
+  void simplify(Set<Simplification> simplifications);
+
+  /**
+   * Writes the given types with the given names rather than their own, when the types of
+   * two models are written in the same diagram. It comes before {@link #startDiagram()},
+   * and also applies to the forks.
+   */
+  void rename(Map<DiagramType, String> names);
+
+  void startDiagram();
+
+  /**
+   * A comment in the header of the diagram, after {@link #startDiagram()} and before the
+   * first class.
+   */
+  void comment(String text);
+
+  /**
+   * A link from a class to one of its superclasses. It comes before the block of the class.
+   */
+  void inheritance(DiagramType superClass, DiagramType clazz);
+
+  /**
+   * Starts the block of a class.
+   *
+   * @param stereotype the stereotype of the class, or null
+   * @param color the background color of the class, or null
+   */
+  void startClass(DiagramType clazz, Stereotype stereotype, String color);
+
+  /**
+   * An attribute written in the block of its class. Its type is shown as the given inlined
+   * type followed by dimensions pairs of brackets, then by the multiplicity of the attribute
+   * if it is a collection of that type.
+   */
+  void attribute(DiagramAttribute attribute, DiagramType type, int dimensions, boolean collection, boolean bold);
+
+  void constructor(DiagramMethod constructor);
+
+  void method(DiagramMethod method);
+
+  void endClass(DiagramType clazz);
+
+  /**
+   * A relation of an attribute of a class to the class at its other end.
+   */
+  void relation(DiagramType clazz, DiagramAttribute attribute, DiagramType target);
+
+  /**
+   * Declares a class without its block, such as a class of another partition.
+   *
+   * @param stereotype the stereotype of the class, or null
+   * @param link the file of the diagram where the class is written, or null
+   */
+  void declaration(DiagramType clazz, Stereotype stereotype, String link);
+
+  /**
+   * A node of the index of a partitioned diagram, linked to the diagram of the partition
+   * when link is not null.
+   */
+  void partition(DiagramPartition partition, String link);
+
+  /**
+   * A link of the index of a partitioned diagram, with the number of references from the
+   * classes of a partition to the classes of another one.
+   */
+  void partitionLink(DiagramPartition source, DiagramPartition target, int count);
+
+  /**
+   * The legend of the diagram: for each label, the color of the classes it stands for and
+   * their number.
+   */
+  void legend(String[] labels, String[] colors, int[] counts);
+
+  void endDiagram();
+
+  /**
+   * Writes the buffered elements to the output.
+   */
+  void writeBlock();
+
+  /**
+   * Flushes the output.
+   */
+  void flush();
+
+  /**
+   * Returns a sink with its own buffer, whose blocks are written to the output of this sink.
+   */
+  DiagramSink fork();
+}
@@ -0,0 +1,307 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramAttribute;
+import com.ibm.decisions.uml.model.DiagramMethod;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a class diagram as a Graphviz DOT graph. A class is a record node made of its
+ * name, its attributes and its constructors and methods; an inheritance link is an edge
+ * with an empty arrow head from the class to its superclass.
+ */
+public class DotSink implements DiagramSink {
+  final PrintWriter writer;
+  final DiagramEmitter out;
+  // whether the operations section of the current class has started
+  boolean operations;
+  String color;
+  Map<DiagramType, String> names = Collections.emptyMap();
+
+  public DotSink(PrintWriter writer) {
+    this.writer = writer;
+    this.out = new DiagramEmitter(writer);
+  }
+
+  @Override
+  public void simplify(Set<Simplification> simplifications) {
+  }
+
+  @Override
+  public void rename(Map<DiagramType, String> names) {
+    this.names = names;
+  }
+
+  @Override
+  public void comment(String text) {
+    out.print("  // ").println(text);
+  }
+
+  @Override
+  public void startDiagram() {
+    out.println("digraph ClassDiagram {");
+    out.println("  rankdir=BT;");
+    out.println("  node [shape=record, fontname=\"Helvetica\", fontsize=10];");
+    out.println("  edge [fontname=\"Helvetica\", fontsize=9];");
+  }
+
+  @Override
+  public void inheritance(DiagramType superClass, DiagramType clazz) {
+    out.print("  ");
+    printId(clazz);
+    out.print(" -> ");
+    printId(superClass);
+    out.println(" [arrowhead=empty];");
+  }
+
+  @Override
+  public void startClass(DiagramType clazz, Stereotype stereotype, String color) {
+    out.print("  ");
+    printId(clazz);
+    out.print(" [label=\"{");
+    if (stereotype != null) {
+      printStereotype(stereotype.getName());
+    } else if (clazz.is(DiagramType.ENUM)) {
+      printStereotype("enumeration");
+    } else if (clazz.is(DiagramType.INTERFACE)) {
+      printStereotype("interface");
+    }
+    printLabel(getName(clazz));
+    out.print('|');
+    operations = false;
+    this.color = color;
+  }
+
+  @Override
+  public void attribute(DiagramAttribute attribute, DiagramType type, int dimensions, boolean collection, boolean bold) {
+    if (attribute.isStatic())
+      out.print("static ");
+    printLabel(attribute.getName());
+    out.print(" : ");
+    printLabel(type.getShortName());
+    for (int i = 0; i < dimensions; ++i)
+      out.print("[]");
+    if (collection) {
+      out.print(" [");
+      out.printMultiplicity(attribute);
+      out.print(']');
+    }
+    out.print("\\l");
+  }
+
+  @Override
+  public void constructor(DiagramMethod constructor) {
+    printOperation(constructor);
+  }
+
+  @Override
+  public void method(DiagramMethod method) {
+    printOperation(method);
+  }
+
+  @Override
+  public void endClass(DiagramType clazz) {
+    if (!operations)
+      out.print('|');
+    out.print("}\"");
+    if (color != null)
+      out.print(", style=filled, fillcolor=\"").print(color).print('"');
+    out.println("];");
+  }
+
+  @Override
+  public void relation(DiagramType clazz, DiagramAttribute attribute, DiagramType target) {
+    out.print("  ");
+    printId(clazz);
+    out.print(" -> ");
+    printId(target);
+    out.print(" [arrowhead=vee, label=\"");
+    printString(attribute.getName());
+    out.print('"');
+    if (attribute.isCollection()) {
+      out.print(", headlabel=\"");
+      out.printMultiplicity(attribute);
+      out.print('"');
+    }
+    out.println("];");
+  }
+
+  @Override
+  public void declaration(DiagramType clazz, Stereotype stereotype, String link) {
+    out.print("  ");
+    printId(clazz);
+    out.print(" [label=\"{");
+    if (stereotype != null)
+      printStereotype(stereotype.getName());
+    printLabel(getName(clazz));
+    out.print("}\", style=dashed");
+    if (link != null) {
+      out.print(", URL=\"");
+      printString(link);
+      out.print('"');
+    }
+    out.println("];");
+  }
+
+  @Override
+  public void partition(DiagramPartition partition, String link) {
+    out.print("  P").print(partition.getIndex()).print(" [label=\"{");
+    printStereotype(partition.getClasses().size() + " classes");
+    printLabel(partition.getName());
+    out.print("}\"");
+    if (link != null) {
+      out.print(", URL=\"");
+      printString(link);
+      out.print('"');
+    }
+    out.println("];");
+  }
+
+  @Override
+  public void partitionLink(DiagramPartition source, DiagramPartition target, int count) {
+    out.print("  P").print(source.getIndex()).print(" -> P").print(target.getIndex());
+    out.print(" [style=dashed, arrowhead=vee, label=\"").print(count).println("\"];");
+  }
+
+  @Override
+  public void legend(String[] labels, String[] colors, int[] counts) {
+    // not a valid class name, so that it is not merged with a class node
+    out.println("  \"~legend\" [shape=plaintext, label=<<table border=\"0\" cellborder=\"1\" cellspacing=\"0\">");
+    for (int i = 0; i < labels.length; ++i) {
+      out.print("    <tr><td bgcolor=\"").print(colors[i]).print("\">").print(labels[i]);
+      out.print(": ").print(counts[i]).println("</td></tr>");
+    }
+    out.println("  </table>>];");
+  }
+
+  @Override
+  public void endDiagram() {
+    out.println("}");
+  }
+
+  @Override
+  public void writeBlock() {
+    out.writeBlock();
+  }
+
+  @Override
+  public void flush() {
+    writer.flush();
+  }
+
+  @Override
+  public DiagramSink fork() {
+    DotSink fork = new DotSink(writer);
+    fork.names = names;
+    return fork;
+  }
+
+  private void printId(DiagramType type) {
+    out.print('"');
+    printString(getName(type));
+    out.print('"');
+  }
+
+  /**
+   * Prints a text in a quoted string that is not a record label.
+   */
+  private void printString(String text) {
+    for (int i = 0; i < text.length(); ++i) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\')
+        out.print('\\');
+      out.print(c);
+    }
+  }
+
+  private void printStereotype(String name) {
+    out.print("\\<\\<");
+    printLabel(name);
+    out.print("\\>\\>\\n");
+  }
+
+  /**
+   * Prints a text in a record label, escaping the characters of the record syntax.
+   */
+  private void printLabel(String text) {
+    for (int i = 0; i < text.length(); ++i) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '{':
+        case '}':
+        case '|':
+        case '<':
+        case '>':
+        case '"':
+        case '\\':
+          out.print('\\');
+          break;
+        default:
+          break;
+      }
+      out.print(c);
+    }
+  }
+
+  private void printOperation(DiagramMethod method) {
+    if (!operations) {
+      out.print('|');
+      operations = true;
+    }
+    if (method.isStatic())
+      out.print("static ");
+    if (!method.isConstructor()) {
+      printLabel(method.getReturnType().getShortName());
+      out.print(' ');
+    }
+    if (method.isOperator())
+      out.print("operator ");
+    printLabel(method.getName());
+    out.print('(');
+    DiagramType[] types = method.getParameterTypes();
+    String[] names = method.getParameterNames();
+    for (int i = 0; i < types.length; ++i) {
+      if (i > 0)
+        out.print(", ");
+      if (method.isVarArgs() && i == types.length - 1) {
+        printLabel(types[i].getComponentType().getShortName());
+        out.print("...");
+      } else {
+        printLabel(types[i].getShortName());
+      }
+      out.print(' ');
+      printLabel(names[i]);
+    }
+    out.print(")\\l");
+  }
+
+  private String getName(DiagramType type) {
+    String name = names.get(type);
+    return name != null ? name : type.getName();
+  }
+}
@@ -0,0 +1,172 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the PlantUML text of class blocks, shared by the diagrams of several BOMs, so
+ * that the classes of a business model imported by many BOMs are written only once. A
+ * fragment is the text of a class: its inheritance links, its block and its relations. It
+ * is keyed by a hash of everything that the text depends on, computed by the writer.
+ * <p>
+ * The fragments are kept in memory up to a maximum number, the least recently used being
+ * evicted first. With a directory, they are also written to one file each, read back when
+ * they are not in memory, such as in a later run.
+ */
+public class FragmentCache {
+  /**
+   * Identifies the syntax of the fragments, it is part of their files.
+   */
+  static final String VERSION = "plantuml-2";
+  static final String EXTENSION = ".fragment";
+
+  final int maxEntries;
+  final Path directory;
+  final Map<Long, Fragment> entries;
+  final LongAdder hits = new LongAdder();
+  final LongAdder misses = new LongAdder();
+
+  static class Fragment {
+    final String name;
+    final String text;
+
+    Fragment(String name, String text) {
+      this.name = name;
+      this.text = text;
+    }
+  }
+
+  public FragmentCache(int maxEntries) {
+    this(maxEntries, null);
+  }
+
+  /**
+   * @param directory the directory of the fragment files, or null to keep them only in memory
+   */
+  public FragmentCache(int maxEntries, Path directory) {
+    this.maxEntries = maxEntries;
+    this.directory = directory;
+    this.entries = new LinkedHashMap<Long, Fragment>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Fragment> eldest) {
+        return size() > FragmentCache.this.maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns the fragment of a class, or null when it is not cached.
+   *
+   * @param name the fully qualified name of the class, checked against the fragment
+   */
+  public String get(String name, long key) {
+    Fragment fragment;
+    synchronized (entries) {
+      fragment = entries.get(key);
+    }
+    if (fragment == null && directory != null) {
+      fragment = read(key);
+      if (fragment != null) {
+        synchronized (entries) {
+          entries.put(key, fragment);
+        }
+      }
+    }
+    if (fragment == null || !fragment.name.equals(name)) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return fragment.text;
+  }
+
+  public void put(String name, long key, String text) {
+    Fragment fragment = new Fragment(name, text);
+    synchronized (entries) {
+      entries.put(key, fragment);
+    }
+    if (directory != null)
+      write(key, fragment);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  Path getPath(long key) {
+    return directory.resolve(String.format("%016x", key) + EXTENSION);
+  }
+
+  /**
+   * Reads a fragment file: the version, the name of the class, then the text.
+   */
+  private Fragment read(long key) {
+    try {
+      String content = new String(Files.readAllBytes(getPath(key)), StandardCharsets.UTF_8);
+      int versionEnd = content.indexOf('\n');
+      int nameEnd = content.indexOf('\n', versionEnd + 1);
+      if (versionEnd < 0 || nameEnd < 0 || !content.substring(0, versionEnd).equals(VERSION))
+        return null;
+      return new Fragment(content.substring(versionEnd + 1, nameEnd), content.substring(nameEnd + 1));
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      // an unreadable fragment is written again
+      return null;
+    }
+  }
+
+  /**
+   * Writes a fragment file through a temporary file, so that a fragment is never read
+   * while it is written.
+   */
+  private void write(long key, Fragment fragment) {
+    try {
+      Files.createDirectories(directory);
+      Path path = getPath(key);
+      Path tmp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+      Files.write(tmp, (VERSION + '\n' + fragment.name + '\n' + fragment.text).getBytes(StandardCharsets.UTF_8));
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      // the fragment stays in memory
+    }
+  }
+}
@@ -0,0 +1,376 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramAttribute;
+import com.ibm.decisions.uml.model.DiagramMethod;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Writes a class diagram as a JSON graph: an object with the array of the classes, the
+ * nodes, and the array of the inheritance links and relations, the edges. The nodes are
+ * written block by block, while the edges are kept until the end of the diagram.
+ */
+public class JsonSink implements DiagramSink {
+  static final String[] SECTIONS = {"attributes", "constructors", "methods"};
+
+  final PrintWriter writer;
+  // the state of the output, shared with the forks
+  final Output output;
+  final DiagramEmitter nodes;
+  final DiagramEmitter edges;
+  // the members section of the current class, and whether it has members
+  int section;
+  boolean members;
+  boolean started;
+  // the comments of the header
+  final List<String> comments = new ArrayList<>();
+  // the legend, written after the edges
+  String legend;
+  boolean ended;
+  Map<DiagramType, String> names = Collections.emptyMap();
+
+  static class Output {
+    boolean nodes;
+    final StringBuilder edges = new StringBuilder();
+  }
+
+  public JsonSink(PrintWriter writer) {
+    this(writer, new Output());
+  }
+
+  JsonSink(PrintWriter writer, Output output) {
+    this.writer = writer;
+    this.output = output;
+    this.nodes = new DiagramEmitter(writer);
+    this.edges = new DiagramEmitter(writer);
+  }
+
+  @Override
+  public void simplify(Set<Simplification> simplifications) {
+  }
+
+  @Override
+  public void rename(Map<DiagramType, String> names) {
+    this.names = names;
+  }
+
+  @Override
+  public void startDiagram() {
+    started = true;
+  }
+
+  @Override
+  public void comment(String text) {
+    comments.add(text);
+  }
+
+  @Override
+  public void inheritance(DiagramType superClass, DiagramType clazz) {
+    startElement(edges);
+    edges.print("{\"kind\": \"inheritance\", \"from\": ");
+    printString(edges, clazz.getFullyQualifiedName());
+    edges.print(", \"to\": ");
+    printString(edges, superClass.getFullyQualifiedName());
+    edges.print('}');
+  }
+
+  @Override
+  public void startClass(DiagramType clazz, Stereotype stereotype, String color) {
+    startNode(clazz, stereotype);
+    if (color != null) {
+      nodes.print(", \"color\": ");
+      printString(nodes, color);
+    }
+    nodes.print(", \"").print(SECTIONS[0]).print("\": [");
+    section = 0;
+    members = false;
+  }
+
+  @Override
+  public void attribute(DiagramAttribute attribute, DiagramType type, int dimensions, boolean collection, boolean bold) {
+    startMember(0);
+    nodes.print("{\"name\": ");
+    printString(nodes, attribute.getName());
+    nodes.print(", \"type\": \"");
+    printText(nodes, type.getFullyQualifiedName());
+    for (int i = 0; i < dimensions; ++i)
+      nodes.print("[]");
+    nodes.print('"');
+    if (collection)
+      nodes.print(", \"multiplicity\": \"").printMultiplicity(attribute).print('"');
+    if (attribute.isStatic())
+      nodes.print(", \"static\": true");
+    nodes.print('}');
+  }
+
+  @Override
+  public void constructor(DiagramMethod constructor) {
+    startMember(1);
+    printMethod(constructor);
+  }
+
+  @Override
+  public void method(DiagramMethod method) {
+    startMember(2);
+    printMethod(method);
+  }
+
+  @Override
+  public void endClass(DiagramType clazz) {
+    while (section < SECTIONS.length - 1) {
+      ++section;
+      nodes.print("], \"").print(SECTIONS[section]).print("\": [");
+    }
+    nodes.print("]}");
+  }
+
+  @Override
+  public void relation(DiagramType clazz, DiagramAttribute attribute, DiagramType target) {
+    startElement(edges);
+    edges.print("{\"kind\": \"relation\", \"from\": ");
+    printString(edges, clazz.getFullyQualifiedName());
+    edges.print(", \"to\": ");
+    printString(edges, target.getFullyQualifiedName());
+    edges.print(", \"name\": ");
+    printString(edges, attribute.getName());
+    edges.print(", \"type\": ");
+    printString(edges, attribute.getType().getFullyQualifiedName());
+    if (attribute.isCollection())
+      edges.print(", \"multiplicity\": \"").printMultiplicity(attribute).print('"');
+    edges.print('}');
+  }
+
+  @Override
+  public void declaration(DiagramType clazz, Stereotype stereotype, String link) {
+    startNode(clazz, stereotype);
+    nodes.print(", \"declared\": true");
+    if (link != null) {
+      nodes.print(", \"link\": ");
+      printString(nodes, link);
+    }
+    nodes.print('}');
+  }
+
+  @Override
+  public void partition(DiagramPartition partition, String link) {
+    startElement(nodes);
+    nodes.print("{\"name\": ");
+    printString(nodes, partition.getName());
+    nodes.print(", \"kind\": \"partition\", \"classes\": ").print(partition.getClasses().size());
+    if (link != null) {
+      nodes.print(", \"link\": ");
+      printString(nodes, link);
+    }
+    nodes.print('}');
+  }
+
+  @Override
+  public void partitionLink(DiagramPartition source, DiagramPartition target, int count) {
+    startElement(edges);
+    edges.print("{\"kind\": \"dependency\", \"from\": ");
+    printString(edges, source.getName());
+    edges.print(", \"to\": ");
+    printString(edges, target.getName());
+    edges.print(", \"count\": ").print(count).print('}');
+  }
+
+  @Override
+  public void legend(String[] labels, String[] colors, int[] counts) {
+    DiagramEmitter text = new DiagramEmitter(writer);
+    text.print(", \"legend\": [");
+    for (int i = 0; i < labels.length; ++i) {
+      if (i > 0)
+        text.print(", ");
+      text.print("{\"label\": ");
+      printString(text, labels[i]);
+      text.print(", \"color\": ");
+      printString(text, colors[i]);
+      text.print(", \"count\": ").print(counts[i]).print('}');
+    }
+    legend = text.print(']').buffer.toString();
+  }
+
+  @Override
+  public void endDiagram() {
+    ended = true;
+  }
+
+  /**
+   * Writes the buffered nodes, and keeps the buffered edges until the end of the diagram.
+   */
+  @Override
+  public void writeBlock() {
+    if (started) {
+      DiagramEmitter header = new DiagramEmitter(writer);
+      header.print('{');
+      if (!comments.isEmpty()) {
+        header.print("\"comments\": [");
+        for (int i = 0; i < comments.size(); ++i) {
+          if (i > 0)
+            header.print(", ");
+          printString(header, comments.get(i));
+        }
+        header.print("], ");
+        comments.clear();
+      }
+      header.println("\"nodes\": [");
+      header.writeBlock();
+      started = false;
+    }
+    if (nodes.buffer.length() != 0) {
+      if (output.nodes)
+        writer.write("," + DiagramEmitter.LINE_SEPARATOR);
+      nodes.writeBlock();
+      output.nodes = true;
+    }
+    if (edges.buffer.length() != 0) {
+      if (output.edges.length() != 0)
+        output.edges.append(',').append(DiagramEmitter.LINE_SEPARATOR);
+      output.edges.append(edges.buffer);
+      edges.buffer.setLength(0);
+    }
+    if (ended) {
+      writer.write(DiagramEmitter.LINE_SEPARATOR + "], \"edges\": [" + DiagramEmitter.LINE_SEPARATOR);
+      writer.append(output.edges);
+      writer.write(DiagramEmitter.LINE_SEPARATOR + "]");
+      if (legend != null)
+        writer.write(legend);
+      writer.write("}" + DiagramEmitter.LINE_SEPARATOR);
+      legend = null;
+      output.edges.setLength(0);
+      output.nodes = false;
+      ended = false;
+    }
+  }
+
+  @Override
+  public void flush() {
+    writer.flush();
+  }
+
+  @Override
+  public DiagramSink fork() {
+    JsonSink fork = new JsonSink(writer, output);
+    fork.names = names;
+    return fork;
+  }
+
+  private void startNode(DiagramType clazz, Stereotype stereotype) {
+    startElement(nodes);
+    nodes.print("{\"name\": ");
+    printString(nodes, clazz.getFullyQualifiedName());
+    nodes.print(", \"label\": ");
+    printString(nodes, getName(clazz));
+    nodes.print(", \"kind\": \"");
+    if (clazz.is(DiagramType.ENUM))
+      nodes.print("enum");
+    else if (clazz.is(DiagramType.INTERFACE))
+      nodes.print("interface");
+    else
+      nodes.print("class");
+    nodes.print('"');
+    if (stereotype != null) {
+      nodes.print(", \"stereotype\": ");
+      printString(nodes, stereotype.getName());
+    }
+  }
+
+  /**
+   * Separates an element from the previous one of the same buffer.
+   */
+  private static void startElement(DiagramEmitter emitter) {
+    if (emitter.buffer.length() != 0)
+      emitter.print(',').println();
+  }
+
+  private void startMember(int memberSection) {
+    if (section == memberSection && members) {
+      nodes.print(", ");
+    } else {
+      while (section < memberSection) {
+        ++section;
+        nodes.print("], \"").print(SECTIONS[section]).print("\": [");
+      }
+    }
+    members = true;
+  }
+
+  private void printMethod(DiagramMethod method) {
+    nodes.print("{\"name\": ");
+    printString(nodes, method.getName());
+    if (!method.isConstructor()) {
+      nodes.print(", \"returnType\": ");
+      printString(nodes, method.getReturnType().getFullyQualifiedName());
+    }
+    if (method.getGenericSignature() != null) {
+      nodes.print(", \"genericSignature\": ");
+      printString(nodes, method.getGenericSignature());
+    }
+    if (method.isStatic())
+      nodes.print(", \"static\": true");
+    if (method.isOperator())
+      nodes.print(", \"operator\": true");
+    if (method.isVarArgs())
+      nodes.print(", \"varArgs\": true");
+    nodes.print(", \"parameters\": [");
+    DiagramType[] types = method.getParameterTypes();
+    String[] names = method.getParameterNames();
+    for (int i = 0; i < types.length; ++i) {
+      if (i > 0)
+        nodes.print(", ");
+      nodes.print("{\"name\": ");
+      printString(nodes, names[i]);
+      nodes.print(", \"type\": ");
+      printString(nodes, types[i].getFullyQualifiedName());
+      nodes.print('}');
+    }
+    nodes.print("]}");
+  }
+
+  private static void printString(DiagramEmitter emitter, String text) {
+    emitter.print('"');
+    printText(emitter, text);
+    emitter.print('"');
+  }
+
+  private static void printText(DiagramEmitter emitter, String text) {
+    for (int i = 0; i < text.length(); ++i) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\') {
+        emitter.print('\\').print(c);
+      } else if (c < ' ') {
+        emitter.print("\\u00").print(Character.forDigit(c >> 4, 16)).print(Character.forDigit(c & 0xf, 16));
+      } else {
+        emitter.print(c);
+      }
+    }
+  }
+
+  private String getName(DiagramType type) {
+    String name = names.get(type);
+    return name != null ? name : type.getName();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import java.util.Set;
+
+/**
+ * Estimate of the cost of the layout of a diagram by PlantUML and Graphviz, from the numbers
+ * of nodes, edges, notes on links and member lines that the diagram would have. A note is
+ * laid out as a node with its own edge, and each member line widens its node. The estimate
+ * is counted in arbitrary units, to be compared with a budget in the same units.
+ */
+public class LayoutCost {
+  static final int NODE_COST = 10;
+  static final int EDGE_COST = 10;
+  static final int NOTE_COST = 20;
+  static final int LINE_COST = 1;
+
+  int nodes;
+  int edges;
+  int notes;
+  int attributeLines;
+  int methodLines;
+  // the part of the above counts that belongs to the utility classes
+  int utilityEdges;
+  int utilityNotes;
+  int utilityAttributeLines;
+  int utilityMethodLines;
+
+  public int getNodes() {
+    return nodes;
+  }
+
+  public int getEdges() {
+    return edges;
+  }
+
+  public int getNotes() {
+    return notes;
+  }
+
+  /**
+   * Returns the number of member lines: inlined attributes, constructors and methods.
+   */
+  public int getLines() {
+    return attributeLines + methodLines;
+  }
+
+  /**
+   * Returns the estimated cost of the diagram with the given simplifications.
+   */
+  public long estimate(Set<Simplification> simplifications) {
+    boolean fold = simplifications.contains(Simplification.FOLD_UTILITIES);
+    long edges = this.edges - (fold ? utilityEdges : 0);
+    long notes = simplifications.contains(Simplification.DROP_NOTES) ? 0 : this.notes - (fold ? utilityNotes : 0);
+    long lines = 0;
+    if (!simplifications.contains(Simplification.COLLAPSE_ATTRIBUTES))
+      lines += attributeLines - (fold ? utilityAttributeLines : 0);
+    if (!simplifications.contains(Simplification.HIDE_METHODS))
+      lines += methodLines - (fold ? utilityMethodLines : 0);
+    return NODE_COST * (long) nodes + EDGE_COST * edges + NOTE_COST * notes + LINE_COST * lines;
+  }
+}
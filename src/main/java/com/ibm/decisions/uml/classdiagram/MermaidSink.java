@@ -0,0 +1,298 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramAttribute;
+import com.ibm.decisions.uml.model.DiagramMethod;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a class diagram in the Mermaid syntax. Mermaid class names are identifiers, so
+ * the other characters of a name are escaped with underscores, the name being kept as the
+ * label of the class. Generic types are written with tildes, and the notes on links are
+ * not written.
+ */
+public class MermaidSink implements DiagramSink {
+  final PrintWriter writer;
+  final DiagramEmitter out;
+  String color;
+  Map<DiagramType, String> names = Collections.emptyMap();
+
+  public MermaidSink(PrintWriter writer) {
+    this.writer = writer;
+    this.out = new DiagramEmitter(writer);
+  }
+
+  @Override
+  public void simplify(Set<Simplification> simplifications) {
+  }
+
+  @Override
+  public void rename(Map<DiagramType, String> names) {
+    this.names = names;
+  }
+
+  @Override
+  public void startDiagram() {
+    out.println("classDiagram");
+  }
+
+  @Override
+  public void comment(String text) {
+    out.print("%% ").println(text);
+  }
+
+  @Override
+  public void inheritance(DiagramType superClass, DiagramType clazz) {
+    printId(superClass);
+    out.print(" <|-- ");
+    printId(clazz);
+    out.println();
+  }
+
+  @Override
+  public void startClass(DiagramType clazz, Stereotype stereotype, String color) {
+    printLabel(clazz);
+    out.print("class ");
+    printId(clazz);
+    out.println(" {");
+    if (stereotype != null)
+      out.print("  <<").print(stereotype.getName()).println(">>");
+    else
+      printKind(clazz);
+    this.color = color;
+  }
+
+  @Override
+  public void attribute(DiagramAttribute attribute, DiagramType type, int dimensions, boolean collection, boolean bold) {
+    out.print("  +");
+    printMemberType(type.getShortName());
+    for (int i = 0; i < dimensions; ++i)
+      out.print("[]");
+    if (collection) {
+      out.print('[');
+      out.printMultiplicity(attribute);
+      out.print(']');
+    }
+    out.print(' ').print(attribute.getName());
+    if (attribute.isStatic())
+      out.print('$');
+    out.println();
+  }
+
+  @Override
+  public void constructor(DiagramMethod constructor) {
+    printMethod(constructor);
+  }
+
+  @Override
+  public void method(DiagramMethod method) {
+    printMethod(method);
+  }
+
+  @Override
+  public void endClass(DiagramType clazz) {
+    out.println("}");
+    if (color != null) {
+      out.print("style ");
+      printId(clazz);
+      out.print(" fill:").println(color);
+    }
+  }
+
+  @Override
+  public void relation(DiagramType clazz, DiagramAttribute attribute, DiagramType target) {
+    printId(clazz);
+    out.print(" --> ");
+    if (attribute.isCollection()) {
+      out.print('"');
+      out.printMultiplicity(attribute);
+      out.print("\" ");
+    }
+    printId(target);
+    out.print(" : ").println(attribute.getName());
+  }
+
+  @Override
+  public void declaration(DiagramType clazz, Stereotype stereotype, String link) {
+    printLabel(clazz);
+    out.print("class ");
+    printId(clazz);
+    out.println();
+    if (stereotype != null) {
+      out.print("<<").print(stereotype.getName()).print(">> ");
+      printId(clazz);
+      out.println();
+    }
+    if (link != null) {
+      out.print("link ");
+      printId(clazz);
+      out.print(" \"").print(link).println('"');
+    }
+  }
+
+  @Override
+  public void partition(DiagramPartition partition, String link) {
+    out.print("class P").print(partition.getIndex()).print("[\"").print(partition.getName()).println("\"]");
+    out.print("<<").print(partition.getClasses().size()).print(" classes>> P").print(partition.getIndex()).println();
+    if (link != null)
+      out.print("link P").print(partition.getIndex()).print(" \"").print(link).println('"');
+  }
+
+  @Override
+  public void partitionLink(DiagramPartition source, DiagramPartition target, int count) {
+    out.print('P').print(source.getIndex()).print(" ..> P").print(target.getIndex());
+    out.print(" : ").print(count).println();
+  }
+
+  @Override
+  public void legend(String[] labels, String[] colors, int[] counts) {
+    // a class diagram has no legend, the colors are in the note
+    out.print("note \"");
+    for (int i = 0; i < labels.length; ++i) {
+      if (i > 0)
+        out.print("\\n");
+      out.print(labels[i]).print(" (").print(colors[i]).print("): ").print(counts[i]);
+    }
+    out.println('"');
+  }
+
+  @Override
+  public void endDiagram() {
+  }
+
+  @Override
+  public void writeBlock() {
+    out.writeBlock();
+  }
+
+  @Override
+  public void flush() {
+    writer.flush();
+  }
+
+  @Override
+  public DiagramSink fork() {
+    MermaidSink fork = new MermaidSink(writer);
+    fork.names = names;
+    return fork;
+  }
+
+  private void printKind(DiagramType clazz) {
+    if (clazz.is(DiagramType.ENUM))
+      out.println("  <<enumeration>>");
+    else if (clazz.is(DiagramType.INTERFACE))
+      out.println("  <<interface>>");
+  }
+
+  /**
+   * Declares the label of a class whose name is not an identifier.
+   */
+  private void printLabel(DiagramType clazz) {
+    if (!isIdentifier(getName(clazz))) {
+      out.print("class ");
+      printId(clazz);
+      out.print("[\"").print(getName(clazz)).println("\"]");
+    }
+  }
+
+  /**
+   * Prints the node id of a type: its name when it only has letters and digits, otherwise
+   * its name with '_' escaped as "__", '.' as "_d" and any other character as "_u" and its
+   * 4 hexadecimal digits, so that different names never get the same id.
+   */
+  void printId(DiagramType type) {
+    String name = getName(type);
+    if (isIdentifier(name)) {
+      out.print(name);
+      return;
+    }
+    for (int i = 0; i < name.length(); ++i) {
+      char c = name.charAt(i);
+      if (Character.isLetterOrDigit(c))
+        out.print(c);
+      else if (c == '_')
+        out.print("__");
+      else if (c == '.')
+        out.print("_d");
+      else
+        out.print("_u").print(String.format("%04x", (int) c));
+    }
+  }
+
+  static boolean isIdentifier(String name) {
+    for (int i = 0; i < name.length(); ++i) {
+      if (!Character.isLetterOrDigit(name.charAt(i)))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Writes a type of a member, with the Mermaid tildes instead of the angle brackets of
+   * the generic types.
+   */
+  private void printMemberType(String type) {
+    for (int i = 0; i < type.length(); ++i) {
+      char c = type.charAt(i);
+      out.print(c == '<' || c == '>' ? '~' : c);
+    }
+  }
+
+  private void printMethod(DiagramMethod method) {
+    out.print("  +");
+    if (method.isOperator())
+      out.print("operator");
+    out.print(method.getName()).print('(');
+    DiagramType[] types = method.getParameterTypes();
+    String[] names = method.getParameterNames();
+    for (int i = 0; i < types.length; ++i) {
+      if (i > 0)
+        out.print(", ");
+      if (method.isVarArgs() && i == types.length - 1) {
+        printMemberType(types[i].getComponentType().getShortName());
+        out.print("...");
+      } else {
+        printMemberType(types[i].getShortName());
+      }
+      out.print(' ').print(names[i]);
+    }
+    out.print(')');
+    if (method.isStatic())
+      out.print('$');
+    if (!method.isConstructor()) {
+      out.print(' ');
+      printMemberType(method.getReturnType().getShortName());
+    }
+    out.println();
+  }
+
+  private String getName(DiagramType type) {
+    String name = names.get(type);
+    return name != null ? name : type.getName();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramAttribute;
+import com.ibm.decisions.uml.model.DiagramMethod;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.util.List;
+
+/**
+ * The classes added, removed and modified between two versions of a model, computed by
+ * {@link ClassDiagramWriter#compare(DiagramModel, DiagramModel)}. The classes are matched by
+ * name, and a class is modified when its signature changed: the hash of everything that
+ * its block and relations show. The added and modified classes are those of the new model,
+ * the removed classes those of the old model, in the order of the diagram.
+ */
+public class ModelDiff {
+  static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  static final long FNV_PRIME = 0x100000001b3L;
+
+  final DiagramModel oldModel;
+  final DiagramModel newModel;
+  final List<DiagramType> added;
+  final List<DiagramType> removed;
+  final List<DiagramType> modified;
+
+  ModelDiff(DiagramModel oldModel, DiagramModel newModel, List<DiagramType> added, List<DiagramType> removed,
+            List<DiagramType> modified) {
+    this.oldModel = oldModel;
+    this.newModel = newModel;
+    this.added = added;
+    this.removed = removed;
+    this.modified = modified;
+  }
+
+  public DiagramModel getOldModel() {
+    return oldModel;
+  }
+
+  public DiagramModel getNewModel() {
+    return newModel;
+  }
+
+  public List<DiagramType> getAdded() {
+    return added;
+  }
+
+  public List<DiagramType> getRemoved() {
+    return removed;
+  }
+
+  public List<DiagramType> getModified() {
+    return modified;
+  }
+
+  public boolean isEmpty() {
+    return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+  }
+
+  /**
+   * Returns the 64-bit FNV-1a hash of the flags, superclasses, attributes with their
+   * domains, constructors and methods of a class. It only depends on names, so the
+   * signatures of a class in two models are equal when the class did not change.
+   */
+  public static long signature(DiagramType clazz) {
+    long hash = hash(FNV_OFFSET, clazz.getFlags());
+    for (DiagramType superClass : clazz.getSuperclasses())
+      hash = hash(hash, superClass);
+    for (DiagramAttribute attribute : clazz.getAttributes()) {
+      hash = hash(hash, attribute.getName());
+      hash = hash(hash, attribute.getFlags());
+      hash = hash(hash, attribute.getType());
+      hash = hash(hash, attribute.getMin());
+      hash = hash(hash, attribute.getMax());
+      hash = hash(hash, attribute.getElementType());
+    }
+    hash = hash(hash, clazz.getConstructors());
+    return hash(hash, clazz.getMethods());
+  }
+
+  private static long hash(long hash, DiagramMethod[] methods) {
+    hash = hash(hash, methods.length);
+    for (DiagramMethod method : methods) {
+      hash = hash(hash, method.getName());
+      hash = hash(hash, method.getFlags());
+      hash = hash(hash, method.getReturnType());
+      hash = hash(hash, method.getGenericSignature());
+      for (DiagramType parameterType : method.getParameterTypes())
+        hash = hash(hash, parameterType);
+      for (String parameterName : method.getParameterNames())
+        hash = hash(hash, parameterName);
+    }
+    return hash;
+  }
+
+  static long hash(long hash, DiagramType type) {
+    return hash(hash, type == null ? null : type.getFullyQualifiedName());
+  }
+
+  static long hash(long hash, String text) {
+    if (text == null)
+      return hash(hash, -1);
+    for (int i = 0; i < text.length(); ++i)
+      hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+    // the length separates the strings
+    return hash(hash, text.length());
+  }
+
+  static long hash(long hash, int value) {
+    for (int i = 0; i < 4; ++i) {
+      hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+      value >>>= 8;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,297 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramAttribute;
+import com.ibm.decisions.uml.model.DiagramMethod;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a class diagram in the PlantUML syntax, without the @startuml and @enduml lines.
+ */
+public class PlantUmlSink implements DiagramSink {
+  final PrintWriter writer;
+  final DiagramEmitter out;
+  // whether the constructors or the methods of the current class have started
+  boolean constructors;
+  boolean methods;
+  boolean linkNotes = true;
+  Map<DiagramType, String> names = Collections.emptyMap();
+
+  public PlantUmlSink(PrintWriter writer) {
+    this.writer = writer;
+    this.out = new DiagramEmitter(writer);
+  }
+
+  @Override
+  public void simplify(Set<Simplification> simplifications) {
+    linkNotes = !simplifications.contains(Simplification.DROP_NOTES);
+  }
+
+  @Override
+  public void rename(Map<DiagramType, String> names) {
+    this.names = names;
+  }
+
+  @Override
+  public void startDiagram() {
+  }
+
+  @Override
+  public void comment(String text) {
+    out.print("' ").println(text);
+  }
+
+  @Override
+  public void inheritance(DiagramType superClass, DiagramType clazz) {
+    printType(superClass);
+    out.print(" <|-- ");
+    printType(clazz);
+    out.println();
+  }
+
+  @Override
+  public void startClass(DiagramType clazz, Stereotype stereotype, String color) {
+    if (clazz.is(DiagramType.UTILITY) && !clazz.is(DiagramType.ENUM))
+      out.print("class ");
+    else
+      printKind(clazz);
+    printType(clazz);
+    if (stereotype != null) {
+      if (clazz.is(DiagramType.UTILITY))
+        out.print(' ');
+      printStereotype(stereotype);
+    }
+    if (color != null)
+      out.print(' ').print(color);
+    out.println('{');
+    constructors = false;
+    methods = false;
+  }
+
+  @Override
+  public void attribute(DiagramAttribute attribute, DiagramType type, int dimensions, boolean collection, boolean bold) {
+    printModifiers(attribute.isStatic());
+    if (bold)
+      out.print("<b>");
+    out.print(attribute.getName());
+    if (bold)
+      out.print("</b>");
+    out.print(": ");
+    printShortType(type);
+    for (int i = 0; i < dimensions; ++i)
+      out.print("[]");
+    if (collection) {
+      out.print(" [");
+      out.printMultiplicity(attribute);
+      out.print(']');
+    }
+    out.println();
+  }
+
+  @Override
+  public void constructor(DiagramMethod constructor) {
+    if (!constructors) {
+      out.println("__");
+      constructors = true;
+    }
+    printMethod(constructor);
+  }
+
+  @Override
+  public void method(DiagramMethod method) {
+    if (!methods) {
+      out.println("__");
+      methods = true;
+    }
+    printMethod(method);
+  }
+
+  @Override
+  public void endClass(DiagramType clazz) {
+    out.println("}");
+  }
+
+  @Override
+  public void relation(DiagramType clazz, DiagramAttribute attribute, DiagramType target) {
+    printType(clazz);
+    out.print(" --> ");
+    String note = null;
+    if (attribute.isCollection()) {
+      out.print('"');
+      out.printMultiplicity(attribute);
+      out.print("\" ");
+      note = attribute.getType().getFullyQualifiedName();
+    } else if (attribute.getType().isArray()) {
+      note = attribute.getType().getFullyQualifiedName();
+    }
+    printType(target);
+    out.print(" : ");
+    out.print(attribute.getName());
+    out.println();
+
+    // add note
+    if (note != null && linkNotes) {
+      out.print("note on link:").println(note);
+    }
+  }
+
+  @Override
+  public void declaration(DiagramType clazz, Stereotype stereotype, String link) {
+    printKind(clazz);
+    printType(clazz);
+    if (stereotype != null) {
+      out.print(' ');
+      printStereotype(stereotype);
+    }
+    if (link != null)
+      out.print(" [[").print(link).print("]]");
+    out.println();
+  }
+
+  @Override
+  public void partition(DiagramPartition partition, String link) {
+    out.print("class \"").print(partition.getName()).print("\" as P").print(partition.getIndex());
+    out.print(" << (P,#ffcc66) ").print(partition.getClasses().size()).print(" classes >>");
+    if (link != null)
+      out.print(" [[").print(link).print("]]");
+    out.println();
+  }
+
+  @Override
+  public void partitionLink(DiagramPartition source, DiagramPartition target, int count) {
+    out.print('P').print(source.getIndex()).print(" ..> P").print(target.getIndex());
+    out.print(" : ").print(count).println();
+  }
+
+  @Override
+  public void legend(String[] labels, String[] colors, int[] counts) {
+    out.println("legend");
+    for (int i = 0; i < labels.length; ++i)
+      out.print("<back:").print(colors[i]).print('>').print(labels[i]).print("</back>: ").print(counts[i]).println();
+    out.println("endlegend");
+  }
+
+  @Override
+  public void endDiagram() {
+    out.println();
+  }
+
+  @Override
+  public void writeBlock() {
+    out.writeBlock();
+  }
+
+  @Override
+  public void flush() {
+    writer.flush();
+  }
+
+  @Override
+  public DiagramSink fork() {
+    PlantUmlSink fork = new PlantUmlSink(writer);
+    fork.linkNotes = linkNotes;
+    fork.names = names;
+    return fork;
+  }
+
+  private void printKind(DiagramType clazz) {
+    if (clazz.is(DiagramType.ENUM))
+      out.print("enum ");
+    else if (clazz.is(DiagramType.INTERFACE))
+      out.print("interface ");
+    else
+      out.print("class ");
+  }
+
+  void printStereotype(Stereotype stereotype) {
+    out.print("<< (").print(stereotype.getSpot()).print(',').print(stereotype.getColor()).print(") ");
+    out.print(stereotype.getName()).print(" >>");
+  }
+
+  void printType(DiagramType type) {
+    out.print(getName(type));
+  }
+
+  void printShortType(DiagramType type) {
+    out.print(type.getShortName());
+  }
+
+  void printMethod(DiagramMethod method) {
+    DiagramType retType = method.getReturnType();
+    printModifiers(method.isStatic());
+    String methodName = method.getName();
+    if (method.getGenericSignature() != null) {
+      out.print(method.getGenericSignature());
+      out.print(' ');
+    }
+    if (method.isConstructor()) {
+      out.print(methodName);
+    } else if (method.isOperator()) {
+      if (!retType.getFullyQualifiedName().equals(methodName))
+        printType(retType);
+      out.print(' ');
+      out.print("operator ");
+      out.print(methodName);
+    } else {
+      // regular method
+      printType(retType);
+
+      out.print(' ');
+      out.print(methodName);
+    }
+    out.print('(');
+
+    printParameterList(method.getParameterTypes(), method.getParameterNames(), method.isVarArgs());
+    out.println(')');
+  }
+
+  void printModifiers(boolean isStatic) {
+    if (isStatic)
+      out.print("{static} ");
+  }
+
+  void printParameterList(DiagramType[] types, String[] names, boolean isVarArgs) {
+    int count = types.length;
+    for (int i = 0; i < count; ++i) {
+      if (i > 0)
+        out.print(",\n\\t");
+      if (isVarArgs && i == count - 1) {
+        printShortType(types[i].getComponentType());
+        out.print("...");
+      } else
+        printShortType(types[i]);
+      out.print(' ');
+      out.print(names[i]);
+    }
+  }
+
+  private String getName(DiagramType type) {
+    String name = names.get(type);
+    return name != null ? name : type.getName();
+  }
+}
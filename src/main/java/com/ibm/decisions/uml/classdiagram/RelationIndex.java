@@ -0,0 +1,121 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.DiagramType;
+
+import java.util.*;
+
+/**
+ * Adjacency index of the links of a class diagram: the superclasses of each class and the
+ * targets of its relations, including the element types of collections. It is built once by
+ * {@link ClassDiagramWriter#indexRelations(DiagramModel)}, then answers any number of
+ * neighbourhood queries, in a time proportional to the neighbourhood. It is immutable, so
+ * it can be shared by threads.
+ * <p>
+ * The links are kept in both directions, as flat arrays of type ids: the links of the type
+ * of id i are at [offsets[i], offsets[i + 1]) of the targets array.
+ */
+public class RelationIndex {
+  final DiagramModel model;
+  final int[] outgoingOffsets;
+  final int[] outgoingTargets;
+  final int[] incomingOffsets;
+  final int[] incomingTargets;
+
+  RelationIndex(DiagramModel model, int[] sources, int[] targets, int count) {
+    this.model = model;
+    int types = model.getTypes().size();
+    outgoingOffsets = new int[types + 1];
+    outgoingTargets = new int[count];
+    incomingOffsets = new int[types + 1];
+    incomingTargets = new int[count];
+    fill(sources, targets, count, outgoingOffsets, outgoingTargets);
+    fill(targets, sources, count, incomingOffsets, incomingTargets);
+  }
+
+  private static void fill(int[] from, int[] to, int count, int[] offsets, int[] targets) {
+    for (int i = 0; i < count; ++i)
+      ++offsets[from[i] + 1];
+    for (int i = 1; i < offsets.length; ++i)
+      offsets[i] += offsets[i - 1];
+    int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+    for (int i = 0; i < count; ++i)
+      targets[next[from[i]]++] = to[i];
+  }
+
+  public DiagramModel getModel() {
+    return model;
+  }
+
+  /**
+   * Returns the classes that a class links to: its superclasses and the targets of its relations.
+   */
+  public List<DiagramType> getOutgoing(DiagramType type) {
+    return getTypes(outgoingOffsets, outgoingTargets, type.getId());
+  }
+
+  /**
+   * Returns the classes that link to a class.
+   */
+  public List<DiagramType> getIncoming(DiagramType type) {
+    return getTypes(incomingOffsets, incomingTargets, type.getId());
+  }
+
+  private List<DiagramType> getTypes(int[] offsets, int[] targets, int id) {
+    List<DiagramType> types = new ArrayList<>(offsets[id + 1] - offsets[id]);
+    for (int i = offsets[id]; i < offsets[id + 1]; ++i)
+      types.add(model.getType(targets[i]));
+    return types;
+  }
+
+  /**
+   * Returns the classes at most depth links away from the focus class, following the links
+   * in both directions, in the order of the diagram of the whole model.
+   */
+  public List<DiagramType> getNeighbourhood(DiagramType focus, int depth) {
+    Set<Integer> visited = new HashSet<>();
+    List<DiagramType> neighbourhood = new ArrayList<>();
+    visited.add(focus.getId());
+    neighbourhood.add(focus);
+    int start = 0;
+    for (int distance = 0; distance < depth && start < neighbourhood.size(); ++distance) {
+      int end = neighbourhood.size();
+      for (int i = start; i < end; ++i) {
+        int id = neighbourhood.get(i).getId();
+        visit(outgoingOffsets, outgoingTargets, id, visited, neighbourhood);
+        visit(incomingOffsets, incomingTargets, id, visited, neighbourhood);
+      }
+      start = end;
+    }
+    neighbourhood.sort(Comparator.comparingInt(DiagramType::getOrder));
+    return neighbourhood;
+  }
+
+  private void visit(int[] offsets, int[] targets, int id, Set<Integer> visited, List<DiagramType> neighbourhood) {
+    for (int i = offsets[id]; i < offsets[id + 1]; ++i) {
+      if (visited.add(targets[i]))
+        neighbourhood.add(model.getType(targets[i]));
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+/**
+ * The simplifications of a diagram whose layout would be too costly, in the order they are
+ * applied by {@link ClassDiagramWriter#setLayoutBudget(long)}.
+ */
+public enum Simplification {
+  HIDE_METHODS("methods hidden"),
+  COLLAPSE_ATTRIBUTES("inlined attributes collapsed"),
+  DROP_NOTES("notes on links dropped"),
+  FOLD_UTILITIES("utility classes folded");
+
+  final String description;
+
+  Simplification(String description) {
+    this.description = description;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+}
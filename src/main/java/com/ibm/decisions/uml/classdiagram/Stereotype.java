@@ -0,0 +1,53 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+/**
+ * Stereotype of a class in a diagram: a name, with the letter and the color of its spot.
+ */
+public class Stereotype {
+  public static final Stereotype UTILITIES = new Stereotype('U', "#99ccff", "Utilities");
+  public static final Stereotype EVENT = new Stereotype('V', "#ff704d", "Event");
+  public static final Stereotype ENTITY = new Stereotype('N', "#b3ffd9", "Entity");
+
+  final char spot;
+  final String color;
+  final String name;
+
+  public Stereotype(char spot, String color, String name) {
+    this.spot = spot;
+    this.color = color;
+    this.name = name;
+  }
+
+  public char getSpot() {
+    return spot;
+  }
+
+  public String getColor() {
+    return color;
+  }
+
+  public String getName() {
+    return name;
+  }
+}
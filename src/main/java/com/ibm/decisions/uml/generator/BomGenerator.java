@@ -0,0 +1,351 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.generator;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generator of synthetic BOMs, to test how the diagram writer scales.
+ * <p>
+ * The generated BOM only depends on the parameters and on the seed. Each class is
+ * generated from its own random generator, derived from the seed and the class
+ * number, and written as soon as it is generated, so that the size of the BOM is
+ * not limited by the memory.
+ * <p>
+ * Classes are numbered from 0 and put in packages <code>gen.p0</code>, <code>gen.p1</code>...
+ * Inheritance chains are made of consecutive classes: class i extends class i-1
+ * unless i is a multiple of depth+1. The root of a chain may implement the DSI
+ * Entity or Event interfaces. Enumerated classes are in the <code>gen.enums</code> package.
+ */
+public class BomGenerator {
+  static final String ENTITY = "com.ibm.ia.model.Entity";
+  static final String EVENT = "com.ibm.ia.model.Event";
+  static final String ENUM_PACKAGE = "gen.enums";
+  static final String[] INLINED_TYPES = {"int", "double", "boolean", "string", "long",
+      "java.lang.Double", "java.lang.Integer", "java.time.ZonedDateTime", "java.util.Date"};
+  static final String[] OPERATORS = {"+", "-", "*", "/", "==", "!=", "<", ">"};
+
+  @Parameter(names = {"-seed"}, description = "the seed of the random generators")
+  long seed = 0;
+
+  @Parameter(names = {"-classes"}, description = "the number of classes, not counting the enumerated classes")
+  int classes = 1000;
+
+  @Parameter(names = {"-classesPerPackage"}, description = "the number of classes per package")
+  int classesPerPackage = 100;
+
+  @Parameter(names = {"-depth"}, description = "the maximum depth of the inheritance chains")
+  int depth = 3;
+
+  @Parameter(names = {"-attributes"}, description = "the number of attributes of primitive, string, date or enumerated types per class")
+  int attributes = 5;
+
+  @Parameter(names = {"-relations"}, description = "the number of attributes referencing another class, per class")
+  int relations = 2;
+
+  @Parameter(names = {"-collections"}, description = "the number of collection attributes with a domain, per class")
+  int collections = 1;
+
+  @Parameter(names = {"-methods"}, description = "the number of methods per class")
+  int methods = 2;
+
+  @Parameter(names = {"-operators"}, description = "the number of operators per class")
+  int operators = 0;
+
+  @Parameter(names = {"-enums"}, description = "the number of enumerated classes")
+  int enums = 10;
+
+  @Parameter(names = {"-enumValues"}, description = "the number of values per enumerated class")
+  int enumValues = 5;
+
+  @Parameter(names = {"-entities"}, description = "the percentage of inheritance roots implementing " + ENTITY)
+  int entities = 0;
+
+  @Parameter(names = {"-events"}, description = "the percentage of inheritance roots implementing " + EVENT)
+  int events = 0;
+
+  @Parameter(names = {"-properties"}, description = "the number of properties per attribute")
+  int properties = 1;
+
+  @Parameter(names = {"-output"}, description = "the output BOM file, the standard output is used by default")
+  String output;
+
+  public BomGenerator seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  public BomGenerator classes(int classes) {
+    this.classes = classes;
+    return this;
+  }
+
+  public BomGenerator classesPerPackage(int classesPerPackage) {
+    this.classesPerPackage = Math.max(1, classesPerPackage);
+    return this;
+  }
+
+  public BomGenerator depth(int depth) {
+    this.depth = Math.max(0, depth);
+    return this;
+  }
+
+  public BomGenerator attributes(int attributes) {
+    this.attributes = attributes;
+    return this;
+  }
+
+  public BomGenerator relations(int relations) {
+    this.relations = relations;
+    return this;
+  }
+
+  public BomGenerator collections(int collections) {
+    this.collections = collections;
+    return this;
+  }
+
+  public BomGenerator methods(int methods) {
+    this.methods = methods;
+    return this;
+  }
+
+  public BomGenerator operators(int operators) {
+    this.operators = operators;
+    return this;
+  }
+
+  public BomGenerator enums(int enums, int values) {
+    this.enums = enums;
+    this.enumValues = values;
+    return this;
+  }
+
+  /**
+   * Sets the percentages of inheritance roots implementing the DSI Entity and Event
+   * interfaces.
+   */
+  public BomGenerator dsi(int entities, int events) {
+    this.entities = entities;
+    this.events = events;
+    return this;
+  }
+
+  public BomGenerator properties(int properties) {
+    this.properties = properties;
+    return this;
+  }
+
+  public static void main(String[] args) throws IOException {
+    BomGenerator generator = new BomGenerator();
+    new JCommander(generator, args);
+    if (generator.classesPerPackage < 1 || generator.depth < 0) {
+      System.err.println("-classesPerPackage must be at least 1 and -depth at least 0");
+      System.exit(1);
+    }
+    Writer writer;
+    if (generator.output != null)
+      writer = Files.newBufferedWriter(Paths.get(generator.output), StandardCharsets.UTF_8);
+    else
+      writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    generator.generate(writer);
+    if (generator.output != null)
+      writer.close();
+    else
+      writer.flush();
+  }
+
+  public String generate() {
+    StringWriter writer = new StringWriter();
+    try {
+      generate(writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Writes the BOM, class by class.
+   */
+  public void generate(Writer out) throws IOException {
+    StringBuilder text = new StringBuilder(1024);
+    for (int i = 0; i < classes; ++i) {
+      if (i % classesPerPackage == 0) {
+        text.append("package ").append(getPackage(i)).append(";\n\n\n");
+      }
+      writeClass(i, text);
+      out.append(text);
+      text.setLength(0);
+    }
+    if (enums > 0) {
+      text.append("package ").append(ENUM_PACKAGE).append(";\n\n\n");
+      for (int i = 0; i < enums; ++i) {
+        writeEnum(i, text);
+        out.append(text);
+        text.setLength(0);
+      }
+    }
+  }
+
+  Random getRandom(long index) {
+    // a different sequence per class, that only depends on the seed and on the class
+    return new Random(seed * 0x9E3779B97F4A7C15L + index);
+  }
+
+  String getPackage(int index) {
+    return "gen.p" + index / classesPerPackage;
+  }
+
+  String getClassName(int index) {
+    return getPackage(index) + ".C" + index;
+  }
+
+  String getEnumName(int index) {
+    return ENUM_PACKAGE + ".E" + index;
+  }
+
+  void writeClass(int index, StringBuilder text) {
+    Random random = getRandom(index);
+    String name = "C" + index;
+    boolean root = index % (depth + 1) == 0;
+    String dsiType = null;
+    if (root) {
+      int draw = random.nextInt(100);
+      if (draw < entities)
+        dsiType = ENTITY;
+      else if (draw < entities + events)
+        dsiType = EVENT;
+    }
+    text.append("public class ").append(name).append('\n');
+    if (!root)
+      text.append("        extends ").append(getClassName(index - 1)).append('\n');
+    if (dsiType != null)
+      text.append("        implements ").append(dsiType).append('\n');
+    text.append("        property \"gen.index\" \"").append(index).append("\"\n");
+    text.append("{\n");
+
+    if (ENTITY.equals(dsiType)) {
+      text.append("    public string id").append(index).append('\n');
+      text.append("                property \"ia.entity.id\" \"true\"");
+      writeProperties(0, text);
+    } else if (EVENT.equals(dsiType)) {
+      text.append("    public java.time.ZonedDateTime timestamp").append(index).append('\n');
+      text.append("                property \"ia.timestamp\" \"true\"");
+      writeProperties(0, text);
+    }
+    for (int a = 0; a < attributes; ++a) {
+      String type;
+      if (enums > 0 && random.nextInt(10) == 0)
+        type = getEnumName(random.nextInt(enums));
+      else
+        type = INLINED_TYPES[random.nextInt(INLINED_TYPES.length)];
+      text.append("    public ");
+      if (random.nextInt(20) == 0)
+        text.append("readonly ");
+      text.append(type).append(" a").append(a);
+      writeProperties(a, text);
+    }
+    for (int r = 0; r < relations; ++r) {
+      text.append("    public ").append(getClassName(random.nextInt(classes)));
+      if (random.nextInt(10) == 0)
+        text.append("[]");
+      text.append(" r").append(r);
+      writeProperties(r, text);
+    }
+    for (int c = 0; c < collections; ++c) {
+      text.append("    public java.util.List l").append(c).append(" domain ");
+      int min = random.nextInt(3);
+      switch (random.nextInt(3)) {
+        case 0:
+          text.append(min).append(",*");
+          break;
+        case 1:
+          text.append(min).append(',').append(min + 1 + random.nextInt(5));
+          break;
+        default:
+          text.append(min + 1).append(',').append(min + 1);
+      }
+      text.append(" class ").append(getClassName(random.nextInt(classes)));
+      writeProperties(c, text);
+    }
+    text.append("    public ").append(name).append("();\n");
+    for (int m = 0; m < methods; ++m) {
+      text.append("    public ");
+      if (random.nextBoolean())
+        text.append("static ");
+      text.append(INLINED_TYPES[random.nextInt(INLINED_TYPES.length)]).append(" m").append(m).append('(');
+      int parameters = random.nextInt(4);
+      for (int p = 0; p < parameters; ++p) {
+        if (p > 0)
+          text.append(", ");
+        text.append(INLINED_TYPES[random.nextInt(INLINED_TYPES.length)]).append(" arg").append(p);
+      }
+      text.append(");\n");
+    }
+    String qualifiedName = getClassName(index);
+    for (int o = 0; o < operators && o <= OPERATORS.length; ++o) {
+      if (o == OPERATORS.length) {
+        // and a conversion operator, like in operator.bom
+        text.append("    public static operator ").append(qualifiedName).append("(int value);\n");
+      } else {
+        String operator = OPERATORS[o];
+        boolean comparison = operator.length() == 2 || operator.equals("<") || operator.equals(">");
+        text.append("    public static ").append(comparison ? "boolean" : qualifiedName).append(" operator ").append(operator)
+            .append('(').append(qualifiedName).append(" o1, ").append(qualifiedName).append(" o2);\n");
+      }
+    }
+    text.append("}\n\n");
+  }
+
+  void writeProperties(int member, StringBuilder text) {
+    for (int p = 0; p < properties; ++p) {
+      text.append("\n                property \"gen.property").append(p).append("\" \"").append(member).append('"');
+    }
+    text.append(";\n");
+  }
+
+  void writeEnum(int index, StringBuilder text) {
+    String name = getEnumName(index);
+    text.append("public class E").append(index).append('\n');
+    text.append("        property \"ia.enum\" \"true\"\n");
+    text.append("{\n");
+    text.append("    domain {");
+    for (int v = 0; v < enumValues; ++v) {
+      if (v > 0)
+        text.append(", ");
+      text.append("static V").append(v);
+    }
+    text.append("}\n");
+    for (int v = 0; v < enumValues; ++v) {
+      text.append("    public static final readonly ").append(name).append(" V").append(v).append(";\n");
+    }
+    text.append("}\n\n");
+  }
+}
@@ -0,0 +1,368 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.metrics;
+
+import com.ibm.decisions.uml.model.BomSyntaxException;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.ModelReader;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the generation of diagrams: the time spent in each phase, the number of
+ * elements written, the bytes written, the peak heap and the render time of the classes.
+ * <p>
+ * The phases are reading the BOM text, parsing it, traversing the model to build the text
+ * of the diagram, and writing that text to the output. The metrics add up over all the BOMs
+ * of a run, and can be updated by several threads.
+ */
+public class DiagramMetrics implements DiagramMetricsMXBean {
+  public static final String OBJECT_NAME = "com.ibm.decisions.uml:type=DiagramMetrics";
+  static final int SLOWEST_CLASSES = 10;
+  static final int HISTOGRAM_SIZE = 32;
+
+  final LongAdder boms = new LongAdder();
+  final LongAdder readNanos = new LongAdder();
+  final LongAdder parseNanos = new LongAdder();
+  final LongAdder traverseNanos = new LongAdder();
+  final LongAdder writeNanos = new LongAdder();
+  final LongAdder classes = new LongAdder();
+  final LongAdder attributes = new LongAdder();
+  final LongAdder inlinedAttributes = new LongAdder();
+  final LongAdder relations = new LongAdder();
+  final LongAdder methods = new LongAdder();
+  final LongAdder operators = new LongAdder();
+  final LongAdder bytesWritten = new LongAdder();
+  final AtomicLong peakHeap = new AtomicLong();
+  final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_SIZE);
+  // the slowest classes, the fastest of them first
+  final PriorityQueue<SlowClass> slowest = new PriorityQueue<>();
+  volatile long slowestThreshold;
+
+  /**
+   * Returns a model reader that records the time spent reading the BOM text, and the rest
+   * of the time of the given model reader as parsing time.
+   */
+  public ModelReader instrument(ModelReader modelReader) {
+    return reader -> {
+      TimedReader timedReader = new TimedReader(reader);
+      long start = System.nanoTime();
+      DiagramModel model = modelReader.read(timedReader);
+      addRead(timedReader.nanos);
+      addParse(System.nanoTime() - start - timedReader.nanos);
+      return model;
+    };
+  }
+
+  /**
+   * Returns a stream counting the bytes written to the given one.
+   */
+  public OutputStream countBytes(OutputStream out) {
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+        bytesWritten.increment();
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        bytesWritten.add(len);
+      }
+    };
+  }
+
+  /**
+   * Records a BOM whose diagram has been written.
+   */
+  public void addBom() {
+    boms.increment();
+  }
+
+  public void addRead(long nanos) {
+    readNanos.add(nanos);
+  }
+
+  public void addParse(long nanos) {
+    parseNanos.add(nanos);
+  }
+
+  public void addTraverse(long nanos) {
+    traverseNanos.add(nanos);
+  }
+
+  public void addWrite(long nanos) {
+    writeNanos.add(nanos);
+  }
+
+  public void addBytes(long bytes) {
+    bytesWritten.add(bytes);
+  }
+
+  /**
+   * Records the writing of a class block.
+   */
+  public void addClass(String name, long nanos, int attributeCount, int inlinedCount, int methodCount, int operatorCount) {
+    classes.increment();
+    attributes.add(attributeCount);
+    inlinedAttributes.add(inlinedCount);
+    relations.add(attributeCount - inlinedCount);
+    methods.add(methodCount);
+    operators.add(operatorCount);
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    histogram.incrementAndGet(Math.min(HISTOGRAM_SIZE - 1, 64 - Long.numberOfLeadingZeros(micros)));
+    if (nanos > slowestThreshold) {
+      synchronized (slowest) {
+        slowest.add(new SlowClass(name, nanos));
+        if (slowest.size() > SLOWEST_CLASSES)
+          slowest.poll();
+        if (slowest.size() == SLOWEST_CLASSES)
+          slowestThreshold = slowest.peek().nanos;
+      }
+    }
+  }
+
+  /**
+   * Records the current peak of the heap: the sum of the peaks of the heap memory pools.
+   */
+  public void updatePeakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+        peak += pool.getPeakUsage().getUsed();
+    }
+    peakHeap.accumulateAndGet(peak, Math::max);
+  }
+
+  /**
+   * Registers these metrics in the platform MBean server.
+   */
+  public void register() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    if (server.isRegistered(name))
+      server.unregisterMBean(name);
+    server.registerMBean(this, name);
+  }
+
+  @Override
+  public long getBomCount() {
+    return boms.sum();
+  }
+
+  @Override
+  public long getReadMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(readNanos.sum());
+  }
+
+  @Override
+  public long getParseMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(parseNanos.sum());
+  }
+
+  @Override
+  public long getTraverseMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(traverseNanos.sum());
+  }
+
+  @Override
+  public long getWriteMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(writeNanos.sum());
+  }
+
+  @Override
+  public long getClassCount() {
+    return classes.sum();
+  }
+
+  @Override
+  public long getAttributeCount() {
+    return attributes.sum();
+  }
+
+  @Override
+  public long getInlinedAttributeCount() {
+    return inlinedAttributes.sum();
+  }
+
+  @Override
+  public long getRelationCount() {
+    return relations.sum();
+  }
+
+  @Override
+  public long getMethodCount() {
+    return methods.sum();
+  }
+
+  @Override
+  public long getOperatorCount() {
+    return operators.sum();
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  @Override
+  public long getPeakHeapBytes() {
+    updatePeakHeap();
+    return peakHeap.get();
+  }
+
+  @Override
+  public long[] getRenderTimeHistogram() {
+    long[] counts = new long[HISTOGRAM_SIZE];
+    for (int i = 0; i < HISTOGRAM_SIZE; ++i)
+      counts[i] = histogram.get(i);
+    return counts;
+  }
+
+  @Override
+  public String[] getSlowestClasses() {
+    List<SlowClass> classes = getSlowest();
+    String[] result = new String[classes.size()];
+    for (int i = 0; i < result.length; ++i)
+      result[i] = classes.get(i).name + ": " + TimeUnit.NANOSECONDS.toMicros(classes.get(i).nanos);
+    return result;
+  }
+
+  List<SlowClass> getSlowest() {
+    List<SlowClass> classes;
+    synchronized (slowest) {
+      classes = new ArrayList<>(slowest);
+    }
+    classes.sort(Collections.reverseOrder());
+    return classes;
+  }
+
+  /**
+   * Returns the metrics as a JSON object.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"boms\": ").append(getBomCount()).append(",\n");
+    json.append("  \"phases\": {\"readMillis\": ").append(getReadMillis())
+        .append(", \"parseMillis\": ").append(getParseMillis())
+        .append(", \"traverseMillis\": ").append(getTraverseMillis())
+        .append(", \"writeMillis\": ").append(getWriteMillis()).append("},\n");
+    json.append("  \"counts\": {\"classes\": ").append(getClassCount())
+        .append(", \"attributes\": ").append(getAttributeCount())
+        .append(", \"inlinedAttributes\": ").append(getInlinedAttributeCount())
+        .append(", \"relations\": ").append(getRelationCount())
+        .append(", \"methods\": ").append(getMethodCount())
+        .append(", \"operators\": ").append(getOperatorCount()).append("},\n");
+    json.append("  \"bytesWritten\": ").append(getBytesWritten()).append(",\n");
+    json.append("  \"peakHeapBytes\": ").append(getPeakHeapBytes()).append(",\n");
+    json.append("  \"renderTimeHistogram\": [");
+    String separator = "";
+    for (int i = 0; i < HISTOGRAM_SIZE; ++i) {
+      long count = histogram.get(i);
+      if (count != 0) {
+        json.append(separator).append("{\"maxMicros\": ").append(1L << i).append(", \"classes\": ").append(count).append('}');
+        separator = ", ";
+      }
+    }
+    json.append("],\n");
+    json.append("  \"slowestClasses\": [");
+    separator = "";
+    for (SlowClass clazz : getSlowest()) {
+      json.append(separator).append("{\"class\": ");
+      appendString(json, clazz.name);
+      json.append(", \"micros\": ").append(TimeUnit.NANOSECONDS.toMicros(clazz.nanos)).append('}');
+      separator = ", ";
+    }
+    json.append("]\n");
+    json.append("}\n");
+    return json.toString();
+  }
+
+  static void appendString(StringBuilder json, String text) {
+    json.append('"');
+    for (int i = 0; i < text.length(); ++i) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\\')
+        json.append('\\').append(c);
+      else if (c < ' ')
+        json.append(String.format("\\u%04x", (int) c));
+      else
+        json.append(c);
+    }
+    json.append('"');
+  }
+
+  static class SlowClass implements Comparable<SlowClass> {
+    final String name;
+    final long nanos;
+
+    SlowClass(String name, long nanos) {
+      this.name = name;
+      this.nanos = nanos;
+    }
+
+    @Override
+    public int compareTo(SlowClass other) {
+      return Long.compare(nanos, other.nanos);
+    }
+  }
+
+  /**
+   * Reader recording the time spent in the reads of the underlying reader.
+   */
+  static class TimedReader extends FilterReader {
+    long nanos;
+
+    TimedReader(Reader in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      int c = in.read();
+      nanos += System.nanoTime() - start;
+      return c;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+      long start = System.nanoTime();
+      int count = in.read(buffer, offset, length);
+      nanos += System.nanoTime() - start;
+      return count;
+    }
+  }
+}
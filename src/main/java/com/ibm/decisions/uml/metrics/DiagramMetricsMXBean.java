@@ -0,0 +1,64 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.metrics;
+
+/**
+ * JMX view of {@link DiagramMetrics}, registered in the batch and server modes.
+ */
+public interface DiagramMetricsMXBean {
+  long getBomCount();
+
+  long getReadMillis();
+
+  long getParseMillis();
+
+  long getTraverseMillis();
+
+  long getWriteMillis();
+
+  long getClassCount();
+
+  long getAttributeCount();
+
+  long getInlinedAttributeCount();
+
+  long getRelationCount();
+
+  long getMethodCount();
+
+  long getOperatorCount();
+
+  long getBytesWritten();
+
+  long getPeakHeapBytes();
+
+  /**
+   * Returns the number of class blocks by render time: the count at index i is the number
+   * of blocks written in less than 2^i microseconds, and at least 2^(i-1).
+   */
+  long[] getRenderTimeHistogram();
+
+  /**
+   * Returns the slowest classes to render, slowest first, as "name: micros".
+   */
+  String[] getSlowestClasses();
+}
@@ -0,0 +1,871 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Native parser of the BOM text syntax, building a {@link DiagramModel} without
+ * the ODM libraries.
+ * <p>
+ * It reads the declarations needed by the class diagrams: packages, classes and
+ * interfaces, nested classes, attributes with their collection domains, constructors,
+ * methods and operators, and the properties used by the diagrams. The other
+ * declarations, such as literal domains and the other properties, are skipped.
+ * <p>
+ * The naming and ordering rules are those of ODM for the usual BOMs: a type is
+ * named by its short name unless it is ambiguous, classes and packages are sorted
+ * by name, and members by name and parameters. A class with a static domain is an
+ * enumerated class, and a class with static members only is a utility class.
+ */
+public class BomParser implements ModelReader {
+  static final Set<String> MODIFIERS = new HashSet<>(Arrays.asList(
+      "public", "protected", "private", "static", "final", "readonly", "abstract",
+      "native", "synchronized", "transient", "volatile", "strictfp", "default"));
+  static final Set<String> PRIMITIVES = new HashSet<>(Arrays.asList(
+      "boolean", "byte", "char", "short", "int", "long", "float", "double", "void"));
+  static final String STRING_CLASS = "java.lang.String";
+  static final String OBJECT_CLASS = "java.lang.Object";
+
+  // token kinds
+  static final int EOF = 0;
+  static final int IDENTIFIER = 1;
+  static final int STRING = 2;
+  static final int NUMBER = 3;
+  static final int SYMBOL = 4;
+  static final String OPERATOR_CHARS = "+-*/%=!<>&|^~";
+
+  Reader in;
+  final char[] buffer = new char[1 << 16];
+  int position;
+  int limit;
+  final StringBuilder text = new StringBuilder();
+  int line;
+  // the offsets in the input of the first character of the buffer, of the current line and of the token
+  long offset;
+  long lineStart;
+  long tokenStart;
+  int kind;
+  String token;
+  String currentPackage;
+  final Map<String, String> names = new HashMap<>();
+  final List<ClassDeclaration> classes = new ArrayList<>();
+
+  @Override
+  public DiagramModel read(Reader reader) throws IOException, BomSyntaxException {
+    // the parsing state belongs to a new parser, so that a parser can be shared by threads
+    return new BomParser().parse(reader);
+  }
+
+  DiagramModel parse(Reader reader) throws IOException, BomSyntaxException {
+    in = reader;
+    line = 1;
+    next();
+    while (kind != EOF) {
+      if (isToken("package")) {
+        next();
+        currentPackage = expectIdentifier();
+        expect(";");
+      } else if (isToken("property")) {
+        skipProperty();
+      } else if (isToken("import")) {
+        next();
+        expectIdentifier();
+        expect(";");
+      } else {
+        parseClass(null);
+      }
+    }
+    return new ModelBuilder(classes).build();
+  }
+
+  // ------------------------------------------------------------------ declarations
+
+  ClassDeclaration parseClass(ClassDeclaration outer) throws IOException, BomSyntaxException {
+    ClassDeclaration declaration = new ClassDeclaration();
+    skipModifiers();
+    if (isToken("interface")) {
+      declaration.isInterface = true;
+    } else if (!isToken("class")) {
+      throw error("class declaration expected");
+    }
+    next();
+    String name = expectIdentifier();
+    declaration.simpleName = name;
+    declaration.packageName = currentPackage;
+    if (outer != null) {
+      declaration.name = outer.name + '.' + name;
+      declaration.namespace = outer.name;
+    } else {
+      declaration.name = currentPackage == null ? name : currentPackage + '.' + name;
+      declaration.namespace = currentPackage;
+    }
+    declaration.outer = outer;
+    if (isToken("<"))
+      skipGenerics();
+    while (isToken("extends") || isToken("implements")) {
+      do {
+        next();
+        declaration.superclasses.add(parseType());
+      } while (isToken(","));
+    }
+    skipProperties();
+    expect("{");
+    while (!isToken("}")) {
+      if (kind == EOF)
+        throw error("} expected");
+      parseMember(declaration);
+    }
+    next();
+    classes.add(declaration);
+    return declaration;
+  }
+
+  void parseMember(ClassDeclaration declaration) throws IOException, BomSyntaxException {
+    if (isToken("domain")) {
+      // domain of the class, such as {static A, static B} for an enumerated class
+      next();
+      declaration.isEnum |= skipDomain();
+      if (isToken(";"))
+        next();
+      return;
+    }
+    if (isToken("property")) {
+      skipProperties();
+      if (isToken(";"))
+        next();
+      return;
+    }
+    boolean isStatic = false;
+    while (kind == IDENTIFIER && MODIFIERS.contains(token)) {
+      isStatic |= token.equals("static");
+      next();
+    }
+    if (isToken("class") || isToken("interface")) {
+      parseClass(declaration);
+      return;
+    }
+    String genericSignature = null;
+    if (isToken("<"))
+      genericSignature = skipGenerics();
+
+    MethodDeclaration method;
+    if (isToken("operator")) {
+      // conversion operator, named by its target type
+      next();
+      TypeReference type = parseType();
+      method = new MethodDeclaration(null, type);
+      method.isOperator = true;
+      method.isConversion = true;
+    } else {
+      String typeName = expectIdentifier();
+      if (isToken("(") && typeName.equals(declaration.simpleName)) {
+        method = new MethodDeclaration(declaration.simpleName, null);
+        method.isConstructor = true;
+        method.isStatic = isStatic;
+        parseParameters(method);
+        skipProperties();
+        expect(";");
+        declaration.constructors.add(method);
+        return;
+      }
+      TypeReference type = parseType(typeName);
+      if (isToken("operator")) {
+        next();
+        if (kind != SYMBOL)
+          throw error("operator expected");
+        method = new MethodDeclaration(token, type);
+        method.isOperator = true;
+        next();
+      } else {
+        String name = expectIdentifier();
+        if (!isToken("(")) {
+          AttributeDeclaration attribute = new AttributeDeclaration(name, type);
+          attribute.isStatic = isStatic;
+          if (isToken("domain")) {
+            next();
+            parseDomain(attribute);
+          }
+          parseAttributeProperties(attribute);
+          expect(";");
+          declaration.attributes.add(attribute);
+          return;
+        }
+        method = new MethodDeclaration(name, type);
+      }
+    }
+    method.isStatic = isStatic;
+    method.genericSignature = genericSignature;
+    parseParameters(method);
+    if (isToken("throws")) {
+      do {
+        next();
+        parseType();
+      } while (isToken(","));
+    }
+    skipProperties();
+    expect(";");
+    declaration.methods.add(method);
+  }
+
+  void parseParameters(MethodDeclaration method) throws IOException, BomSyntaxException {
+    expect("(");
+    while (!isToken(")")) {
+      if (!method.parameterTypes.isEmpty())
+        expect(",");
+      skipModifiers();
+      TypeReference type = parseType();
+      if (isToken("...")) {
+        next();
+        type = new TypeReference(type.name + "[]", type.packageName);
+        method.isVarArgs = true;
+      }
+      method.parameterTypes.add(type);
+      method.parameterNames.add(intern(expectIdentifier()));
+      if (isToken("domain")) {
+        next();
+        // the domains of the parameters are not part of the diagram
+        parseDomain(new AttributeDeclaration(null, type));
+      }
+    }
+    next();
+  }
+
+  void parseDomain(AttributeDeclaration attribute) throws IOException, BomSyntaxException {
+    if (kind == NUMBER) {
+      attribute.isCollection = true;
+      attribute.min = parseInt();
+      next();
+      expect(",");
+      if (isToken("*")) {
+        attribute.max = DiagramAttribute.INFINITE;
+        next();
+      } else if (kind == NUMBER) {
+        attribute.max = parseInt();
+        next();
+      } else {
+        throw error("collection domain maximum expected");
+      }
+      if (isToken("class")) {
+        next();
+        attribute.elementType = parseType();
+      }
+    } else {
+      skipDomain();
+    }
+  }
+
+  /**
+   * Returns the value of the current number token, which must be an int.
+   */
+  int parseInt() throws BomSyntaxException {
+    try {
+      return Integer.parseInt(token);
+    } catch (NumberFormatException e) {
+      throw error("integer expected");
+    }
+  }
+
+  void parseAttributeProperties(AttributeDeclaration attribute) throws IOException, BomSyntaxException {
+    while (isToken("property")) {
+      next();
+      String key = token;
+      next();
+      if (key.equals("ia.timestamp"))
+        attribute.flags |= DiagramAttribute.TIMESTAMP;
+      else if (key.equals("ia.entity.id"))
+        attribute.flags |= DiagramAttribute.ENTITY_ID;
+      if (kind == STRING || kind == NUMBER)
+        next();
+    }
+  }
+
+  TypeReference parseType() throws IOException, BomSyntaxException {
+    return parseType(expectIdentifier());
+  }
+
+  /**
+   * Parses the rest of a type whose name has already been read.
+   */
+  TypeReference parseType(String name) throws IOException, BomSyntaxException {
+    if (isToken("<"))
+      skipGenerics();
+    StringBuilder dimensions = null;
+    while (isToken("[") && peek() == ']') {
+      read();
+      next();
+      if (dimensions == null)
+        dimensions = new StringBuilder();
+      dimensions.append("[]");
+    }
+    if (dimensions != null)
+      name = name + dimensions;
+    return new TypeReference(intern(name), currentPackage);
+  }
+
+  /**
+   * Skips a domain, returning whether it is a static references domain.
+   */
+  boolean skipDomain() throws IOException, BomSyntaxException {
+    boolean isStatic = false;
+    if (isToken("{") || isToken("[") || isToken("(")) {
+      int depth = 0;
+      do {
+        if (isToken("{") || isToken("[") || isToken("("))
+          ++depth;
+        else if (isToken("}") || isToken("]") || isToken(")"))
+          --depth;
+        else if (isToken("static"))
+          isStatic = true;
+        else if (kind == EOF)
+          throw error("end of domain expected");
+        next();
+      } while (depth > 0);
+    } else {
+      while (!isToken(";") && !isToken("property") && !isToken(",") && !isToken(")") && !isToken("}")) {
+        if (kind == EOF)
+          throw error("end of domain expected");
+        next();
+      }
+    }
+    return isStatic;
+  }
+
+  String skipGenerics() throws IOException, BomSyntaxException {
+    StringBuilder text = new StringBuilder();
+    int depth = 0;
+    do {
+      if (kind == EOF)
+        throw error("> expected");
+      for (int i = 0; i < token.length(); ++i) {
+        char c = token.charAt(i);
+        if (c == '<')
+          ++depth;
+        else if (c == '>')
+          --depth;
+      }
+      if (text.length() > 0 && kind == IDENTIFIER && Character.isJavaIdentifierPart(text.charAt(text.length() - 1)))
+        text.append(' ');
+      text.append(token);
+      if (token.equals(","))
+        text.append(' ');
+      next();
+    } while (depth > 0);
+    return text.toString();
+  }
+
+  void skipModifiers() throws IOException, BomSyntaxException {
+    while (kind == IDENTIFIER && MODIFIERS.contains(token))
+      next();
+  }
+
+  void skipProperties() throws IOException, BomSyntaxException {
+    while (isToken("property"))
+      skipProperty();
+  }
+
+  void skipProperty() throws IOException, BomSyntaxException {
+    next();
+    if (kind != IDENTIFIER && kind != STRING)
+      throw error("property name expected");
+    next();
+    if (kind == STRING || kind == NUMBER)
+      next();
+  }
+
+  String intern(String name) {
+    String interned = names.get(name);
+    if (interned == null) {
+      names.put(name, name);
+      interned = name;
+    }
+    return interned;
+  }
+
+  // ------------------------------------------------------------------ tokens
+
+  boolean isToken(String text) {
+    return kind != STRING && kind != EOF && token.equals(text);
+  }
+
+  void expect(String text) throws IOException, BomSyntaxException {
+    if (!isToken(text))
+      throw error(text + " expected");
+    next();
+  }
+
+  String expectIdentifier() throws IOException, BomSyntaxException {
+    if (kind != IDENTIFIER)
+      throw error("identifier expected");
+    String identifier = token;
+    next();
+    return identifier;
+  }
+
+  BomSyntaxException error(String message) {
+    String found = kind == EOF ? "end of file" : "'" + token + "'";
+    int column = (int) (tokenStart - lineStart) + 1;
+    return new BomSyntaxException(new String[]{"line " + line + ", column " + column + ": " + message + ", found " + found});
+  }
+
+  /**
+   * Counts a line, the previous character being its line separator.
+   */
+  void newLine() {
+    ++line;
+    lineStart = offset + position;
+  }
+
+  int read() throws IOException {
+    if (position == limit && !fill())
+      return -1;
+    return buffer[position++];
+  }
+
+  int peek() throws IOException {
+    if (position == limit && !fill())
+      return -1;
+    return buffer[position];
+  }
+
+  /**
+   * Returns the character after the next one, without consuming anything.
+   */
+  int peekSecond() throws IOException {
+    if (limit - position < 2) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      offset += position;
+      limit -= position;
+      position = 0;
+      int count = in.read(buffer, limit, buffer.length - limit);
+      if (count > 0)
+        limit += count;
+      if (limit < 2)
+        return -1;
+    }
+    return buffer[position + 1];
+  }
+
+  boolean fill() throws IOException {
+    int count = in.read(buffer, 0, buffer.length);
+    offset += limit;
+    position = 0;
+    limit = Math.max(count, 0);
+    return count > 0;
+  }
+
+  void next() throws IOException, BomSyntaxException {
+    int c = skipBlanks();
+    tokenStart = offset + position - (c == -1 ? 0 : 1);
+    if (c == -1) {
+      kind = EOF;
+      token = null;
+      return;
+    }
+    text.setLength(0);
+    if (Character.isJavaIdentifierStart(c)) {
+      kind = IDENTIFIER;
+      text.append((char) c);
+      while (true) {
+        int d = peek();
+        if (d != -1 && Character.isJavaIdentifierPart(d)) {
+          text.append((char) d);
+          ++position;
+        } else if (d == '.' && Character.isJavaIdentifierStart(peekSecond())) {
+          // a qualified name goes on if the dot is followed by an identifier
+          text.append('.');
+          ++position;
+        } else {
+          break;
+        }
+      }
+      token = intern(text.toString());
+      return;
+    } else if (Character.isDigit(c)) {
+      kind = NUMBER;
+      text.append((char) c);
+      int d;
+      while ((d = peek()) != -1 && (Character.isDigit(d) || d == '.')) {
+        text.append((char) d);
+        ++position;
+      }
+    } else if (c == '"') {
+      kind = STRING;
+      int d;
+      while ((d = read()) != '"') {
+        if (d == -1)
+          throw error("end of string expected");
+        if (d == '\\')
+          d = read();
+        if (d == '\n')
+          newLine();
+        text.append((char) d);
+      }
+    } else if (c == '.') {
+      kind = SYMBOL;
+      text.append('.');
+      if (peek() == '.' && peekSecond() == '.') {
+        text.append("..");
+        position += 2;
+      }
+    } else if (OPERATOR_CHARS.indexOf(c) >= 0) {
+      kind = SYMBOL;
+      text.append((char) c);
+      int d;
+      while ((d = peek()) != -1 && OPERATOR_CHARS.indexOf(d) >= 0 && (c != '<' && c != '>' || d == '=')) {
+        text.append((char) d);
+        ++position;
+      }
+    } else {
+      kind = SYMBOL;
+      text.append((char) c);
+    }
+    token = text.toString();
+  }
+
+  /**
+   * Skips the white spaces and the comments, returning the next character.
+   */
+  int skipBlanks() throws IOException, BomSyntaxException {
+    while (true) {
+      int c = read();
+      if (c == '\n') {
+        newLine();
+      } else if (c == '/' && peek() == '/') {
+        while ((c = read()) != -1 && c != '\n') ;
+        if (c == -1)
+          return -1;
+        newLine();
+      } else if (c == '/' && peek() == '*') {
+        ++position;
+        int previous = 0;
+        while ((c = read()) != -1 && !(previous == '*' && c == '/')) {
+          if (c == '\n')
+            newLine();
+          previous = c;
+        }
+        if (c == -1)
+          throw error("end of comment expected");
+      } else if (c == -1 || !Character.isWhitespace(c)) {
+        return c;
+      }
+    }
+  }
+
+  // ------------------------------------------------------------------ parsed declarations
+
+  static class TypeReference {
+    final String name;
+    final String packageName;
+
+    TypeReference(String name, String packageName) {
+      this.name = name;
+      this.packageName = packageName;
+    }
+  }
+
+  static class ClassDeclaration {
+    String name;
+    String simpleName;
+    String packageName;
+    String namespace;
+    ClassDeclaration outer;
+    boolean isInterface;
+    boolean isEnum;
+    final List<TypeReference> superclasses = new ArrayList<>(2);
+    final List<AttributeDeclaration> attributes = new ArrayList<>();
+    final List<MethodDeclaration> constructors = new ArrayList<>();
+    final List<MethodDeclaration> methods = new ArrayList<>();
+
+    boolean isUtility() {
+      if (isEnum || isInterface || !constructors.isEmpty() || methods.isEmpty())
+        return false;
+      for (AttributeDeclaration attribute : attributes) {
+        if (!attribute.isStatic)
+          return false;
+      }
+      for (MethodDeclaration method : methods) {
+        if (!method.isStatic)
+          return false;
+      }
+      return true;
+    }
+  }
+
+  static class AttributeDeclaration {
+    final String name;
+    final TypeReference type;
+    boolean isStatic;
+    int flags;
+    boolean isCollection;
+    int min;
+    int max;
+    TypeReference elementType;
+
+    AttributeDeclaration(String name, TypeReference type) {
+      this.name = name;
+      this.type = type;
+    }
+  }
+
+  static class MethodDeclaration {
+    final String name;
+    final TypeReference returnType;
+    boolean isStatic;
+    boolean isConstructor;
+    boolean isOperator;
+    boolean isConversion;
+    boolean isVarArgs;
+    String genericSignature;
+    final List<TypeReference> parameterTypes = new ArrayList<>(4);
+    final List<String> parameterNames = new ArrayList<>(4);
+
+    MethodDeclaration(String name, TypeReference returnType) {
+      this.name = name;
+      this.returnType = returnType;
+    }
+  }
+
+  // ------------------------------------------------------------------ model
+
+  /**
+   * Builds the model once all the declarations are known, so that forward
+   * references can be resolved.
+   */
+  static class ModelBuilder {
+    final List<ClassDeclaration> declarations;
+    final Map<String, ClassDeclaration> declarationsByName = new HashMap<>();
+    final DiagramModel model = new DiagramModel();
+
+    ModelBuilder(List<ClassDeclaration> declarations) {
+      this.declarations = declarations;
+      for (ClassDeclaration declaration : declarations)
+        declarationsByName.put(declaration.name, declaration);
+    }
+
+    DiagramModel build() {
+      for (ClassDeclaration declaration : declarations) {
+        DiagramType type = model.addType(declaration.name);
+        type.namespace = declaration.namespace;
+        if (declaration.isInterface)
+          type.flags |= DiagramType.INTERFACE;
+        if (declaration.isEnum)
+          type.flags |= DiagramType.ENUM;
+        if (declaration.isUtility())
+          type.flags |= DiagramType.UTILITY;
+      }
+      model.objectClass = getType(OBJECT_CLASS);
+      for (ClassDeclaration declaration : declarations) {
+        DiagramType type = model.getType(declaration.name);
+        type.superclasses = getTypes(declaration.superclasses);
+        type.attributes = buildAttributes(declaration.attributes);
+        type.constructors = buildMethods(declaration.constructors);
+        type.methods = buildMethods(declaration.methods);
+      }
+      buildNames();
+      buildPackages();
+      return model;
+    }
+
+    DiagramType getType(TypeReference reference) {
+      return getType(resolve(reference));
+    }
+
+    DiagramType[] getTypes(List<TypeReference> references) {
+      if (references.isEmpty())
+        return DiagramType.NO_TYPES;
+      DiagramType[] types = new DiagramType[references.size()];
+      for (int i = 0; i < types.length; ++i)
+        types[i] = getType(references.get(i));
+      return types;
+    }
+
+    /**
+     * Returns the fully qualified name of a referenced type.
+     */
+    String resolve(TypeReference reference) {
+      String name = reference.name;
+      if (name.endsWith("[]"))
+        return resolve(new TypeReference(name.substring(0, name.length() - 2), reference.packageName)) + "[]";
+      if (name.equals("string"))
+        return STRING_CLASS;
+      if (PRIMITIVES.contains(name) || declarationsByName.containsKey(name) || reference.packageName == null)
+        return name;
+      String qualified = reference.packageName + '.' + name;
+      return declarationsByName.containsKey(qualified) ? qualified : name;
+    }
+
+    DiagramType getType(String name) {
+      DiagramType type = model.getType(name);
+      if (type == null) {
+        type = model.addType(name);
+        if (name.endsWith("[]")) {
+          type.flags |= DiagramType.ARRAY;
+          type.componentType = getType(name.substring(0, name.length() - 2));
+        } else if (PRIMITIVES.contains(name)) {
+          type.flags |= DiagramType.PRIMITIVE;
+        } else {
+          int dot = name.lastIndexOf('.');
+          type.namespace = dot < 0 ? null : name.substring(0, dot);
+          if (name.equals(STRING_CLASS))
+            type.flags |= DiagramType.STRING;
+          else if (name.equals(OBJECT_CLASS))
+            type.flags |= DiagramType.OBJECT;
+          else
+            type.flags |= DiagramType.MISSING_REFERENCE;
+        }
+      }
+      return type;
+    }
+
+    DiagramAttribute[] buildAttributes(List<AttributeDeclaration> declarations) {
+      if (declarations.isEmpty())
+        return DiagramAttribute.NO_ATTRIBUTES;
+      DiagramAttribute[] attributes = new DiagramAttribute[declarations.size()];
+      for (int i = 0; i < attributes.length; ++i) {
+        AttributeDeclaration declaration = declarations.get(i);
+        DiagramAttribute attribute = new DiagramAttribute(declaration.name, getType(declaration.type));
+        attribute.flags = declaration.flags;
+        if (declaration.isStatic)
+          attribute.flags |= DiagramAttribute.STATIC;
+        if (declaration.isCollection) {
+          attribute.flags |= DiagramAttribute.COLLECTION;
+          attribute.min = declaration.min;
+          attribute.max = declaration.max;
+          if (declaration.elementType != null)
+            attribute.elementType = getType(declaration.elementType);
+        }
+        attributes[i] = attribute;
+      }
+      return attributes;
+    }
+
+    DiagramMethod[] buildMethods(List<MethodDeclaration> declarations) {
+      if (declarations.isEmpty())
+        return DiagramMethod.NO_METHODS;
+      DiagramMethod[] methods = new DiagramMethod[declarations.size()];
+      for (int i = 0; i < methods.length; ++i) {
+        MethodDeclaration declaration = declarations.get(i);
+        DiagramType returnType = declaration.returnType == null ? null : getType(declaration.returnType);
+        String name = declaration.isConversion ? returnType.getFullyQualifiedName() : declaration.name;
+        DiagramMethod method = new DiagramMethod(name, returnType);
+        if (declaration.isStatic)
+          method.flags |= DiagramMethod.STATIC;
+        if (declaration.isConstructor)
+          method.flags |= DiagramMethod.CONSTRUCTOR;
+        if (declaration.isOperator)
+          method.flags |= DiagramMethod.OPERATOR;
+        if (declaration.isVarArgs)
+          method.flags |= DiagramMethod.VARARGS;
+        method.genericSignature = declaration.genericSignature;
+        method.parameterTypes = getTypes(declaration.parameterTypes);
+        method.parameterNames = declaration.parameterNames.toArray(new String[0]);
+        methods[i] = method;
+      }
+      Arrays.sort(methods, MEMBER_COMPARATOR);
+      return methods;
+    }
+
+    /**
+     * Names each type by its simple name, unless another type has the same one.
+     */
+    void buildNames() {
+      Map<String, Integer> counts = new HashMap<>();
+      for (DiagramType type : model.types) {
+        if (!type.isArray())
+          counts.merge(getSimpleName(type.fullyQualifiedName), 1, Integer::sum);
+      }
+      for (DiagramType type : model.types) {
+        if (!type.isArray()) {
+          String simpleName = getSimpleName(type.fullyQualifiedName);
+          type.name = counts.get(simpleName) == 1 ? simpleName : type.fullyQualifiedName;
+          type.shortName = simpleName;
+        }
+      }
+      for (DiagramType type : model.types) {
+        if (type.isArray()) {
+          DiagramType component = type;
+          StringBuilder dimensions = new StringBuilder();
+          while (component.isArray()) {
+            component = component.componentType;
+            dimensions.append("[]");
+          }
+          type.name = component.name + dimensions;
+          type.shortName = component.shortName + dimensions;
+        }
+      }
+    }
+
+    static String getSimpleName(String name) {
+      return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Puts the top level classes in their packages, all nested in the default
+     * package, and numbers them in the order of the package traversal.
+     */
+    void buildPackages() {
+      Map<String, List<DiagramType>> classesByPackage = new TreeMap<>();
+      List<DiagramType> defaultClasses = new ArrayList<>();
+      for (ClassDeclaration declaration : declarations) {
+        if (declaration.outer == null) {
+          DiagramType type = model.getType(declaration.name);
+          if (declaration.packageName == null)
+            defaultClasses.add(type);
+          else
+            classesByPackage.computeIfAbsent(declaration.packageName, k -> new ArrayList<>()).add(type);
+        }
+      }
+      int order = 0;
+      DiagramPackage defaultPackage = model.defaultPackage;
+      defaultPackage.classes = sortClasses(defaultClasses);
+      for (DiagramType type : defaultPackage.classes)
+        type.order = order++;
+      defaultPackage.packages = new DiagramPackage[classesByPackage.size()];
+      int index = 0;
+      for (Map.Entry<String, List<DiagramType>> entry : classesByPackage.entrySet()) {
+        DiagramPackage pkg = new DiagramPackage(entry.getKey());
+        pkg.classes = sortClasses(entry.getValue());
+        for (DiagramType type : pkg.classes)
+          type.order = order++;
+        defaultPackage.packages[index++] = pkg;
+      }
+    }
+
+    static DiagramType[] sortClasses(List<DiagramType> classes) {
+      DiagramType[] sorted = classes.toArray(DiagramType.NO_TYPES);
+      Arrays.sort(sorted, (t1, t2) -> getSimpleName(t1.fullyQualifiedName).compareTo(getSimpleName(t2.fullyQualifiedName)));
+      return sorted;
+    }
+  }
+
+  static final Comparator<DiagramMethod> MEMBER_COMPARATOR = (m1, m2) -> {
+    int result = m1.name.compareTo(m2.name);
+    if (result != 0)
+      return result;
+    result = Integer.compare(m1.parameterTypes.length, m2.parameterTypes.length);
+    for (int i = 0; result == 0 && i < m1.parameterTypes.length; ++i)
+      result = m1.parameterTypes[i].fullyQualifiedName.compareTo(m2.parameterTypes[i].fullyQualifiedName);
+    return result;
+  };
+}
@@ -0,0 +1,95 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+/**
+ * An attribute of a {@link DiagramType}, with its collection domain if any.
+ */
+public class DiagramAttribute {
+  static final DiagramAttribute[] NO_ATTRIBUTES = new DiagramAttribute[0];
+
+  public static final int STATIC = 1;
+  public static final int TIMESTAMP = 1 << 1;
+  public static final int ENTITY_ID = 1 << 2;
+  public static final int COLLECTION = 1 << 3;
+
+  /**
+   * Maximum of an unbounded collection domain.
+   */
+  public static final int INFINITE = -1;
+
+  final String name;
+  final DiagramType type;
+  int flags;
+  int min;
+  int max;
+  DiagramType elementType;
+
+  DiagramAttribute(String name, DiagramType type) {
+    this.name = name;
+    this.type = type;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public DiagramType getType() {
+    return type;
+  }
+
+  public int getFlags() {
+    return flags;
+  }
+
+  public boolean is(int flag) {
+    return (flags & flag) != 0;
+  }
+
+  public boolean isStatic() {
+    return is(STATIC);
+  }
+
+  /**
+   * Tells whether the attribute has a collection domain. The bounds and the
+   * element type are then given by {@link #getMin()}, {@link #getMax()} and
+   * {@link #getElementType()}.
+   */
+  public boolean isCollection() {
+    return is(COLLECTION);
+  }
+
+  public int getMin() {
+    return min;
+  }
+
+  public int getMax() {
+    return max;
+  }
+
+  /**
+   * Returns the element type of the collection domain, null if not specified.
+   */
+  public DiagramType getElementType() {
+    return elementType;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+/**
+ * A constructor, method or operator of a {@link DiagramType}.
+ */
+public class DiagramMethod {
+  static final DiagramMethod[] NO_METHODS = new DiagramMethod[0];
+  static final String[] NO_NAMES = new String[0];
+
+  public static final int STATIC = 1;
+  public static final int CONSTRUCTOR = 1 << 1;
+  public static final int OPERATOR = 1 << 2;
+  public static final int VARARGS = 1 << 3;
+
+  final String name;
+  final DiagramType returnType;
+  int flags;
+  String genericSignature;
+  DiagramType[] parameterTypes = DiagramType.NO_TYPES;
+  String[] parameterNames = NO_NAMES;
+
+  DiagramMethod(String name, DiagramType returnType) {
+    this.name = name;
+    this.returnType = returnType;
+  }
+
+  /**
+   * Returns the name of the method. The name of an operator is its symbol, or
+   * the name of the target type for a conversion operator.
+   */
+  public String getName() {
+    return name;
+  }
+
+  public DiagramType getReturnType() {
+    return returnType;
+  }
+
+  public int getFlags() {
+    return flags;
+  }
+
+  public boolean is(int flag) {
+    return (flags & flag) != 0;
+  }
+
+  public boolean isStatic() {
+    return is(STATIC);
+  }
+
+  public boolean isConstructor() {
+    return is(CONSTRUCTOR);
+  }
+
+  public boolean isOperator() {
+    return is(OPERATOR);
+  }
+
+  public boolean isVarArgs() {
+    return is(VARARGS);
+  }
+
+  /**
+   * Returns the type parameters of a generic method, such as &lt;T&gt;, or null.
+   */
+  public String getGenericSignature() {
+    return genericSignature;
+  }
+
+  public DiagramType[] getParameterTypes() {
+    return parameterTypes;
+  }
+
+  public String[] getParameterNames() {
+    return parameterNames;
+  }
+}
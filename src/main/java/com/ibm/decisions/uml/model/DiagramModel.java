@@ -0,0 +1,82 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+import java.util.*;
+
+/**
+ * Compact model of a BOM, holding only what is needed to write class diagrams.
+ * It is built either from an ODM object model, by {@link ObjectModelConverter},
+ * or directly from the BOM text, by {@link BomParser}.
+ * <p>
+ * Types are numbered in their creation order. Names are precomputed, and the
+ * classes and members are already sorted in the order in which they are written.
+ */
+public class DiagramModel {
+  final List<DiagramType> types = new ArrayList<>();
+  final Map<String, DiagramType> typesByName = new HashMap<>();
+  final DiagramPackage defaultPackage = new DiagramPackage(null);
+  DiagramType objectClass;
+
+  /**
+   * Returns the default package, root of the package tree.
+   */
+  public DiagramPackage getDefaultPackage() {
+    return defaultPackage;
+  }
+
+  /**
+   * Returns all the types of the model, indexed by their id.
+   */
+  public List<DiagramType> getTypes() {
+    return Collections.unmodifiableList(types);
+  }
+
+  public DiagramType getType(int id) {
+    return types.get(id);
+  }
+
+  public DiagramType getType(String fullyQualifiedName) {
+    return typesByName.get(fullyQualifiedName);
+  }
+
+  /**
+   * Returns the java.lang.Object class, used as the target of the collections
+   * without element type.
+   */
+  public DiagramType getObjectClass() {
+    return objectClass;
+  }
+
+  /**
+   * Creates a type, or returns the existing type with the same name.
+   */
+  DiagramType addType(String fullyQualifiedName) {
+    DiagramType type = typesByName.get(fullyQualifiedName);
+    if (type == null) {
+      type = new DiagramType(types.size(), fullyQualifiedName);
+      types.add(type);
+      typesByName.put(fullyQualifiedName, type);
+    }
+    return type;
+  }
+}
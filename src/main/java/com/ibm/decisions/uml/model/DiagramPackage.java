@@ -0,0 +1,52 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+/**
+ * A package of a {@link DiagramModel}, with its classes and nested packages sorted.
+ */
+public class DiagramPackage {
+  static final DiagramPackage[] NO_PACKAGES = new DiagramPackage[0];
+
+  final String name;
+  DiagramType[] classes = DiagramType.NO_TYPES;
+  DiagramPackage[] packages = NO_PACKAGES;
+
+  DiagramPackage(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the display name of the package, null for the default package.
+   */
+  public String getName() {
+    return name;
+  }
+
+  public DiagramType[] getClasses() {
+    return classes;
+  }
+
+  public DiagramPackage[] getNestedPackages() {
+    return packages;
+  }
+}
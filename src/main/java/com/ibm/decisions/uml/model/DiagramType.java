@@ -0,0 +1,141 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+/**
+ * A type of a {@link DiagramModel}: a class, a primitive type or an array type.
+ * The members and superclasses are only filled for the classes that can be part
+ * of the diagram: the classes of the packages and their superclasses.
+ */
+public class DiagramType {
+  static final DiagramType[] NO_TYPES = new DiagramType[0];
+
+  public static final int PRIMITIVE = 1;
+  public static final int STRING = 1 << 1;
+  public static final int ENUM = 1 << 2;
+  public static final int UTILITY = 1 << 3;
+  public static final int INTERFACE = 1 << 4;
+  public static final int MISSING_REFERENCE = 1 << 5;
+  public static final int OBJECT = 1 << 6;
+  public static final int ARRAY = 1 << 7;
+
+  final int id;
+  final String fullyQualifiedName;
+  String name;
+  String shortName;
+  int flags;
+  DiagramType componentType;
+  String namespace;
+  int order = -1;
+  DiagramType[] superclasses = NO_TYPES;
+  DiagramAttribute[] attributes = DiagramAttribute.NO_ATTRIBUTES;
+  DiagramMethod[] constructors = DiagramMethod.NO_METHODS;
+  DiagramMethod[] methods = DiagramMethod.NO_METHODS;
+
+  DiagramType(int id, String fullyQualifiedName) {
+    this.id = id;
+    this.fullyQualifiedName = fullyQualifiedName;
+    this.name = fullyQualifiedName;
+    this.shortName = fullyQualifiedName;
+  }
+
+  /**
+   * Returns the index of the type in its model.
+   */
+  public int getId() {
+    return id;
+  }
+
+  public String getFullyQualifiedName() {
+    return fullyQualifiedName;
+  }
+
+  /**
+   * Returns the name of the type in the diagram: the short name of the type
+   * in its model, or its fully qualified name if the short name is ambiguous.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the shortest name of the type, used in the member signatures.
+   */
+  public String getShortName() {
+    return shortName;
+  }
+
+  public int getFlags() {
+    return flags;
+  }
+
+  public boolean is(int flag) {
+    return (flags & flag) != 0;
+  }
+
+  public boolean isArray() {
+    return is(ARRAY);
+  }
+
+  public DiagramType getComponentType() {
+    return componentType;
+  }
+
+  /**
+   * Returns the display name of the enclosing package or class.
+   */
+  public String getNamespace() {
+    return namespace;
+  }
+
+  /**
+   * Returns the position of the class in the traversal of the packages, or -1
+   * if it does not belong to the classes of a package.
+   */
+  public int getOrder() {
+    return order;
+  }
+
+  public DiagramType[] getSuperclasses() {
+    return superclasses;
+  }
+
+  /**
+   * Returns the attributes, in their declaration order.
+   */
+  public DiagramAttribute[] getAttributes() {
+    return attributes;
+  }
+
+  public DiagramMethod[] getConstructors() {
+    return constructors;
+  }
+
+  public DiagramMethod[] getMethods() {
+    return methods;
+  }
+
+  @Override
+  public String toString() {
+    return fullyQualifiedName;
+  }
+}
@@ -0,0 +1,328 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+import java.util.*;
+
+/**
+ * Merges several models into one, to write a single diagram of several BOMs.
+ * <p>
+ * The models are added one at a time and can be dropped once added: the merged
+ * model only keeps one type per fully qualified name, and the names of the types
+ * and members are interned in a table shared by all the models, so the memory
+ * grows with the distinct classes rather than with the number of BOMs.
+ * <p>
+ * A class is defined by the first model that has it in its packages. When another
+ * model defines the same class differently, the first definition is kept and the
+ * difference is recorded as a {@link Conflict}.
+ */
+public class ModelMerger {
+  final DiagramModel result = new DiagramModel();
+  final Map<String, String> names = new HashMap<>();
+  /**
+   * The ids of the merged types defined by the packages of a model.
+   */
+  final BitSet defined = new BitSet();
+  /**
+   * The source of the definition of each merged type, indexed by its id.
+   */
+  final List<String> sources = new ArrayList<>();
+  final MergedPackage defaultPackage = new MergedPackage(null);
+  final List<Conflict> conflicts = new ArrayList<>();
+  int modelCount;
+
+  /**
+   * A class defined differently by two models.
+   */
+  public static class Conflict {
+    final String fullyQualifiedName;
+    final String source;
+    final String otherSource;
+
+    Conflict(String fullyQualifiedName, String source, String otherSource) {
+      this.fullyQualifiedName = fullyQualifiedName;
+      this.source = source;
+      this.otherSource = otherSource;
+    }
+
+    public String getFullyQualifiedName() {
+      return fullyQualifiedName;
+    }
+
+    /**
+     * Returns the source of the definition kept in the merged model.
+     */
+    public String getSource() {
+      return source;
+    }
+
+    /**
+     * Returns the source of the ignored definition.
+     */
+    public String getOtherSource() {
+      return otherSource;
+    }
+
+    @Override
+    public String toString() {
+      return fullyQualifiedName + " is defined differently in " + source + " and " + otherSource;
+    }
+  }
+
+  static class MergedPackage {
+    final String name;
+    final List<DiagramType> classes = new ArrayList<>();
+    final Map<String, MergedPackage> packages = new TreeMap<>();
+
+    MergedPackage(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * Adds the types of a model, its source naming it in the conflicts.
+   */
+  public void add(String source, DiagramModel model) {
+    source = intern(source);
+    ++modelCount;
+    int previousCount = result.types.size();
+    DiagramType[] merged = new DiagramType[model.types.size()];
+    for (DiagramType type : model.types)
+      merged[type.id] = result.addType(intern(type.fullyQualifiedName));
+    for (DiagramType type : model.types) {
+      DiagramType mergedType = merged[type.id];
+      // a referenced type is replaced by a later model that does not miss it
+      if (mergedType.id >= previousCount
+          || !defined.get(mergedType.id) && mergedType.is(DiagramType.MISSING_REFERENCE) && !type.is(DiagramType.MISSING_REFERENCE))
+        copy(type, mergedType, merged);
+    }
+    if (result.objectClass == null && model.objectClass != null)
+      result.objectClass = merged[model.objectClass.id];
+    add(source, model.defaultPackage, defaultPackage, merged);
+  }
+
+  void add(String source, DiagramPackage pkg, MergedPackage target, DiagramType[] merged) {
+    for (DiagramType clazz : pkg.classes) {
+      DiagramType mergedClass = merged[clazz.id];
+      if (!defined.get(mergedClass.id)) {
+        copy(clazz, mergedClass, merged);
+        defined.set(mergedClass.id);
+        while (sources.size() <= mergedClass.id)
+          sources.add(null);
+        sources.set(mergedClass.id, source);
+        target.classes.add(mergedClass);
+      } else if (!isSameDefinition(clazz, mergedClass, merged)) {
+        conflicts.add(new Conflict(mergedClass.fullyQualifiedName, sources.get(mergedClass.id), source));
+      }
+    }
+    for (DiagramPackage nested : pkg.packages)
+      add(source, nested, target.packages.computeIfAbsent(intern(nested.name), MergedPackage::new), merged);
+  }
+
+  void copy(DiagramType type, DiagramType target, DiagramType[] merged) {
+    target.name = intern(type.name);
+    target.shortName = intern(type.shortName);
+    target.flags = type.flags;
+    target.namespace = intern(type.namespace);
+    target.componentType = type.componentType == null ? null : merged[type.componentType.id];
+    target.superclasses = getTypes(type.superclasses, merged);
+    target.attributes = copyAttributes(type.attributes, merged);
+    target.constructors = copyMethods(type.constructors, merged);
+    target.methods = copyMethods(type.methods, merged);
+  }
+
+  DiagramAttribute[] copyAttributes(DiagramAttribute[] attributes, DiagramType[] merged) {
+    if (attributes.length == 0)
+      return DiagramAttribute.NO_ATTRIBUTES;
+    DiagramAttribute[] result = new DiagramAttribute[attributes.length];
+    for (int i = 0; i < result.length; ++i) {
+      DiagramAttribute attribute = attributes[i];
+      DiagramAttribute copy = new DiagramAttribute(intern(attribute.name), getType(attribute.type, merged));
+      copy.flags = attribute.flags;
+      copy.min = attribute.min;
+      copy.max = attribute.max;
+      copy.elementType = getType(attribute.elementType, merged);
+      result[i] = copy;
+    }
+    return result;
+  }
+
+  DiagramMethod[] copyMethods(DiagramMethod[] methods, DiagramType[] merged) {
+    if (methods.length == 0)
+      return DiagramMethod.NO_METHODS;
+    DiagramMethod[] result = new DiagramMethod[methods.length];
+    for (int i = 0; i < result.length; ++i) {
+      DiagramMethod method = methods[i];
+      DiagramMethod copy = new DiagramMethod(intern(method.name), getType(method.returnType, merged));
+      copy.flags = method.flags;
+      copy.genericSignature = intern(method.genericSignature);
+      copy.parameterTypes = getTypes(method.parameterTypes, merged);
+      if (method.parameterNames.length > 0) {
+        copy.parameterNames = new String[method.parameterNames.length];
+        for (int p = 0; p < copy.parameterNames.length; ++p)
+          copy.parameterNames[p] = intern(method.parameterNames[p]);
+      }
+      result[i] = copy;
+    }
+    return result;
+  }
+
+  static DiagramType getType(DiagramType type, DiagramType[] merged) {
+    return type == null ? null : merged[type.id];
+  }
+
+  static DiagramType[] getTypes(DiagramType[] types, DiagramType[] merged) {
+    if (types.length == 0)
+      return DiagramType.NO_TYPES;
+    DiagramType[] result = new DiagramType[types.length];
+    for (int i = 0; i < result.length; ++i)
+      result[i] = merged[types[i].id];
+    return result;
+  }
+
+  /**
+   * Compares a class of a model to its merged definition. The types of the two
+   * definitions are the same when their merged types are.
+   */
+  static boolean isSameDefinition(DiagramType clazz, DiagramType mergedClass, DiagramType[] merged) {
+    if (clazz.flags != mergedClass.flags
+        || !Arrays.equals(getTypes(clazz.superclasses, merged), mergedClass.superclasses)
+        || clazz.attributes.length != mergedClass.attributes.length)
+      return false;
+    for (int i = 0; i < clazz.attributes.length; ++i) {
+      DiagramAttribute attribute = clazz.attributes[i];
+      DiagramAttribute mergedAttribute = mergedClass.attributes[i];
+      if (!attribute.name.equals(mergedAttribute.name)
+          || attribute.flags != mergedAttribute.flags
+          || getType(attribute.type, merged) != mergedAttribute.type
+          || attribute.min != mergedAttribute.min
+          || attribute.max != mergedAttribute.max
+          || getType(attribute.elementType, merged) != mergedAttribute.elementType)
+        return false;
+    }
+    return isSameDefinition(clazz.constructors, mergedClass.constructors, merged)
+        && isSameDefinition(clazz.methods, mergedClass.methods, merged);
+  }
+
+  static boolean isSameDefinition(DiagramMethod[] methods, DiagramMethod[] mergedMethods, DiagramType[] merged) {
+    if (methods.length != mergedMethods.length)
+      return false;
+    for (int i = 0; i < methods.length; ++i) {
+      DiagramMethod method = methods[i];
+      DiagramMethod mergedMethod = mergedMethods[i];
+      if (!method.name.equals(mergedMethod.name)
+          || method.flags != mergedMethod.flags
+          || getType(method.returnType, merged) != mergedMethod.returnType
+          || !Objects.equals(method.genericSignature, mergedMethod.genericSignature)
+          || !Arrays.equals(getTypes(method.parameterTypes, merged), mergedMethod.parameterTypes)
+          || !Arrays.equals(method.parameterNames, mergedMethod.parameterNames))
+        return false;
+    }
+    return true;
+  }
+
+  String intern(String name) {
+    if (name == null)
+      return null;
+    String interned = names.get(name);
+    if (interned == null) {
+      names.put(name, name);
+      interned = name;
+    }
+    return interned;
+  }
+
+  /**
+   * Returns the merged model, with its packages, class orders and names computed
+   * from all the models added so far.
+   */
+  public DiagramModel getModel() {
+    for (DiagramType type : result.types)
+      type.order = -1;
+    build(defaultPackage, result.defaultPackage, 0);
+    buildNames();
+    return result;
+  }
+
+  int build(MergedPackage pkg, DiagramPackage target, int order) {
+    target.classes = BomParser.ModelBuilder.sortClasses(pkg.classes);
+    for (DiagramType type : target.classes)
+      type.order = order++;
+    target.packages = new DiagramPackage[pkg.packages.size()];
+    int index = 0;
+    for (MergedPackage nested : pkg.packages.values()) {
+      DiagramPackage targetPackage = new DiagramPackage(nested.name);
+      order = build(nested, targetPackage, order);
+      target.packages[index++] = targetPackage;
+    }
+    return order;
+  }
+
+  /**
+   * Keeps the name of each type in its model, unless another merged type has the
+   * same one: both are then named by their fully qualified name.
+   */
+  void buildNames() {
+    Map<String, Integer> counts = new HashMap<>();
+    for (DiagramType type : result.types) {
+      if (!type.isArray())
+        counts.merge(type.name, 1, Integer::sum);
+    }
+    for (DiagramType type : result.types) {
+      if (!type.isArray() && counts.get(type.name) > 1)
+        type.name = type.fullyQualifiedName;
+    }
+    for (DiagramType type : result.types) {
+      if (type.isArray()) {
+        DiagramType component = type;
+        StringBuilder dimensions = new StringBuilder();
+        while (component.isArray()) {
+          component = component.componentType;
+          dimensions.append("[]");
+        }
+        type.name = component.name + dimensions;
+      }
+    }
+  }
+
+  /**
+   * Returns the classes defined differently by two models, in the order in which
+   * they were found.
+   */
+  public List<Conflict> getConflicts() {
+    return Collections.unmodifiableList(conflicts);
+  }
+
+  /**
+   * Returns the number of models added.
+   */
+  public int getModelCount() {
+    return modelCount;
+  }
+
+  /**
+   * Returns the number of distinct classes defined by the models.
+   */
+  public int getClassCount() {
+    return defined.cardinality();
+  }
+}
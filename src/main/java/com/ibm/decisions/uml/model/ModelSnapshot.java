@@ -0,0 +1,301 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a {@link DiagramModel}, so that a BOM does not need to be parsed again.
+ * <p>
+ * The snapshot starts with a header holding a key, usually the hash of the BOM it was read from,
+ * followed by a table of the distinct strings of the model. The rest of the snapshot only holds
+ * integers: indexes in the string table, ids of types (their index in {@link DiagramModel#getTypes()}),
+ * flags and the counts of the flat member arrays. A missing index or id is written as -1.
+ * Reading memory-maps the file.
+ */
+public class ModelSnapshot {
+  static final int MAGIC = 0x424f4d53; // "BOMS"
+  static final int VERSION = 1;
+
+  /**
+   * Writes the snapshot of a model. The file is first written aside then moved, so that a
+   * concurrent reader never sees a partial snapshot.
+   */
+  public static void write(DiagramModel model, String key, Path file) throws IOException {
+    SnapshotWriter writer = new SnapshotWriter();
+    writer.writeModel(model);
+
+    Path parent = file.toAbsolutePath().getParent();
+    Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, key);
+        out.writeInt(writer.strings.size());
+        for (String string : writer.strings)
+          writeString(out, string);
+        writer.body.writeTo(out);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Reads a snapshot, or returns null when there is no snapshot of the given key in the file,
+   * including when the file is missing or is not a snapshot of this version.
+   */
+  public static DiagramModel read(Path file, String key) throws IOException {
+    if (!Files.isRegularFile(file))
+      return null;
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !key.equals(readString(buffer)))
+        return null;
+      return new SnapshotReader(buffer).readModel();
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+      // a truncated or damaged snapshot is only a cache miss
+      return null;
+    }
+  }
+
+  static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[readCount(buffer)];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the length of an array. Each element takes at least a byte, so that a length
+   * beyond the rest of the snapshot is damaged and is not allocated.
+   */
+  static int readCount(ByteBuffer buffer) {
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining())
+      throw new IllegalArgumentException("Invalid length " + count + " in snapshot");
+    return count;
+  }
+
+  static class SnapshotWriter {
+    final Map<String, Integer> stringIndexes = new HashMap<>();
+    final List<String> strings = new ArrayList<>();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(body);
+
+    void writeModel(DiagramModel model) throws IOException {
+      out.writeInt(model.types.size());
+      for (DiagramType type : model.types)
+        out.writeInt(string(type.fullyQualifiedName));
+      for (DiagramType type : model.types) {
+        out.writeInt(string(type.name));
+        out.writeInt(string(type.shortName));
+        out.writeInt(string(type.namespace));
+        out.writeInt(type.flags);
+        out.writeInt(id(type.componentType));
+        out.writeInt(type.order);
+        writeTypes(type.superclasses);
+        out.writeInt(type.attributes.length);
+        for (DiagramAttribute attribute : type.attributes) {
+          out.writeInt(string(attribute.name));
+          out.writeInt(id(attribute.type));
+          out.writeInt(attribute.flags);
+          out.writeInt(attribute.min);
+          out.writeInt(attribute.max);
+          out.writeInt(id(attribute.elementType));
+        }
+        writeMethods(type.constructors);
+        writeMethods(type.methods);
+      }
+      out.writeInt(id(model.objectClass));
+      writePackage(model.defaultPackage);
+      out.flush();
+    }
+
+    void writeMethods(DiagramMethod[] methods) throws IOException {
+      out.writeInt(methods.length);
+      for (DiagramMethod method : methods) {
+        out.writeInt(string(method.name));
+        out.writeInt(id(method.returnType));
+        out.writeInt(method.flags);
+        out.writeInt(string(method.genericSignature));
+        writeTypes(method.parameterTypes);
+        out.writeInt(method.parameterNames.length);
+        for (String name : method.parameterNames)
+          out.writeInt(string(name));
+      }
+    }
+
+    void writePackage(DiagramPackage aPackage) throws IOException {
+      out.writeInt(string(aPackage.name));
+      writeTypes(aPackage.classes);
+      out.writeInt(aPackage.packages.length);
+      for (DiagramPackage nested : aPackage.packages)
+        writePackage(nested);
+    }
+
+    void writeTypes(DiagramType[] types) throws IOException {
+      out.writeInt(types.length);
+      for (DiagramType type : types)
+        out.writeInt(id(type));
+    }
+
+    int id(DiagramType type) {
+      return type == null ? -1 : type.id;
+    }
+
+    int string(String string) {
+      if (string == null)
+        return -1;
+      Integer index = stringIndexes.get(string);
+      if (index == null) {
+        index = strings.size();
+        strings.add(string);
+        stringIndexes.put(string, index);
+      }
+      return index;
+    }
+  }
+
+  static class SnapshotReader {
+    final ByteBuffer buffer;
+    final String[] strings;
+    DiagramModel model;
+
+    SnapshotReader(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.strings = new String[readCount(buffer)];
+      for (int i = 0; i < strings.length; ++i)
+        strings[i] = readString(buffer);
+    }
+
+    DiagramModel readModel() {
+      model = new DiagramModel();
+      int count = readCount(buffer);
+      // the types are created first, as their members refer to the types that follow
+      for (int i = 0; i < count; ++i)
+        model.addType(strings[buffer.getInt()]);
+      if (model.types.size() != count)
+        throw new IllegalArgumentException("Duplicate types in snapshot");
+      for (DiagramType type : model.types) {
+        type.name = string();
+        type.shortName = string();
+        type.namespace = string();
+        type.flags = buffer.getInt();
+        type.componentType = type();
+        type.order = buffer.getInt();
+        type.superclasses = types();
+        int attributeCount = readCount(buffer);
+        if (attributeCount > 0) {
+          type.attributes = new DiagramAttribute[attributeCount];
+          for (int i = 0; i < attributeCount; ++i) {
+            DiagramAttribute attribute = new DiagramAttribute(string(), type());
+            attribute.flags = buffer.getInt();
+            attribute.min = buffer.getInt();
+            attribute.max = buffer.getInt();
+            attribute.elementType = type();
+            type.attributes[i] = attribute;
+          }
+        }
+        type.constructors = methods();
+        type.methods = methods();
+      }
+      model.objectClass = type();
+      string(); // the name of the default package
+      readPackage(model.defaultPackage);
+      return model;
+    }
+
+    DiagramMethod[] methods() {
+      int count = readCount(buffer);
+      if (count == 0)
+        return DiagramMethod.NO_METHODS;
+      DiagramMethod[] methods = new DiagramMethod[count];
+      for (int i = 0; i < count; ++i) {
+        DiagramMethod method = new DiagramMethod(string(), type());
+        method.flags = buffer.getInt();
+        method.genericSignature = string();
+        method.parameterTypes = types();
+        int nameCount = readCount(buffer);
+        if (nameCount > 0) {
+          method.parameterNames = new String[nameCount];
+          for (int j = 0; j < nameCount; ++j)
+            method.parameterNames[j] = string();
+        }
+        methods[i] = method;
+      }
+      return methods;
+    }
+
+    void readPackage(DiagramPackage aPackage) {
+      aPackage.classes = types();
+      int count = readCount(buffer);
+      if (count > 0) {
+        aPackage.packages = new DiagramPackage[count];
+        for (int i = 0; i < count; ++i) {
+          DiagramPackage nested = new DiagramPackage(string());
+          readPackage(nested);
+          aPackage.packages[i] = nested;
+        }
+      }
+    }
+
+    DiagramType[] types() {
+      int count = readCount(buffer);
+      if (count == 0)
+        return DiagramType.NO_TYPES;
+      DiagramType[] types = new DiagramType[count];
+      for (int i = 0; i < count; ++i)
+        types[i] = type();
+      return types;
+    }
+
+    DiagramType type() {
+      int id = buffer.getInt();
+      return id < 0 ? null : model.types.get(id);
+    }
+
+    String string() {
+      int index = buffer.getInt();
+      return index < 0 ? null : strings[index];
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+import ilog.rules.bom.*;
+import ilog.rules.bom.util.IlrModelUtilities;
+
+import java.util.*;
+
+import static ilog.rules.bom.util.IlrClassUtilities.*;
+
+/**
+ * Converts an ODM object model into a {@link DiagramModel}. The names, the enum
+ * and utility class flags and the sort orders all come from the ODM APIs, so
+ * that the diagram is the one of the object model.
+ * <p>
+ * The converted model holds a copy of all the members of the classes, next to the
+ * ODM model. {@link #convertTypes(IlrObjectModel)} only converts the types, their
+ * superclasses and the packages, and leaves the members to be converted class by
+ * class, when they are needed.
+ */
+public class ObjectModelConverter {
+  final IlrObjectModel model;
+  final DiagramModel result = new DiagramModel();
+  final Map<IlrType, DiagramType> types = new HashMap<>();
+  // the ODM type of each converted type, by type id
+  final List<IlrType> ilrTypes = new ArrayList<>();
+  // when false, the members of the classes are not converted, only their types
+  boolean convertingMembers = true;
+  final Set<IlrClass> convertedClasses = new HashSet<>();
+  final Deque<IlrClass> pendingClasses = new ArrayDeque<>();
+  int order;
+
+  ObjectModelConverter(IlrObjectModel model) {
+    this.model = model;
+  }
+
+  public static DiagramModel convert(IlrObjectModel model) {
+    ObjectModelConverter converter = new ObjectModelConverter(model);
+    converter.convert();
+    return converter.result;
+  }
+
+  /**
+   * Converts the types of an object model, with the same ids as {@link #convert(IlrObjectModel)},
+   * their superclasses and the packages. The classes have no members until
+   * {@link #convertMembers(DiagramType)} is called.
+   */
+  public static ObjectModelConverter convertTypes(IlrObjectModel model) {
+    ObjectModelConverter converter = new ObjectModelConverter(model);
+    converter.convertingMembers = false;
+    converter.convert();
+    return converter;
+  }
+
+  private void convert() {
+    model.getStringClass(); // just to avoid missing reference for string
+    result.objectClass = getType(model.getObjectClass());
+    convert(model.getDefaultPackage(), result.defaultPackage);
+    convertPendingClasses();
+  }
+
+  public DiagramModel getModel() {
+    return result;
+  }
+
+  /**
+   * Converts the members of a type of a model returned by {@link #convertTypes(IlrObjectModel)}.
+   */
+  public void convertMembers(DiagramType type) {
+    IlrType ilrType = ilrTypes.get(type.id);
+    if (ilrType instanceof IlrClass) {
+      IlrClass clazz = (IlrClass) ilrType;
+      type.attributes = convertAttributes(clazz.getAttributes());
+      type.constructors = convertMethods(sort(clazz.getConstructors(), IlrModelUtilities.MemberWithParametersComparator));
+      type.methods = convertMethods(sort(clazz.getMethods(), IlrModelUtilities.MemberWithParametersComparator));
+    }
+  }
+
+  /**
+   * Drops the members converted by {@link #convertMembers(DiagramType)}.
+   */
+  public void releaseMembers(DiagramType type) {
+    type.attributes = DiagramAttribute.NO_ATTRIBUTES;
+    type.constructors = DiagramMethod.NO_METHODS;
+    type.methods = DiagramMethod.NO_METHODS;
+  }
+
+  void convert(IlrPackage pkg, DiagramPackage target) {
+    List classes = sort(pkg.getClasses(), IlrModelUtilities.ModelElementComparator);
+    target.classes = new DiagramType[classes.size()];
+    for (int i = 0; i < target.classes.length; ++i) {
+      IlrClass clazz = (IlrClass) classes.get(i);
+      DiagramType type = getType(clazz);
+      type.order = order++;
+      target.classes[i] = type;
+      addPendingClass(clazz);
+    }
+    List packages = sort(pkg.getNestedPackages(), IlrModelUtilities.ModelElementComparator);
+    target.packages = new DiagramPackage[packages.size()];
+    for (int i = 0; i < target.packages.length; ++i) {
+      IlrPackage nested = (IlrPackage) packages.get(i);
+      target.packages[i] = new DiagramPackage(nested.getDisplayName());
+      convert(nested, target.packages[i]);
+    }
+  }
+
+  private void addPendingClass(IlrClass clazz) {
+    if (convertedClasses.add(clazz))
+      pendingClasses.add(clazz);
+  }
+
+  /**
+   * Converts the members of the classes of the packages, and of all their
+   * superclasses, using a work list instead of recursion.
+   */
+  void convertPendingClasses() {
+    while (!pendingClasses.isEmpty()) {
+      IlrClass clazz = pendingClasses.poll();
+      DiagramType type = getType(clazz);
+      List supers = clazz.getSuperclasses();
+      if (supers != null && !supers.isEmpty()) {
+        type.superclasses = new DiagramType[supers.size()];
+        for (int i = 0; i < type.superclasses.length; ++i) {
+          IlrClass superClass = (IlrClass) supers.get(i);
+          type.superclasses[i] = getType(superClass);
+          addPendingClass(superClass);
+        }
+      }
+      if (convertingMembers) {
+        convertMembers(type);
+      } else {
+        // the types of the members get the same ids as when the members are converted
+        convertAttributeTypes(clazz.getAttributes());
+        convertMethodTypes(sort(clazz.getConstructors(), IlrModelUtilities.MemberWithParametersComparator));
+        convertMethodTypes(sort(clazz.getMethods(), IlrModelUtilities.MemberWithParametersComparator));
+      }
+    }
+  }
+
+  void convertAttributeTypes(List attributes) {
+    if (attributes == null)
+      return;
+    for (Object element : attributes) {
+      IlrAttribute attribute = (IlrAttribute) element;
+      getType(attribute.getAttributeType());
+      IlrDomain domain = attribute.getLocalDomain();
+      if (domain instanceof IlrCollectionDomain && ((IlrCollectionDomain) domain).getElementType() != null)
+        getType(((IlrCollectionDomain) domain).getElementType());
+    }
+  }
+
+  void convertMethodTypes(List methods) {
+    for (Object element : methods) {
+      IlrMethod method = (IlrMethod) element;
+      if (method.getReturnType() != null)
+        getType(method.getReturnType());
+      List parameters = method.getParameters();
+      if (parameters != null) {
+        for (Object parameter : parameters)
+          getType(((IlrParameter) parameter).getParameterType());
+      }
+    }
+  }
+
+  DiagramAttribute[] convertAttributes(List attributes) {
+    if (attributes == null || attributes.isEmpty())
+      return DiagramAttribute.NO_ATTRIBUTES;
+    DiagramAttribute[] result = new DiagramAttribute[attributes.size()];
+    for (int i = 0; i < result.length; ++i) {
+      IlrAttribute attribute = (IlrAttribute) attributes.get(i);
+      DiagramAttribute converted = new DiagramAttribute(attribute.getName(), getType(attribute.getAttributeType()));
+      if (attribute.isStatic())
+        converted.flags |= DiagramAttribute.STATIC;
+      if (attribute.getPropertyValue("ia.timestamp") != null)
+        converted.flags |= DiagramAttribute.TIMESTAMP;
+      if (attribute.getPropertyValue("ia.entity.id") != null)
+        converted.flags |= DiagramAttribute.ENTITY_ID;
+      IlrDomain domain = attribute.getLocalDomain();
+      if (domain instanceof IlrCollectionDomain) {
+        IlrCollectionDomain collectionDomain = (IlrCollectionDomain) domain;
+        converted.flags |= DiagramAttribute.COLLECTION;
+        converted.min = collectionDomain.getMin();
+        converted.max = collectionDomain.getMax() == IlrCollectionDomain.INFINITE
+            ? DiagramAttribute.INFINITE : collectionDomain.getMax();
+        if (collectionDomain.getElementType() != null)
+          converted.elementType = getType(collectionDomain.getElementType());
+      }
+      result[i] = converted;
+    }
+    return result;
+  }
+
+  DiagramMethod[] convertMethods(List methods) {
+    if (methods.isEmpty())
+      return DiagramMethod.NO_METHODS;
+    DiagramMethod[] result = new DiagramMethod[methods.size()];
+    for (int i = 0; i < result.length; ++i) {
+      IlrMethod method = (IlrMethod) methods.get(i);
+      DiagramMethod converted = new DiagramMethod(method.getName(),
+          method.getReturnType() == null ? null : getType(method.getReturnType()));
+      if (method.isStatic())
+        converted.flags |= DiagramMethod.STATIC;
+      if (method.isConstructor())
+        converted.flags |= DiagramMethod.CONSTRUCTOR;
+      if (method.isOperator())
+        converted.flags |= DiagramMethod.OPERATOR;
+      if (method.isVarArgs())
+        converted.flags |= DiagramMethod.VARARGS;
+      if (method.getGenericInfo() != null) {
+        GenericSignatureWriter gwriter = new GenericSignatureWriter(method);
+        gwriter.write(method.getGenericInfo().getTypeParameters());
+        converted.genericSignature = gwriter.toString();
+      }
+      List parameters = method.getParameters();
+      if (parameters != null && !parameters.isEmpty()) {
+        converted.parameterTypes = new DiagramType[parameters.size()];
+        converted.parameterNames = new String[parameters.size()];
+        for (int p = 0; p < parameters.size(); ++p) {
+          IlrParameter parameter = (IlrParameter) parameters.get(p);
+          converted.parameterTypes[p] = getType(parameter.getParameterType());
+          converted.parameterNames[p] = parameter.getName();
+        }
+      }
+      result[i] = converted;
+    }
+    return result;
+  }
+
+  DiagramType getType(IlrType type) {
+    DiagramType converted = types.get(type);
+    if (converted == null) {
+      String FQN = type.getFullyQualifiedName();
+      converted = result.addType(FQN);
+      types.put(type, converted);
+      if (converted.id == ilrTypes.size())
+        ilrTypes.add(type);
+      String shortName = model.getShortname(FQN);
+      converted.name = shortName;
+      converted.shortName = shortName != FQN ? shortName : type.getShortDisplayName();
+      if (type.isPrimitiveType())
+        converted.flags |= DiagramType.PRIMITIVE;
+      if (type == model.getStringClass())
+        converted.flags |= DiagramType.STRING;
+      if (isEnumClass(type))
+        converted.flags |= DiagramType.ENUM;
+      if (type.isArray()) {
+        converted.flags |= DiagramType.ARRAY;
+        converted.componentType = getType(type.getComponentType());
+      }
+      if (type instanceof IlrClass) {
+        IlrClass clazz = (IlrClass) type;
+        if (clazz.isMissingReference())
+          converted.flags |= DiagramType.MISSING_REFERENCE;
+        if (clazz.isInterface())
+          converted.flags |= DiagramType.INTERFACE;
+        if (model.isObjectClass(clazz))
+          converted.flags |= DiagramType.OBJECT;
+        if (isUtilityClass(clazz))
+          converted.flags |= DiagramType.UTILITY;
+        IlrNamespace namespace = clazz.getEnclosingNamespace();
+        converted.namespace = namespace == null ? null : namespace.getDisplayName();
+      }
+    }
+    return converted;
+  }
+
+  static List sort(List list, Comparator comparator) {
+    if (list != null) {
+      ArrayList newList = new ArrayList(list);
+      Collections.sort(newList, comparator);
+      return newList;
+    }
+    return Collections.emptyList();
+  }
+}
@@ -0,0 +1,57 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+import ilog.rules.bom.IlrObjectModel;
+import ilog.rules.bom.dynamic.IlrDynamicObjectModel;
+import ilog.rules.bom.mutable.IlrMutableObjectModel;
+import ilog.rules.bom.serializer.IlrJavaSerializer;
+import ilog.rules.bom.serializer.IlrSyntaxError;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a BOM with the ODM serializer, then converts it.
+ */
+public class OdmModelReader implements ModelReader {
+
+  @Override
+  public DiagramModel read(Reader reader) throws IOException, BomSyntaxException {
+    try {
+      return ObjectModelConverter.convert(readObjectModel(reader));
+    } catch (IlrSyntaxError e) {
+      throw new BomSyntaxException(e.getErrorMessages());
+    }
+  }
+
+  /**
+   * Reads a BOM in a new object model. Each call uses its own model and serializer,
+   * so that it can be called concurrently.
+   */
+  public static IlrMutableObjectModel readObjectModel(Reader reader) throws IOException, IlrSyntaxError {
+    IlrDynamicObjectModel bom = new IlrDynamicObjectModel(IlrObjectModel.Kind.BUSINESS);
+    IlrJavaSerializer javaSerializer = new IlrJavaSerializer();
+    javaSerializer.readObjectModel(bom, reader);
+    return bom;
+  }
+}
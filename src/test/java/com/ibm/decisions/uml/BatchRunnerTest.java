@@ -0,0 +1,149 @@
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramTest;
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Batch mode test: every BOM of a directory gets its own diagram, and a bad BOM
+ * is reported without stopping the others.
+ */
+public class BatchRunnerTest {
+  static final String folder = "com/ibm/decisions/uml/classdiagram/";
+
+  @Test
+  public void testDirectory() throws Exception {
+    Path dir = Files.createTempDirectory("batch");
+    copyResource("loanvalidation.bom", dir.resolve("loanvalidation.bom"));
+    copyResource("operator.bom", dir.resolve("nested/operator.bom"));
+    Files.write(dir.resolve("bad.bom"), "public class {".getBytes(StandardCharsets.UTF_8));
+    Path out = dir.resolve("out");
+
+    BatchRunner runner = BatchRunner.create(dir.toString(), out.toString(), 2);
+    List<BatchRunner.Result> results = runner.run();
+    assertEquals(3, results.size());
+
+    int failed = 0;
+    for (BatchRunner.Result result : results) {
+      if (!result.isSuccess()) {
+        assertTrue(result.getInput().endsWith("bad.bom"));
+        failed++;
+      }
+    }
+    assertEquals(1, failed);
+    assertEquals(ClassDiagramTest.getClassDiagramFromBOM(folder + "loanvalidation.bom"),
+        new String(Files.readAllBytes(out.resolve("loanvalidation.puml")), StandardCharsets.UTF_8));
+    assertEquals(ClassDiagramTest.getClassDiagramFromBOM(folder + "operator.bom"),
+        new String(Files.readAllBytes(out.resolve("nested/operator.puml")), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testGlob() throws Exception {
+    Path dir = Files.createTempDirectory("batch");
+    copyResource("loanvalidation.bom", dir.resolve("a/loanvalidation.bom"));
+    copyResource("wrappers.bom", dir.resolve("b/wrappers.bom"));
+
+    BatchRunner runner = BatchRunner.create(dir.toString() + "/a/*.bom", null, 1);
+    assertEquals(1, runner.getInputs().size());
+    assertEquals(dir.resolve("a/loanvalidation.puml"), runner.getOutput(runner.getInputs().get(0)));
+
+    // the base of the glob is normalized as the paths it is matched against
+    for (String glob : new String[]{"/./a/*.bom", "/b/../a/*.bom"}) {
+      runner = BatchRunner.create(dir.toString() + glob, null, 1);
+      assertEquals(glob, 1, runner.getInputs().size());
+      assertTrue(runner.accepts(runner.getInputs().get(0)));
+    }
+  }
+
+  @Test
+  public void testError() throws Exception {
+    Path dir = Files.createTempDirectory("batch");
+    copyResource("loanvalidation.bom", dir.resolve("a.bom"));
+    copyResource("operator.bom", dir.resolve("b.bom"));
+    copyResource("wrappers.bom", dir.resolve("c.bom"));
+
+    BatchRunner runner = BatchRunner.create(dir.toString(), dir.resolve("out").toString(), 2);
+    runner.setModelReader(reader -> {
+      DiagramModel model = new BomParser().read(reader);
+      if (model.getType("loan.Borrower") != null)
+        throw new StackOverflowError();
+      return model;
+    });
+    List<BatchRunner.Result> results = runner.run();
+    // the Error only fails its BOM
+    assertEquals(3, results.size());
+    assertFalse(results.get(0).isSuccess());
+    assertEquals("java.lang.StackOverflowError", results.get(0).getErrors()[0]);
+    assertTrue(results.get(1).isSuccess());
+    assertTrue(results.get(2).isSuccess());
+  }
+
+  @Test
+  public void testArchive() throws Exception {
+    Path dir = Files.createTempDirectory("batch");
+    Path archive = dir.resolve("project.zip");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+      addResource(zip, "loanvalidation.bom", "loan/bom/loanvalidation.bom");
+      addResource(zip, "operator.bom", "loan/bom/nested/operator.bom");
+      zip.putNextEntry(new ZipEntry("loan/.project"));
+      zip.write("<projectDescription/>".getBytes(StandardCharsets.UTF_8));
+      zip.closeEntry();
+    }
+
+    List<BatchRunner.Result> results;
+    try (BatchRunner runner = BatchRunner.create(archive.toString(), null, 2)) {
+      assertTrue(runner.isArchive());
+      assertEquals(2, runner.getInputs().size());
+      runner.setModelReader(new BomParser());
+      results = runner.run();
+    }
+    for (BatchRunner.Result result : results)
+      assertTrue(result.isSuccess());
+    Path out = dir.resolve("project/loan/bom");
+    assertEquals(writeNative("loanvalidation.bom"),
+        new String(Files.readAllBytes(out.resolve("loanvalidation.puml")), StandardCharsets.UTF_8));
+    assertEquals(writeNative("operator.bom"),
+        new String(Files.readAllBytes(out.resolve("nested/operator.puml")), StandardCharsets.UTF_8));
+  }
+
+  static void addResource(ZipOutputStream zip, String name, String entry) throws IOException {
+    zip.putNextEntry(new ZipEntry(entry));
+    try (InputStream in = BatchRunnerTest.class.getClassLoader().getResourceAsStream(folder + name)) {
+      byte[] buffer = new byte[8192];
+      for (int n; (n = in.read(buffer)) > 0; )
+        zip.write(buffer, 0, n);
+    }
+    zip.closeEntry();
+  }
+
+  static String writeNative(String name) throws Exception {
+    StringWriter text = new StringWriter();
+    try (InputStream in = BatchRunnerTest.class.getClassLoader().getResourceAsStream(folder + name)) {
+      new ClassDiagramWriter(new PrintWriter(text)).writeModel(new BomParser().read(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
+    return text.toString();
+  }
+
+  static void copyResource(String name, Path target) throws IOException {
+    Files.createDirectories(target.getParent());
+    try (InputStream in = BatchRunnerTest.class.getClassLoader().getResourceAsStream(folder + name)) {
+      Files.copy(in, target);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.model.BomParserTest;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renderer test: the diagram is rendered as an SVG image without a PlantUML process.
+ */
+public class DiagramRendererTest {
+
+  @Test
+  public void testSvg() throws Exception {
+    DiagramRenderer renderer = new DiagramRenderer("svg", 2);
+    assertEquals(".svg", renderer.getExtension());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    renderer.render(BomParserTest.read("loanvalidation.bom"), false, out);
+    assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).contains("<svg"));
+  }
+
+  @Test
+  public void testBatchOutput() throws Exception {
+    Path dir = Files.createTempDirectory("render");
+    BatchRunner runner = new BatchRunner(dir, Collections.<Path>emptyList(), null, 1);
+    runner.setRenderer(new DiagramRenderer("png"));
+    assertEquals(dir.resolve("loan.png"), runner.getOutput(dir.resolve("loan.bom")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownFormat() {
+    new DiagramRenderer("gif");
+  }
+}
@@ -0,0 +1,152 @@
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramTest;
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Server mode test, on the line framed protocol and on HTTP.
+ */
+public class DiagramServerTest {
+  static final String loanValidation = "com/ibm/decisions/uml/classdiagram/loanvalidation.bom";
+
+  @Test
+  public void testLineFramed() throws Exception {
+    String bom = read(loanValidation);
+    String input = bom + "\n" + DiagramServer.END + "\npublic class {\n" + DiagramServer.END + "\n";
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DiagramServer server = new DiagramServer(2);
+    server.serve(new BufferedReader(new StringReader(input)), new PrintStream(output, true, "UTF-8"));
+
+    String responses = output.toString("UTF-8");
+    String expected = ClassDiagramTest.getClassDiagramFromBOM(loanValidation);
+    assertTrue(responses.contains(DiagramServer.DIAGRAM + "1\n" + expected));
+    assertTrue(responses.contains(DiagramServer.ERROR + "2\n"));
+  }
+
+  @Test
+  public void testHttp() throws Exception {
+    DiagramServer server = new DiagramServer(2);
+    HttpServer httpServer = server.startHttp(0);
+    try {
+      URL url = new URL("http://localhost:" + httpServer.getAddress().getPort() + DiagramServer.CONTEXT);
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(read(loanValidation).getBytes(StandardCharsets.UTF_8));
+      }
+      assertEquals(200, connection.getResponseCode());
+      try (InputStream in = connection.getInputStream()) {
+        String diagram = new Scanner(in, "UTF-8").useDelimiter("\\A").next();
+        assertEquals(ClassDiagramTest.getClassDiagramFromBOM(loanValidation), diagram);
+      }
+    } finally {
+      httpServer.stop(0);
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testLineFramedQueue() throws Exception {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 20; ++i)
+      input.append("public class C").append(i).append(" {}\n").append(DiagramServer.END).append('\n');
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DiagramServer server = new DiagramServer(1, 1);
+    server.setModelReader(new BomParser());
+    server.serve(new BufferedReader(new StringReader(input.toString())), new PrintStream(output, true, "UTF-8"));
+
+    // the requests that do not fit in the queue are rendered by the reading thread
+    String responses = output.toString("UTF-8");
+    for (int i = 0; i < 20; ++i)
+      assertTrue(responses.contains(DiagramServer.DIAGRAM + (i + 1) + "\n"));
+  }
+
+  @Test
+  public void testLineFramedError() throws Exception {
+    String input = "public class A {}\n" + DiagramServer.END + "\npublic class Error {}\n" + DiagramServer.END + "\n";
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DiagramServer server = new DiagramServer(2);
+    server.setModelReader(reader -> {
+      DiagramModel model = new BomParser().read(reader);
+      if (model.getType("Error") != null)
+        throw new StackOverflowError();
+      return model;
+    });
+    server.serve(new BufferedReader(new StringReader(input)), new PrintStream(output, true, "UTF-8"));
+
+    String responses = output.toString("UTF-8");
+    assertTrue(responses.contains(DiagramServer.DIAGRAM + "1\n"));
+    assertTrue(responses.contains(DiagramServer.ERROR + "2\n" + StackOverflowError.class.getName()));
+  }
+
+  @Test(timeout = 30000)
+  public void testHttpQueue() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    DiagramServer server = new DiagramServer(1, 1);
+    server.setModelReader(reader -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return new BomParser().read(reader);
+    });
+    HttpServer httpServer = server.startHttp(0);
+    ExecutorService clients = Executors.newFixedThreadPool(2);
+    try {
+      URL url = new URL("http://localhost:" + httpServer.getAddress().getPort() + DiagramServer.CONTEXT);
+      Future<Integer> rendered = clients.submit(() -> post(url, "public class A {}\n"));
+      started.await();
+      Future<Integer> queued = clients.submit(() -> post(url, "public class B {}\n"));
+      while (server.executor.getQueue().isEmpty())
+        Thread.sleep(10);
+      assertEquals(503, post(url, "public class C {}\n"));
+      release.countDown();
+      assertEquals(200, (int) rendered.get());
+      assertEquals(200, (int) queued.get());
+    } finally {
+      clients.shutdown();
+      httpServer.stop(0);
+      server.shutdown();
+    }
+  }
+
+  static int post(URL url, String bom) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(bom.getBytes(StandardCharsets.UTF_8));
+    }
+    return connection.getResponseCode();
+  }
+
+  static String read(String name) throws IOException {
+    try (Reader reader = ClassDiagramTest.getReader(name)) {
+      StringBuilder builder = new StringBuilder();
+      char[] buffer = new char[4096];
+      int count;
+      while ((count = reader.read(buffer)) > 0)
+        builder.append(buffer, 0, count);
+      return builder.toString();
+    }
+  }
+}
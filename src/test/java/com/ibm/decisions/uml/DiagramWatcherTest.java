@@ -0,0 +1,51 @@
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.model.BomParser;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Watch test: a burst of changes is reported once, with only the changed BOMs.
+ */
+public class DiagramWatcherTest {
+
+  @Test(timeout = 60000)
+  public void testWatch() throws Exception {
+    Path dir = Files.createTempDirectory("watch");
+    Path a = dir.resolve("a.bom");
+    Path b = dir.resolve("b.bom");
+    Files.write(a, "package p;\npublic class A {}\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(b, "package p;\npublic class B {}\n".getBytes(StandardCharsets.UTF_8));
+
+    BatchRunner runner = BatchRunner.create(dir.toString(), null, 1);
+    runner.setModelReader(new BomParser());
+    try (DiagramWatcher watcher = new DiagramWatcher(runner, 200)) {
+      assertEquals(2, runner.run().size());
+
+      // several saves of the same BOM, and a file that is not a BOM
+      for (int i = 0; i < 3; ++i)
+        Files.write(b, ("package p;\npublic class B" + i + " {}\n").getBytes(StandardCharsets.UTF_8));
+      Files.write(dir.resolve("notes.txt"), "notes".getBytes(StandardCharsets.UTF_8));
+      List<Path> changed = watcher.awaitChanges();
+      assertEquals(Collections.singletonList(b), changed);
+
+      List<BatchRunner.Result> results = runner.run(changed);
+      assertTrue(results.get(0).isSuccess());
+      String diagram = new String(Files.readAllBytes(runner.getOutput(b)), StandardCharsets.UTF_8);
+      assertTrue(diagram.contains("class B2"));
+
+      // a new BOM in a new directory
+      Path c = dir.resolve("sub").resolve("c.bom");
+      Files.createDirectories(c.getParent());
+      Files.write(c, "package p;\npublic class C {}\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals(Collections.singletonList(c), watcher.awaitChanges());
+    }
+  }
+}
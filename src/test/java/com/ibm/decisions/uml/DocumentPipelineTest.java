@@ -0,0 +1,90 @@
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.model.BomParser;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Multi-document test: the diagrams of a stream of BOMs come in the order of the BOMs,
+ * with their framing, through queues of a single document.
+ */
+public class DocumentPipelineTest {
+  static final String folder = "com/ibm/decisions/uml/classdiagram/";
+
+  @Test
+  public void testOrder() throws Exception {
+    String creditcard = read("dsi-creditcard.bom");
+    String loan = read("loanvalidation.bom");
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 10; ++i) {
+      input.append(i % 2 == 0 ? creditcard : loan).append('\n').append(DiagramServer.END).append('\n');
+    }
+    input.append("public class {\n").append(DiagramServer.END).append('\n');
+    // the last BOM has no @@end line
+    input.append(creditcard);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DocumentPipeline pipeline = new DocumentPipeline(1);
+    pipeline.setModelReader(new BomParser());
+    int failed = pipeline.run(new BufferedReader(new StringReader(input.toString())), new PrintStream(output, true, "UTF-8"));
+    assertEquals(1, failed);
+
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 10; ++i) {
+      expected.append(DiagramServer.DIAGRAM).append(i + 1).append('\n')
+          .append(write(i % 2 == 0 ? creditcard : loan)).append(DiagramServer.END).append('\n');
+    }
+    String responses = output.toString("UTF-8");
+    assertTrue(responses.startsWith(expected.toString()));
+    assertTrue(responses.contains(DiagramServer.ERROR + "11\n"));
+    assertTrue(responses.endsWith(DiagramServer.DIAGRAM + "12\n" + write(creditcard) + DiagramServer.END + '\n'));
+  }
+
+  @Test(timeout = 10000)
+  public void testStageError() throws Exception {
+    String creditcard = read("dsi-creditcard.bom");
+    StringBuilder input = new StringBuilder();
+    input.append(creditcard).append('\n').append(DiagramServer.END).append('\n');
+    input.append("public class Error {}\n").append(DiagramServer.END).append('\n');
+    for (int i = 0; i < 100; ++i)
+      input.append(creditcard).append('\n').append(DiagramServer.END).append('\n');
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    DocumentPipeline pipeline = new DocumentPipeline(1);
+    pipeline.setModelReader(reader -> {
+      String bom = new BufferedReader(reader).lines().collect(Collectors.joining("\n"));
+      if (bom.contains("class Error"))
+        throw new StackOverflowError();
+      return new BomParser().read(new StringReader(bom));
+    });
+    try {
+      pipeline.run(new BufferedReader(new StringReader(input.toString())), new PrintStream(output, true, "UTF-8"));
+      fail();
+    } catch (StackOverflowError e) {
+      // the error of the stage is rethrown once the pipeline is stopped
+    }
+    String responses = output.toString("UTF-8");
+    assertTrue(responses.startsWith(DiagramServer.DIAGRAM + "1\n" + write(creditcard) + DiagramServer.END + '\n'));
+    assertTrue(responses.contains(DiagramServer.ERROR + "2\n" + StackOverflowError.class.getName()));
+    assertFalse(responses.contains(DiagramServer.DIAGRAM + "100\n"));
+  }
+
+  static String write(String bom) throws Exception {
+    StringWriter text = new StringWriter();
+    new ClassDiagramWriter(new PrintWriter(text)).writeModel(new BomParser().read(new StringReader(bom)));
+    return text.toString();
+  }
+
+  static String read(String name) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        DocumentPipelineTest.class.getClassLoader().getResourceAsStream(folder + name), StandardCharsets.UTF_8))) {
+      return reader.lines().collect(Collectors.joining("\n"));
+    }
+  }
+}
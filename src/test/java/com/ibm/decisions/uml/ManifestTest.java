@@ -0,0 +1,45 @@
+package com.ibm.decisions.uml;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * Manifest test: a diagram is up to date until the BOM, the options or the output change.
+ */
+public class ManifestTest {
+
+  @Test
+  public void testUpToDate() throws Exception {
+    Path dir = Files.createTempDirectory("manifest");
+    Path bom = dir.resolve("model.bom");
+    Path output = dir.resolve("model.puml");
+    byte[] content = "package p;\npublic class A {}\n".getBytes(StandardCharsets.UTF_8);
+    Files.write(bom, content);
+
+    Manifest manifest = new Manifest();
+    assertFalse(manifest.isUpToDate(bom, output, "options"));
+    Files.write(output, new byte[0]);
+    manifest.update(bom, content, output, "options");
+    assertTrue(manifest.isUpToDate(bom, output, "options"));
+    assertFalse(manifest.isUpToDate(bom, output, "other options"));
+    assertFalse(manifest.isUpToDate(bom, dir.resolve("other.puml"), "options"));
+
+    Path file = dir.resolve("manifest.txt");
+    manifest.save(file);
+    Manifest loaded = Manifest.load(file);
+    assertTrue(loaded.isUpToDate(bom, output, "options"));
+    assertTrue(loaded.isUpToDate(bom, content, output, "options"));
+
+    byte[] changed = "package p;\npublic class B {}\n".getBytes(StandardCharsets.UTF_8);
+    Files.write(bom, changed);
+    assertFalse(loaded.isUpToDate(bom, changed, output, "options"));
+
+    Files.delete(output);
+    assertFalse(loaded.isUpToDate(bom, content, output, "options"));
+  }
+}
@@ -0,0 +1,86 @@
+package com.ibm.decisions.uml;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Mapped reader test: the characters cut by the end of a region or of a chunk are still decoded.
+ */
+public class MappedReaderTest {
+
+  @Test
+  public void testRegions() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; ++i)
+      text.append("public class Caf\u00e9").append(i).append(" { } // \u20ac \ud83d\ude00\n");
+    Path file = Files.createTempFile("mapped", ".bom");
+    Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+    for (long regionSize : new long[]{5, 7, 4096, MappedReader.REGION_SIZE}) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        assertEquals(text.toString(), readAll(new MappedReader(channel, 0, regionSize)));
+      }
+    }
+    try (Reader reader = MappedReader.open(file)) {
+      assertEquals(text.toString(), readAll(reader));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSingleChars() throws Exception {
+    String text = "a\ud83d\ude00b\ud83d\ude00\ud83d\ude00";
+    Path file = Files.createTempFile("mapped", ".bom");
+    Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+
+    for (long regionSize : new long[]{3, MappedReader.REGION_SIZE}) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        // a supplementary character never fits in the single char left by the caller
+        Reader reader = new MappedReader(channel, 0, regionSize);
+        StringBuilder chars = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1)
+          chars.append((char) c);
+        assertEquals(text, chars.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    Path file = Files.createTempFile("mapped", ".bom");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      assertEquals(-1, new MappedReader(channel, 0).read(new char[16], 0, 16));
+    }
+  }
+
+  @Test
+  public void testMalformed() throws Exception {
+    Path file = Files.createTempFile("mapped", ".bom");
+    Files.write(file, new byte[]{'a', (byte) 0xff, 'b'});
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      readAll(new MappedReader(channel, 0));
+      fail();
+    } catch (MalformedInputException e) {
+      // expected
+    }
+  }
+
+  static String readAll(Reader reader) throws IOException {
+    StringBuilder text = new StringBuilder();
+    char[] buffer = new char[100];
+    int count;
+    while ((count = reader.read(buffer, 0, buffer.length)) != -1)
+      text.append(buffer, 0, count);
+    return text.toString();
+  }
+}
@@ -0,0 +1,81 @@
+package com.ibm.decisions.uml;
+
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.BomParserTest;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.ModelSnapshot;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Snapshot test: a model read back from its snapshot gives the same diagram, and a
+ * snapshot is only used for the content it was written from.
+ */
+public class SnapshotCacheTest {
+
+  @Test
+  public void testSnapshot() throws Exception {
+    Path dir = Files.createTempDirectory("snapshot");
+    String[] names = {"loanvalidation.bom", "dsi-creditcard.bom", "operator.bom", "wrappers.bom"};
+    for (String name : names) {
+      DiagramModel model = BomParserTest.read(name);
+      Path file = dir.resolve(name + SnapshotCache.SNAPSHOT_EXTENSION);
+      ModelSnapshot.write(model, "key", file);
+      DiagramModel snapshot = ModelSnapshot.read(file, "key");
+      assertNotNull(snapshot);
+      assertEquals(BomParserTest.write(model), BomParserTest.write(snapshot));
+      assertNull(ModelSnapshot.read(file, "other key"));
+
+      byte[] bytes = Files.readAllBytes(file);
+      Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+      assertNull(ModelSnapshot.read(file, "key"));
+    }
+  }
+
+  @Test
+  public void testDamagedSnapshot() throws Exception {
+    Path file = Files.createTempDirectory("snapshot").resolve("model" + SnapshotCache.SNAPSHOT_EXTENSION);
+    ModelSnapshot.write(BomParserTest.read("loanvalidation.bom"), "key", file);
+    byte[] bytes = Files.readAllBytes(file);
+    for (int length = 0; length < bytes.length; length += 7) {
+      Files.write(file, Arrays.copyOf(bytes, length));
+      assertNull(ModelSnapshot.read(file, "key"));
+    }
+    // the length of the key, then the number of strings
+    for (int offset : new int[]{8, 15}) {
+      for (int length : new int[]{-1, Integer.MIN_VALUE, Integer.MAX_VALUE, bytes.length}) {
+        byte[] damaged = bytes.clone();
+        ByteBuffer.wrap(damaged).putInt(offset, length);
+        Files.write(file, damaged);
+        assertNull(ModelSnapshot.read(file, "key"));
+      }
+    }
+  }
+
+  @Test
+  public void testCache() throws Exception {
+    Path dir = Files.createTempDirectory("snapshot");
+    Path bom = dir.resolve("model.bom");
+    byte[] content = "package p;\npublic class A {\n  public p.B b;\n}\npublic class B {}\n".getBytes(StandardCharsets.UTF_8);
+    Files.write(bom, content);
+
+    SnapshotCache cache = new SnapshotCache(new BomParser(), "native");
+    Path snapshot = SnapshotCache.getSnapshotPath(bom);
+    assertEquals("model.bom.snapshot", snapshot.getFileName().toString());
+    DiagramModel model = cache.read(bom);
+    assertTrue(Files.exists(snapshot));
+    assertEquals(BomParserTest.write(model), BomParserTest.write(cache.read(bom)));
+
+    byte[] changed = "package p;\npublic class C {}\n".getBytes(StandardCharsets.UTF_8);
+    Files.write(bom, changed);
+    assertNotNull(cache.read(bom).getType("p.C"));
+    assertNull(new SnapshotCache(new BomParser(), "odm").read(bom, content).getType("p.C"));
+  }
+}
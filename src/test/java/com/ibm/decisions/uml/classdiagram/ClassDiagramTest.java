@@ -21,6 +21,11 @@
 **/
 package com.ibm.decisions.uml.classdiagram;
 
+import com.ibm.decisions.uml.generator.BomGenerator;
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.DiagramType;
+import com.ibm.decisions.uml.model.ObjectModelConverter;
 import ilog.rules.bom.IlrObjectModel;
 import ilog.rules.bom.dynamic.IlrDynamicObjectModel;
 import ilog.rules.bom.mutable.IlrMutableObjectModel;
@@ -33,6 +38,7 @@ import java.io.*;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.*;
 
 /**
  * Class diagram writer test, currently only testing that the writing doesn't end in an exception.
@@ -68,6 +74,176 @@ public class ClassDiagramTest {
 
   }
 
+  @Test
+  public void testStreaming() throws Exception {
+    String[] names = {"loanvalidation.bom", "dsi-creditcard.bom", "operator.bom", "wrappers.bom"};
+    for (String name : names) {
+      IlrObjectModel bom = readBOM("com/ibm/decisions/uml/classdiagram/" + name);
+      assertEquals(writeModel(bom, false), writeModel(bom, true));
+
+      // the streaming mode only converts the types up front, with the same ids
+      DiagramModel converted = ObjectModelConverter.convert(bom);
+      ObjectModelConverter converter = ObjectModelConverter.convertTypes(bom);
+      assertEquals(converted.getTypes().size(), converter.getModel().getTypes().size());
+      for (DiagramType type : converter.getModel().getTypes()) {
+        assertEquals(converted.getType(type.getId()).getFullyQualifiedName(), type.getFullyQualifiedName());
+        assertEquals(0, type.getAttributes().length + type.getMethods().length);
+        converter.convertMembers(type);
+        assertEquals(converted.getType(type.getId()).getAttributes().length, type.getAttributes().length);
+        assertEquals(converted.getType(type.getId()).getMethods().length, type.getMethods().length);
+        converter.releaseMembers(type);
+      }
+    }
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    String[] names = {"loanvalidation.bom", "dsi-creditcard.bom", "operator.bom", "wrappers.bom"};
+    for (String name : names) {
+      IlrObjectModel bom = readBOM("com/ibm/decisions/uml/classdiagram/" + name);
+      assertEquals(writeModel(bom, false), writeModel(ObjectModelConverter.convert(bom), 4));
+    }
+    DiagramModel generated = new BomParser().read(new StringReader(
+        new BomGenerator().seed(5).classes(2000).operators(2).dsi(20, 20).generate()));
+    assertEquals(writeModel(generated, 1), writeModel(generated, 4));
+  }
+
+  @Test
+  public void testStreamingLargeModel() throws Exception {
+    // chains of 10 classes extending the next one, and some classes extending a class of the next package
+    int packages = 20;
+    int classes = 200;
+    StringBuilder text = new StringBuilder();
+    for (int p = 0; p < packages; ++p) {
+      text.append("package p").append(p).append(";\n\n");
+      for (int c = 0; c < classes; ++c) {
+        text.append("public class C").append(c);
+        if (c % 10 != 9)
+          text.append(" extends p").append(p).append(".C").append(c + 1);
+        else if (c % 100 == 9 && p < packages - 1)
+          text.append(" extends p").append(p + 1).append(".C").append(c);
+        text.append(" {\n  public int value;\n  public p").append((p + 1) % packages)
+            .append(".C").append(c).append(" next;\n}\n\n");
+      }
+    }
+    DiagramModel model = new BomParser().read(new StringReader(text.toString()));
+    int bound = getRetainedBound(model);
+    // the chains of a package and the classes extending the next packages, less than a package
+    assertTrue(bound < getLargestPackage(model));
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+    writer.setStreaming(true);
+    writer.writeModel(model);
+    assertTrue(writer.getPeakRetainedClasses() > 0);
+    assertTrue(writer.getPeakRetainedClasses() <= bound);
+
+    IlrDynamicObjectModel bom = new IlrDynamicObjectModel(IlrObjectModel.Kind.BUSINESS);
+    try {
+      new IlrJavaSerializer().readObjectModel(bom, new StringReader(text.toString()));
+    } catch (IlrSyntaxError e) {
+      writeError(e);
+    }
+
+    StringWriter streamed = new StringWriter();
+    writer = new ClassDiagramWriter(new PrintWriter(streamed));
+    writer.setStreaming(true);
+    writer.writeModel(bom);
+    assertEquals(writeModel(bom, false), streamed.toString());
+    assertTrue(writer.getPeakRetainedClasses() <= getRetainedBound(ObjectModelConverter.convert(bom)));
+  }
+
+  static int getLargestPackage(DiagramModel model) {
+    Map<String, Integer> sizes = new HashMap<>();
+    for (DiagramType clazz : model.getTypes()) {
+      if (clazz.getOrder() >= 0)
+        sizes.merge(String.valueOf(clazz.getNamespace()), 1, Integer::sum);
+    }
+    return Collections.max(sizes.values());
+  }
+
+  /**
+   * Returns the bound of the classes retained in streaming mode: the largest number, over
+   * the positions, of superclasses after the position of classes up to the position, plus
+   * the superclasses in no package.
+   */
+  static int getRetainedBound(DiagramModel model) {
+    // the position from which each superclass after its subclasses is retained
+    Map<DiagramType, Integer> starts = new HashMap<>();
+    Set<DiagramType> outside = new HashSet<>();
+    for (DiagramType clazz : model.getTypes()) {
+      if (clazz.getOrder() < 0)
+        continue;
+      Deque<DiagramType> superclasses = new ArrayDeque<>(Arrays.asList(clazz.getSuperclasses()));
+      Set<DiagramType> visited = new HashSet<>();
+      while (!superclasses.isEmpty()) {
+        DiagramType superClass = superclasses.pop();
+        if (!visited.add(superClass))
+          continue;
+        if (superClass.getOrder() < 0)
+          outside.add(superClass);
+        else if (superClass.getOrder() > clazz.getOrder())
+          starts.merge(superClass, clazz.getOrder(), Math::min);
+        superclasses.addAll(Arrays.asList(superClass.getSuperclasses()));
+      }
+    }
+    int[] changes = new int[model.getTypes().size() + 1];
+    for (Map.Entry<DiagramType, Integer> start : starts.entrySet()) {
+      ++changes[start.getValue()];
+      --changes[start.getKey().getOrder()];
+    }
+    int retained = 0;
+    int bound = 0;
+    for (int change : changes) {
+      retained += change;
+      bound = Math.max(bound, retained);
+    }
+    return bound + outside.size();
+  }
+
+
+  @Test
+  public void testDeepHierarchy() throws Exception {
+    // a single chain of classes, each one extending the next one
+    int depth = 50000;
+    StringBuilder text = new StringBuilder("package deep;\n\n");
+    for (int c = 0; c < depth; ++c) {
+      text.append("public class C").append(c);
+      if (c < depth - 1)
+        text.append(" extends deep.C").append(c + 1);
+      text.append(" {\n  public int value;\n}\n\n");
+    }
+    DiagramModel model = new BomParser().read(new StringReader(text.toString()));
+
+    String diagram = writeModel(model, 1);
+    String last = "class C" + (depth - 1) + "{";
+    String first = "class C0{";
+    assertTrue(diagram.indexOf(last) >= 0);
+    assertTrue(diagram.indexOf(last) < diagram.indexOf("class C" + (depth / 2) + "{"));
+    assertTrue(diagram.indexOf("class C" + (depth / 2) + "{") < diagram.indexOf(first));
+    assertEquals(diagram, writeModel(model, 4));
+
+    StringWriter streamed = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(streamed));
+    writer.setStreaming(true);
+    writer.writeModel(model);
+    assertEquals(diagram, streamed.toString());
+  }
+
+  static String writeModel(IlrObjectModel bom, boolean streaming) {
+    StringWriter stringWriter = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(stringWriter));
+    writer.setStreaming(streaming);
+    writer.writeModel(bom);
+    return stringWriter.toString();
+  }
+
+  static String writeModel(DiagramModel bom, int parallelism) {
+    StringWriter stringWriter = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(stringWriter));
+    writer.setParallelism(parallelism);
+    writer.writeModel(bom);
+    return stringWriter.toString();
+  }
+
   public static String getClassDiagramFromBOM(String name) throws IOException {
     IlrObjectModel bom = readBOM(name);
     StringWriter stringWriter = new StringWriter();
@@ -0,0 +1,130 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the rules: the longest namespace pattern decides, the packages leading to an
+ * include pattern are traversed, and the rules of a file apply to the diagram.
+ */
+public class DiagramRulesTest {
+  static final String BOM = "package shop;\n\n"
+      + "public class Order\n{\n"
+      + "    public java.lang.Integer count;\n"
+      + "    public java.math.BigDecimal amount;\n"
+      + "    public shop.internal.Audit audit;\n}\n\n"
+      + "public class Event\n{\n}\n\n"
+      + "public class Payment extends shop.Event\n{\n}\n\n"
+      + "package shop.internal;\n\n"
+      + "public class Audit\n{\n}\n";
+
+  @Test
+  public void testPatterns() {
+    DiagramRules rules = DiagramRules.createDefault();
+    assertFalse(rules.acceptNamespace("java.util"));
+    assertFalse(rules.acceptNamespace("javax.xml"));
+    assertTrue(rules.acceptNamespace("com.acme"));
+    assertTrue(rules.acceptNamespace(null));
+
+    rules.include("java.time");
+    rules.include("com.acme.*");
+    rules.exclude("com.acme.internal");
+    assertTrue(rules.acceptNamespace("java.time.chrono"));
+    assertFalse(rules.acceptNamespace("java.util"));
+    assertTrue(rules.acceptNamespace("com.acme.model"));
+    assertFalse(rules.acceptNamespace("com.acme.internal.audit"));
+    // with include patterns, the namespaces matching none of them are excluded
+    assertFalse(rules.acceptNamespace("org.other"));
+    assertFalse(rules.acceptNamespace("com"));
+    // but the packages leading to an include pattern are traversed
+    assertTrue(rules.acceptPackage("com"));
+    assertFalse(rules.acceptPackage("org"));
+  }
+
+  @Test
+  public void testWrappers() throws Exception {
+    String diagram = write(DiagramRules.createDefault());
+    assertTrue(diagram.contains("count: Integer"));
+    assertFalse(diagram.contains("Order --> Integer"));
+    assertTrue(diagram.contains("class Audit{"));
+  }
+
+  @Test
+  public void testFile() throws Exception {
+    Path file = Files.createTempFile("rules", ".txt");
+    try {
+      Files.write(file, Arrays.asList("# shop rules", "", "exclude shop.internal",
+          "inline java.math.BigDecimal", "stereotype shop.Event Event"), StandardCharsets.UTF_8);
+      DiagramRules rules = DiagramRules.createDefault();
+      rules.load(file);
+      String diagram = write(rules);
+      assertFalse(diagram.contains("class Audit{"));
+      assertTrue(diagram.contains("amount: BigDecimal"));
+      assertTrue(diagram.contains("class Payment<< (V,#ff704d) Event >>{"));
+      assertFalse(diagram.contains("Event <|-- Payment"));
+
+      Files.write(file, Arrays.asList("include shop", "hide shop.Order"), StandardCharsets.UTF_8);
+      try {
+        rules.load(file);
+        fail();
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().endsWith("line 2: unknown rule 'hide shop.Order'"));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testSignature() {
+    DiagramRules rules = DiagramRules.createDefault();
+    rules.include("shop");
+    rules.inline("java.math.BigDecimal");
+    DiagramRules sameRules = DiagramRules.createDefault();
+    sameRules.inline("java.math.BigDecimal");
+    sameRules.include("shop");
+    assertEquals(rules.getSignature(), sameRules.getSignature());
+    assertNotEquals(rules.getSignature(), DiagramRules.createDefault().getSignature());
+  }
+
+  static String write(DiagramRules rules) throws Exception {
+    DiagramModel model = new BomParser().read(new StringReader(BOM));
+    StringWriter text = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(text));
+    writer.setRules(rules);
+    writer.writeModel(model);
+    return text.toString();
+  }
+}
@@ -0,0 +1,129 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.DiagramType;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Diagram sink test: each format is written from the same traversal, and a forked sink
+ * writes the same diagram as a sequential one.
+ */
+public class DiagramSinkTest {
+
+  @Test
+  public void testMermaid() throws Exception {
+    String diagram = write(readModel(), DiagramFormats.MERMAID, 1);
+    assertTrue(diagram.startsWith("classDiagram"));
+    assertTrue(diagram.contains("class Account {"));
+    assertTrue(diagram.contains("<<Entity>>"));
+    assertTrue(diagram.contains("+double balance"));
+    assertTrue(diagram.contains("Account --> Customer : customer"));
+  }
+
+  @Test
+  public void testMermaidIds() throws Exception {
+    DiagramModel model = new BomParser().read(new StringReader("package a;\n\n"
+        + "public class b_c\n{\n    public a_b.c target;\n}\n\n"
+        + "package a_b;\n\npublic class c\n{\n}\n"));
+    DiagramType first = model.getType("a.b_c");
+    DiagramType second = model.getType("a_b.c");
+    Map<DiagramType, String> names = new HashMap<>();
+    names.put(first, first.getFullyQualifiedName());
+    names.put(second, second.getFullyQualifiedName());
+    StringWriter text = new StringWriter();
+    MermaidSink sink = new MermaidSink(new PrintWriter(text));
+    sink.rename(names);
+    new ClassDiagramWriter(sink).writeModel(model);
+    String diagram = text.toString();
+    // the names that only differ by '.' and '_' get different ids
+    assertTrue(diagram.contains("class a_db__c[\"a.b_c\"]"));
+    assertTrue(diagram.contains("class a__b_dc[\"a_b.c\"]"));
+    assertTrue(diagram.contains("a_db__c --> a__b_dc : target"));
+  }
+
+  @Test
+  public void testDot() throws Exception {
+    String diagram = write(readModel(), DiagramFormats.DOT, 1);
+    assertTrue(diagram.startsWith("digraph ClassDiagram {"));
+    assertTrue(diagram.contains("\"Account\" [label=\"{\\<\\<Entity\\>\\>\\nAccount|balance : double\\l"));
+    assertTrue(diagram.contains("\"Customer\" -> \"Account\" [arrowhead=vee, label=\"accounts\", headlabel=\"*\"];"));
+    assertTrue(diagram.trim().endsWith("}"));
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    String diagram = write(readModel(), DiagramFormats.JSON, 1);
+    assertTrue(diagram.startsWith("{\"nodes\": ["));
+    assertTrue(diagram.contains("{\"name\": \"creditcard.Account\", \"label\": \"Account\", \"kind\": \"class\", \"stereotype\": \"Entity\""));
+    assertTrue(diagram.contains("{\"kind\": \"relation\", \"from\": \"creditcard.Customer\", \"to\": \"creditcard.Account\", \"name\": \"accounts\""));
+    assertTrue(diagram.trim().endsWith("]}"));
+  }
+
+  @Test
+  public void testComposite() throws Exception {
+    DiagramModel model = readModel();
+    StringWriter plantUml = new StringWriter();
+    StringWriter json = new StringWriter();
+    new ClassDiagramWriter(new CompositeSink(new PlantUmlSink(new PrintWriter(plantUml)), new JsonSink(new PrintWriter(json))))
+        .writeModel(model);
+    assertEquals(write(model, DiagramFormats.PLANTUML, 1), plantUml.toString());
+    assertEquals(write(model, DiagramFormats.JSON, 1), json.toString());
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    DiagramModel model = readModel();
+    for (String format : new String[]{DiagramFormats.PLANTUML, DiagramFormats.MERMAID, DiagramFormats.DOT, DiagramFormats.JSON})
+      assertEquals(format, write(model, format, 1), write(model, format, 4));
+  }
+
+  private static String write(DiagramModel model, String format, int parallelism) {
+    StringWriter text = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(DiagramFormats.createSink(format, new PrintWriter(text)));
+    writer.setParallelism(parallelism);
+    writer.writeModel(model);
+    return text.toString();
+  }
+
+  private static DiagramModel readModel() throws Exception {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        DiagramSinkTest.class.getClassLoader().getResourceAsStream("com/ibm/decisions/uml/classdiagram/dsi-creditcard.bom"), StandardCharsets.UTF_8))) {
+      String bom = reader.lines().collect(Collectors.joining("\n"));
+      return new BomParser().read(new StringReader(bom));
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fragment cache test: the text of a class is reused by another model with the same class,
+ * from memory or from the directory of the cache, and the diagram is unchanged.
+ */
+public class FragmentCacheTest {
+
+  @Test
+  public void testSharedClasses() throws Exception {
+    String bom = ModelDiffTest.readBOM("com/ibm/decisions/uml/classdiagram/dsi-creditcard.bom");
+    DiagramModel model = new BomParser().read(new StringReader(bom));
+    FragmentCache cache = new FragmentCache(100);
+
+    String expected = write(model, null, 1);
+    assertEquals(expected, write(model, cache, 1));
+    assertEquals(0, cache.getHits());
+    assertEquals(8, cache.getMisses());
+    assertEquals(expected, write(new BomParser().read(new StringReader(bom)), cache, 1));
+    assertEquals(8, cache.getHits());
+    assertEquals(expected, write(model, cache, 4));
+    assertEquals(16, cache.getHits());
+
+    // only the modified and the added classes are written again
+    DiagramModel changed = new BomParser().read(new StringReader(ModelDiffTest.changeBOM(bom)));
+    assertEquals(write(changed, null, 1), write(changed, cache, 1));
+    assertEquals(16 + 7, cache.getHits());
+    assertEquals(8 + 2, cache.getMisses());
+  }
+
+  @Test
+  public void testAmbiguousNames() throws Exception {
+    String bom = "package a;\n\n"
+        + "public class Customer\n{\n    public a.Address address;\n}\n\n"
+        + "public class Address\n{\n}\n";
+    String otherBom = bom + "\npackage b;\n\npublic class Customer\n{\n}\n";
+    FragmentCache cache = new FragmentCache(100);
+    write(new BomParser().read(new StringReader(bom)), cache, 1);
+
+    // the same classes are named differently when another model makes their name ambiguous
+    DiagramModel other = new BomParser().read(new StringReader(otherBom));
+    String diagram = write(other, cache, 1);
+    assertEquals(write(other, null, 1), diagram);
+    assertTrue(diagram.contains("a.Customer --> Address"));
+  }
+
+  @Test
+  public void testEviction() {
+    FragmentCache cache = new FragmentCache(2);
+    cache.put("a.A", 1, "A");
+    cache.put("a.B", 2, "B");
+    assertEquals("A", cache.get("a.A", 1));
+    cache.put("a.C", 3, "C");
+    assertEquals(2, cache.size());
+    assertNull(cache.get("a.B", 2));
+    assertEquals("A", cache.get("a.A", 1));
+    assertEquals("C", cache.get("a.C", 3));
+    // a fragment of another class with the same key is not reused
+    assertNull(cache.get("a.D", 3));
+  }
+
+  @Test
+  public void testDirectory() throws Exception {
+    Path dir = Files.createTempDirectory("fragments");
+    String bom = ModelDiffTest.readBOM("com/ibm/decisions/uml/classdiagram/dsi-creditcard.bom");
+    DiagramModel model = new BomParser().read(new StringReader(bom));
+    String expected = write(model, new FragmentCache(1, dir), 1);
+
+    FragmentCache cache = new FragmentCache(1, dir);
+    assertEquals(expected, write(model, cache, 1));
+    assertEquals(8, cache.getHits());
+    assertEquals(0, cache.getMisses());
+  }
+
+  private static String write(DiagramModel model, FragmentCache cache, int parallelism) {
+    StringWriter text = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(text));
+    writer.setFragmentCache(cache);
+    writer.setParallelism(parallelism);
+    writer.writeModel(model);
+    return text.toString();
+  }
+}
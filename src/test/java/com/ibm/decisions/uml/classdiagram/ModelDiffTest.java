@@ -0,0 +1,140 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.DiagramType;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Model diff test: the changed classes are found by their signatures, and only they and
+ * the declarations of their neighbours are written.
+ */
+public class ModelDiffTest {
+
+  @Test
+  public void testCompare() throws Exception {
+    String bom = readBOM("com/ibm/decisions/uml/classdiagram/dsi-creditcard.bom");
+    DiagramModel oldModel = new BomParser().read(new StringReader(bom));
+    DiagramModel newModel = new BomParser().read(new StringReader(changeBOM(bom)));
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+
+    ModelDiff diff = writer.compare(oldModel, newModel);
+    assertEquals(Collections.singletonList("creditcard.Card"), names(diff.getAdded()));
+    assertEquals(Collections.emptyList(), names(diff.getRemoved()));
+    assertEquals(Collections.singletonList("creditcard.Account"), names(diff.getModified()));
+
+    ModelDiff reverse = writer.compare(newModel, oldModel);
+    assertEquals(Collections.emptyList(), names(reverse.getAdded()));
+    assertEquals(Collections.singletonList("creditcard.Card"), names(reverse.getRemoved()));
+    assertEquals(Collections.singletonList("creditcard.Account"), names(reverse.getModified()));
+
+    assertTrue(writer.compare(oldModel, new BomParser().read(new StringReader(bom))).isEmpty());
+  }
+
+  @Test
+  public void testWriteDiff() throws Exception {
+    String bom = readBOM("com/ibm/decisions/uml/classdiagram/dsi-creditcard.bom");
+    DiagramModel oldModel = new BomParser().read(new StringReader(bom));
+    DiagramModel newModel = new BomParser().read(new StringReader(changeBOM(bom)));
+
+    StringWriter text = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(text));
+    writer.writeDiff(writer.compare(oldModel, newModel));
+    String diagram = text.toString();
+    assertTrue(diagram.contains("class Card " + ClassDiagramWriter.ADDED_COLOR + "{"));
+    assertTrue(diagram.contains("class Account<< (N,#b3ffd9) Entity >> " + ClassDiagramWriter.MODIFIED_COLOR + "{"));
+    assertTrue(diagram.contains("balance: int"));
+    // the neighbours are declared with their links to the changed classes, without their blocks
+    assertTrue(diagram.contains("class Customer" + System.lineSeparator()));
+    assertFalse(diagram.contains("class Customer<<"));
+    assertTrue(diagram.contains("AuthorizationResponse --> Account : account"));
+    assertFalse(diagram.contains("Merchant"));
+    assertTrue(diagram.contains(">added</back>: 1"));
+
+    text = new StringWriter();
+    writer = new ClassDiagramWriter(new PrintWriter(text));
+    writer.writeDiff(writer.compare(newModel, oldModel));
+    assertTrue(text.toString().contains("class Card " + ClassDiagramWriter.REMOVED_COLOR + "{"));
+  }
+
+  @Test
+  public void testLegend() throws Exception {
+    String bom = readBOM("com/ibm/decisions/uml/classdiagram/dsi-creditcard.bom");
+    DiagramModel oldModel = new BomParser().read(new StringReader(bom));
+    DiagramModel newModel = new BomParser().read(new StringReader(changeBOM(bom)));
+    String[] legends = {"note \"added (" + ClassDiagramWriter.ADDED_COLOR + "): 1",
+        "<td bgcolor=\"" + ClassDiagramWriter.ADDED_COLOR + "\">added: 1</td>",
+        "\"legend\": [{\"label\": \"added\", \"color\": \"" + ClassDiagramWriter.ADDED_COLOR + "\", \"count\": 1}"};
+    String[] formats = {DiagramFormats.MERMAID, DiagramFormats.DOT, DiagramFormats.JSON};
+    for (int i = 0; i < formats.length; ++i) {
+      StringWriter text = new StringWriter();
+      ClassDiagramWriter writer = new ClassDiagramWriter(DiagramFormats.createSink(formats[i], new PrintWriter(text)));
+      writer.writeDiff(writer.compare(oldModel, newModel));
+      assertTrue(formats[i], text.toString().contains(legends[i]));
+    }
+  }
+
+  @Test
+  public void testMovedClass() throws Exception {
+    String address = "public class Address\n{\n}\n\n";
+    DiagramModel oldModel = new BomParser().read(new StringReader("package a;\n\n" + address
+        + "public class Customer\n{\n    public a.Address address;\n}\n"));
+    DiagramModel newModel = new BomParser().read(new StringReader("package a;\n\n" + address
+        + "package b;\n\npublic class Customer\n{\n    public a.Address address;\n}\n"));
+
+    StringWriter text = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(text));
+    writer.writeDiff(writer.compare(oldModel, newModel));
+    String diagram = text.toString();
+    // the removed class is qualified, so that it is not merged with the added one
+    assertTrue(diagram.contains("class Customer " + ClassDiagramWriter.ADDED_COLOR + "{"));
+    assertTrue(diagram.contains("class a.Customer " + ClassDiagramWriter.REMOVED_COLOR + "{"));
+    assertTrue(diagram.contains("Customer --> Address : address"));
+    assertTrue(diagram.contains("a.Customer --> Address : address"));
+  }
+
+  static String changeBOM(String bom) {
+    assertTrue(bom.contains("public double balance"));
+    return bom.replace("public double balance", "public int balance")
+        + "\npublic class Card\n{\n    public creditcard.Account account;\n}\n";
+  }
+
+  static String readBOM(String name) {
+    return new BufferedReader(ClassDiagramTest.getReader(name)).lines().collect(Collectors.joining("\n"));
+  }
+
+  static List<String> names(List<DiagramType> types) {
+    return types.stream().map(DiagramType::getFullyQualifiedName).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,141 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.PartitionWriter;
+import com.ibm.decisions.uml.generator.BomGenerator;
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.DiagramType;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Partitioned diagrams test: each class is written in the diagram of its partition only,
+ * and the classes of other partitions are declared as stubs.
+ */
+public class PartitionTest {
+
+  @Test
+  public void testPartitions() throws Exception {
+    DiagramModel model = new BomParser().read(new StringReader(
+        new BomGenerator().seed(3).classes(100).classesPerPackage(40).generate()));
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+    DiagramPartitioning partitioning = writer.partition(model, 25);
+
+    int classes = 0;
+    int partitioned = 0;
+    for (DiagramType clazz : model.getTypes()) {
+      if (partitioning.getPartition(clazz) != null)
+        ++partitioned;
+    }
+    for (DiagramPartition partition : partitioning.getPartitions()) {
+      assertTrue(partition.getClasses().size() <= 25);
+      classes += partition.getClasses().size();
+      String diagram = write(partitioning, partition);
+      for (DiagramType clazz : model.getTypes()) {
+        DiagramPartition other = partitioning.getPartition(clazz);
+        if (other == partition)
+          assertTrue(isDeclared(diagram, clazz));
+        else if (other != null)
+          assertFalse(isDeclared(diagram, clazz));
+      }
+    }
+    assertEquals(partitioned, classes);
+    assertTrue(classes >= 100);
+
+    boolean stubs = false;
+    for (DiagramPartition partition : partitioning.getPartitions())
+      stubs |= write(partitioning, partition).contains(" << (R,#dddddd) ");
+    assertTrue(stubs);
+  }
+
+  @Test
+  public void testPartitionWriter() throws Exception {
+    DiagramModel model = new BomParser().read(new StringReader(
+        new BomGenerator().seed(3).classes(100).classesPerPackage(40).generate()));
+    Path dir = Files.createTempDirectory("partition");
+    List<Path> files = new PartitionWriter(dir, 0, 2).write(model);
+    assertEquals(dir.resolve("index.puml"), files.get(0));
+    String index = new String(Files.readAllBytes(files.get(0)), StandardCharsets.UTF_8);
+    for (Path file : files.subList(1, files.size())) {
+      String name = file.getFileName().toString();
+      assertTrue(index.contains("[[" + name + "]]"));
+    }
+  }
+
+  @Test
+  public void testUniqueNames() throws Exception {
+    DiagramModel model = new BomParser().read(new StringReader(
+        "public class A {}\n"
+            + "package index;\npublic class B {}\n"
+            + "package default;\npublic class C {}\n"));
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+    DiagramPartitioning partitioning = writer.partition(model, 0);
+    assertEquals(3, partitioning.getPartitions().size());
+    Set<String> names = new HashSet<>();
+    for (DiagramPartition partition : partitioning.getPartitions())
+      assertTrue(names.add(partition.getName()));
+    assertFalse(names.contains(DiagramPartitioning.INDEX));
+
+    partitioning = new DiagramPartitioning(model);
+    assertEquals("a-1", partitioning.addPartition("a-1").getName());
+    assertEquals("a-2", partitioning.addPartition("a-2").getName());
+    assertEquals("a-2_2", partitioning.addPartition("a-2").getName());
+    assertEquals("Index_2", partitioning.addPartition("Index").getName());
+  }
+
+  @Test
+  public void testMermaidIndex() throws Exception {
+    DiagramModel model = new BomParser().read(new StringReader(
+        new BomGenerator().seed(3).classes(100).classesPerPackage(40).generate()));
+    DiagramPartitioning partitioning = new ClassDiagramWriter(new PrintWriter(new StringWriter())).partition(model, 25);
+    StringWriter text = new StringWriter();
+    new ClassDiagramWriter(new MermaidSink(new PrintWriter(text))).writeIndex(partitioning, ".md");
+    String index = text.toString();
+    assertTrue(index.startsWith("classDiagram"));
+    for (DiagramPartition partition : partitioning.getPartitions())
+      assertTrue(index.contains("link P" + partition.getIndex() + " \"" + partition.getName() + ".md\""));
+    assertTrue(index.contains(" ..> P"));
+  }
+
+  static boolean isDeclared(String diagram, DiagramType clazz) {
+    return diagram.contains("class " + clazz.getName() + "{") || diagram.contains("enum " + clazz.getName() + "{");
+  }
+
+  static String write(DiagramPartitioning partitioning, DiagramPartition partition) {
+    StringWriter text = new StringWriter();
+    new ClassDiagramWriter(new PrintWriter(text)).writePartition(partitioning, partition, ".svg");
+    return text.toString();
+  }
+}
@@ -0,0 +1,116 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.BomParserTest;
+import com.ibm.decisions.uml.model.DiagramModel;
+import com.ibm.decisions.uml.model.DiagramType;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Relation index test: the focused diagrams only hold the classes around the focus class,
+ * following the links in both directions.
+ */
+public class RelationIndexTest {
+
+  @Test
+  public void testNeighbourhood() throws Exception {
+    DiagramModel model = BomParserTest.read("dsi-creditcard.bom");
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+    RelationIndex index = writer.indexRelations(model);
+    DiagramType account = model.getType("creditcard.Account");
+
+    assertEquals(types(model, "creditcard.Customer"), index.getOutgoing(account));
+    assertEquals(types(model, "creditcard.Account"), index.getNeighbourhood(account, 0));
+    assertEquals(types(model, "creditcard.Account", "creditcard.AuthorizationResponse", "creditcard.Customer",
+        "creditcard.Transaction"), index.getNeighbourhood(account, 1));
+    assertTrue(index.getNeighbourhood(account, 2).contains(model.getType("creditcard.Merchant")));
+  }
+
+  @Test
+  public void testFocus() throws Exception {
+    DiagramModel model = BomParserTest.read("dsi-creditcard.bom");
+    ClassDiagramWriter indexer = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+    RelationIndex index = indexer.indexRelations(model);
+
+    StringWriter text = new StringWriter();
+    new ClassDiagramWriter(new PrintWriter(text)).writeFocus(index, model.getType("creditcard.Transaction"), 1);
+    String diagram = text.toString();
+    assertTrue(diagram.contains("class Transaction<< (V,#ff704d) Event >>{"));
+    assertTrue(diagram.contains("Transaction --> Merchant : merchant"));
+    assertTrue(diagram.contains("class Merchant<< (N,#b3ffd9) Entity >>{"));
+    assertFalse(diagram.contains("class Customer"));
+  }
+
+  @Test
+  public void testStreamingFocus() throws Exception {
+    DiagramModel model = new BomParser().read(new StringReader("package a;\n\n"
+        + "public class A\n{\n    public int x;\n}\n\n"
+        + "public class B extends a.A\n{\n}\n"));
+    RelationIndex index = new ClassDiagramWriter(new PrintWriter(new StringWriter())).indexRelations(model);
+    String expected = null;
+    for (boolean streaming : new boolean[]{false, true}) {
+      StringWriter text = new StringWriter();
+      ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(text));
+      writer.setStreaming(streaming);
+      writer.writeFocus(index, model.getType("a.B"), 1);
+      String diagram = text.toString();
+      // the superclass of order 0 is written once
+      assertEquals(diagram.indexOf("class A{"), diagram.lastIndexOf("class A{"));
+      if (expected == null)
+        expected = diagram;
+      assertEquals(expected, diagram);
+    }
+  }
+
+  @Test
+  public void testRepeatedFocus() throws Exception {
+    DiagramModel model = BomParserTest.read("dsi-creditcard.bom");
+    RelationIndex index = new ClassDiagramWriter(new PrintWriter(new StringWriter())).indexRelations(model);
+    StringWriter text = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(text));
+    for (String name : new String[]{"creditcard.Transaction", "creditcard.Account", "creditcard.Transaction"}) {
+      text.getBuffer().setLength(0);
+      writer.writeFocus(index, model.getType(name), 1);
+      // a query on a reused writer gives the diagram of a new one
+      StringWriter expected = new StringWriter();
+      new ClassDiagramWriter(new PrintWriter(expected)).writeFocus(index, model.getType(name), 1);
+      assertEquals(expected.toString(), text.toString());
+    }
+  }
+
+  static List<DiagramType> types(DiagramModel model, String... names) {
+    List<DiagramType> types = new ArrayList<>();
+    for (String name : names)
+      types.add(model.getType(name));
+    return types;
+  }
+}
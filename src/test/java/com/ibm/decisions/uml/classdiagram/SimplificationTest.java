@@ -0,0 +1,125 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.classdiagram;
+
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.DiagramModel;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.EnumSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Layout budget test: the simplifications are applied in their order until the estimated
+ * cost fits the budget, and they are listed in the header of the diagram.
+ */
+public class SimplificationTest {
+  static final String BOM = "package shop;\n\n"
+      + "public class Order\n{\n"
+      + "    public int count;\n"
+      + "    public java.util.List items domain 0,* class shop.Item;\n"
+      + "    public Order();\n"
+      + "    public int total();\n}\n\n"
+      + "public class Item\n{\n"
+      + "    public java.lang.String name;\n}\n\n"
+      + "public class Tools\n{\n"
+      + "    public static shop.Order last;\n"
+      + "    public static int twice(int value);\n}\n";
+
+  @Test
+  public void testEstimate() throws Exception {
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+    writer.setLayoutBudget(Long.MAX_VALUE);
+    writer.writeModel(readModel());
+    LayoutCost cost = writer.getLayoutCost();
+    assertEquals(3, cost.getNodes());
+    assertEquals(2, cost.getEdges());
+    assertEquals(1, cost.getNotes());
+    assertEquals(5, cost.getLines());
+    assertEquals(3 * LayoutCost.NODE_COST + 2 * LayoutCost.EDGE_COST + LayoutCost.NOTE_COST + 5 * LayoutCost.LINE_COST,
+        cost.estimate(EnumSet.noneOf(Simplification.class)));
+    assertTrue(writer.getSimplifications().isEmpty());
+  }
+
+  @Test
+  public void testBudget() throws Exception {
+    DiagramModel model = readModel();
+    String full = write(model, 0);
+    assertEquals(full, write(model, Long.MAX_VALUE));
+    assertTrue(full.contains("int total()"));
+    assertTrue(full.contains("note on link:"));
+
+    // hiding the 3 methods is enough
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(new StringWriter()));
+    writer.setLayoutBudget(Long.MAX_VALUE);
+    writer.writeModel(model);
+    long budget = writer.getLayoutCost().estimate(EnumSet.of(Simplification.HIDE_METHODS));
+    String diagram = write(model, budget);
+    assertTrue(diagram.startsWith("' simplified for a layout budget of " + budget));
+    assertTrue(diagram.contains("methods hidden"));
+    assertFalse(diagram.contains("attributes collapsed"));
+    assertFalse(diagram.contains("int total()"));
+    assertTrue(diagram.contains("count: int"));
+    assertTrue(diagram.contains("note on link:"));
+
+    diagram = write(model, 1);
+    assertTrue(diagram.contains("methods hidden, inlined attributes collapsed, notes on links dropped, utility classes folded"));
+    assertFalse(diagram.contains("count: int"));
+    assertFalse(diagram.contains("note on link:"));
+    assertTrue(diagram.contains("Order --> \"*\" Item : items"));
+    // the utility class is only declared, without its relation
+    assertTrue(diagram.contains("class Tools << (U,#99ccff) Utilities >>" + System.lineSeparator()));
+    assertFalse(diagram.contains("Tools --> Order"));
+  }
+
+  @Test
+  public void testFormats() throws Exception {
+    DiagramModel model = readModel();
+    StringWriter text = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new JsonSink(new PrintWriter(text)));
+    writer.setLayoutBudget(1);
+    writer.writeModel(model);
+    assertTrue(text.toString().startsWith("{\"comments\": [\"simplified for a layout budget of 1"));
+
+    text = new StringWriter();
+    writer = new ClassDiagramWriter(new MermaidSink(new PrintWriter(text)));
+    writer.setLayoutBudget(1);
+    writer.writeModel(model);
+    assertTrue(text.toString().startsWith("classDiagram" + System.lineSeparator() + "%% simplified"));
+  }
+
+  private static String write(DiagramModel model, long budget) {
+    StringWriter text = new StringWriter();
+    ClassDiagramWriter writer = new ClassDiagramWriter(new PrintWriter(text));
+    writer.setLayoutBudget(budget);
+    writer.writeModel(model);
+    return text.toString();
+  }
+
+  private static DiagramModel readModel() throws Exception {
+    return new BomParser().read(new StringReader(BOM));
+  }
+}
@@ -0,0 +1,46 @@
+package com.ibm.decisions.uml.generator;
+
+import com.ibm.decisions.uml.Command;
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import ilog.rules.bom.IlrObjectModel;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Generator test: the generated BOMs are deterministic and can be read and written.
+ */
+public class BomGeneratorTest {
+
+  @Test
+  public void testDeterministic() throws Exception {
+    String bom = new BomGenerator().seed(7).classes(300).generate();
+    assertEquals(bom, new BomGenerator().seed(7).classes(300).generate());
+    assertNotEquals(bom, new BomGenerator().seed(8).classes(300).generate());
+  }
+
+  @Test
+  public void testBounds() throws Exception {
+    String bom = new BomGenerator().classes(10).classesPerPackage(0).depth(-1).generate();
+    assertTrue(bom.contains("package gen.p9;"));
+    assertFalse(bom.contains("extends"));
+  }
+
+  @Test
+  public void testReadAndWrite() throws Exception {
+    String bom = new BomGenerator().seed(1).classes(500).classesPerPackage(50).depth(4)
+        .operators(9).enums(5, 4).dsi(30, 30).generate();
+    IlrObjectModel model = Command.readBOM(new StringReader(bom));
+    StringWriter diagram = new StringWriter();
+    new ClassDiagramWriter(new PrintWriter(diagram)).writeModel(model);
+    String text = diagram.toString();
+    assertTrue(text.contains("class C499"));
+    assertTrue(text.contains("enum E4"));
+    assertTrue(text.contains("C0 <|-- C1"));
+    assertTrue(text.contains("operator +"));
+  }
+}
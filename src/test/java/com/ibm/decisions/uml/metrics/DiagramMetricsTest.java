@@ -0,0 +1,104 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.metrics;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramTest;
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import com.ibm.decisions.uml.model.BomParser;
+import com.ibm.decisions.uml.model.BomParserTest;
+import com.ibm.decisions.uml.model.DiagramModel;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Metrics test: recording the metrics does not change the diagram, and the counts match
+ * the written diagram.
+ */
+public class DiagramMetricsTest {
+
+  @Test
+  public void testMetrics() throws Exception {
+    DiagramMetrics metrics = new DiagramMetrics();
+    DiagramModel model = metrics.instrument(new BomParser())
+        .read(ClassDiagramTest.getReader("com/ibm/decisions/uml/classdiagram/dsi-creditcard.bom"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintWriter writer = new PrintWriter(new OutputStreamWriter(metrics.countBytes(bytes), StandardCharsets.UTF_8));
+    ClassDiagramWriter classDiagramWriter = new ClassDiagramWriter(writer);
+    classDiagramWriter.setMetrics(metrics);
+    classDiagramWriter.writeModel(model);
+    writer.flush();
+    metrics.addBom();
+
+    String diagram = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    assertEquals(BomParserTest.write(model), diagram);
+    assertEquals(bytes.size(), metrics.getBytesWritten());
+    assertEquals(1, metrics.getBomCount());
+
+    assertEquals(count(diagram, "{\n"), metrics.getClassCount());
+    assertEquals(metrics.getAttributeCount(), metrics.getInlinedAttributeCount() + metrics.getRelationCount());
+    assertTrue(metrics.getRelationCount() > 0);
+    long histogramCount = 0;
+    for (long count : metrics.getRenderTimeHistogram())
+      histogramCount += count;
+    assertEquals(metrics.getClassCount(), histogramCount);
+    assertEquals(Math.min(DiagramMetrics.SLOWEST_CLASSES, metrics.getClassCount()), metrics.getSlowestClasses().length);
+    assertTrue(metrics.getPeakHeapBytes() > 0);
+
+    String json = metrics.toJson();
+    assertTrue(json.contains("\"classes\": " + metrics.getClassCount()));
+    assertTrue(json.contains("\"bytesWritten\": " + bytes.size()));
+    assertTrue(json.contains("\"slowestClasses\": [{\"class\": \"creditcard."));
+  }
+
+  @Test
+  public void testSlowestClasses() {
+    DiagramMetrics metrics = new DiagramMetrics();
+    for (int i = 1; i <= 20; ++i)
+      metrics.addClass("C" + i, i * 1000000L, 0, 0, 0, 0);
+    metrics.addClass("q\"uote", 500, 0, 0, 0, 0);
+    String[] slowest = metrics.getSlowestClasses();
+    assertEquals(DiagramMetrics.SLOWEST_CLASSES, slowest.length);
+    assertEquals("C20: 20000", slowest[0]);
+    assertEquals("C11: 11000", slowest[9]);
+    // 500 ns is less than 1 microsecond, 1 ms falls in the 512 to 1024 microseconds bucket
+    assertEquals(1, metrics.getRenderTimeHistogram()[0]);
+    assertEquals(1, metrics.getRenderTimeHistogram()[10]);
+
+    StringBuilder json = new StringBuilder();
+    DiagramMetrics.appendString(json, "q\"uote\\\n");
+    assertEquals("\"q\\\"uote\\\\\\u000a\"", json.toString());
+  }
+
+  static int count(String text, String part) {
+    int count = 0;
+    for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1))
+      ++count;
+    return count;
+  }
+}
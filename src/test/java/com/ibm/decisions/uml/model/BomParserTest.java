@@ -0,0 +1,129 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+import com.ibm.decisions.uml.classdiagram.ClassDiagramTest;
+import com.ibm.decisions.uml.classdiagram.ClassDiagramWriter;
+import ilog.rules.bom.IlrObjectModel;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the native BOM parser, which does not need the ODM serializer.
+ */
+public class BomParserTest {
+
+  @Test
+  public void testLoanValidation() throws Exception {
+    DiagramModel model = read("loanvalidation.bom");
+    DiagramType ssn = model.getType("loan.Borrower.SSN");
+    assertNotNull(ssn);
+    assertEquals("loan.Borrower", ssn.getNamespace());
+    assertEquals("SSN", ssn.getName());
+
+    DiagramType report = model.getType("loan.Report");
+    DiagramAttribute messages = null;
+    for (DiagramAttribute attribute : report.getAttributes()) {
+      if (attribute.getName().equals("messages"))
+        messages = attribute;
+    }
+    assertNotNull(messages);
+    assertTrue(messages.is(DiagramAttribute.COLLECTION));
+    assertEquals(0, messages.getMin());
+    assertEquals(DiagramAttribute.INFINITE, messages.getMax());
+    assertNull(messages.getElementType());
+    assertTrue(model.getType("loan.DateUtil").is(DiagramType.UTILITY));
+  }
+
+  @Test
+  public void testOperators() throws Exception {
+    DiagramModel model = read("operator.bom");
+    DiagramType complex = model.getType("Complex");
+    boolean plus = false;
+    for (DiagramMethod method : complex.getMethods()) {
+      if (method.getName().equals("+"))
+        plus = method.is(DiagramMethod.OPERATOR) && method.is(DiagramMethod.STATIC);
+    }
+    assertTrue(plus);
+  }
+
+  @Test
+  public void testDSICreditcard() throws Exception {
+    DiagramModel model = read("dsi-creditcard.bom");
+    assertTrue(model.getType("creditcard.AccountStatus").is(DiagramType.ENUM));
+    assertFalse(model.getType("creditcard.Account").is(DiagramType.ENUM));
+    String diagram = write(model);
+    assertTrue(diagram.contains("Customer --> \"*\" Account : accounts"));
+  }
+
+  @Test
+  public void testWrappers() throws Exception {
+    assertFalse(write(read("wrappers.bom")).contains("-->"));
+  }
+
+  @Test
+  public void testOdmParity() throws Exception {
+    // short names, class order, nested classes and packages are the same as with the ODM serializer
+    String[] names = {"loanvalidation.bom", "dsi-creditcard.bom", "operator.bom", "wrappers.bom"};
+    for (String name : names) {
+      IlrObjectModel bom = ClassDiagramTest.readBOM("com/ibm/decisions/uml/classdiagram/" + name);
+      assertEquals(name, write(ObjectModelConverter.convert(bom)), write(read(name)));
+    }
+  }
+
+  @Test
+  public void testSyntaxError() throws Exception {
+    try {
+      new BomParser().read(new StringReader("package a;\npublic class A {\n  public int x\n}\n"));
+      fail();
+    } catch (BomSyntaxException e) {
+      assertEquals("line 4, column 1: ; expected, found '}'", e.getErrorMessages()[0]);
+    }
+    try {
+      new BomParser().read(new StringReader("package a;\npublic class A {\n  public java.util.List x domain 1.5,* class A;\n}\n"));
+      fail();
+    } catch (BomSyntaxException e) {
+      assertEquals("line 3, column 34: integer expected, found '1.5'", e.getErrorMessages()[0]);
+    }
+    try {
+      new BomParser().read(new StringReader("package a;\npublic class A {\n  public java.util.List x domain 0,99999999999 class A;\n}\n"));
+      fail();
+    } catch (BomSyntaxException e) {
+      assertEquals("line 3, column 36: integer expected, found '99999999999'", e.getErrorMessages()[0]);
+    }
+  }
+
+  public static DiagramModel read(String name) throws Exception {
+    return new BomParser().read(ClassDiagramTest.getReader("com/ibm/decisions/uml/classdiagram/" + name));
+  }
+
+  public static String write(DiagramModel model) {
+    StringWriter stringWriter = new StringWriter();
+    new ClassDiagramWriter(new PrintWriter(stringWriter)).writeModel(model);
+    return stringWriter.toString();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+* Copyright IBM Corp. 2018
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+**/
+package com.ibm.decisions.uml.model;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the merge of several models: each class is kept once, with its types shared
+ * by all the models, and the classes defined differently are reported.
+ */
+public class ModelMergerTest {
+  static final String ORDERS = "package shop;\n\n"
+      + "public class Order\n{\n"
+      + "    public shop.Customer customer;\n"
+      + "    public java.util.List items domain 0,* class shop.Item;\n}\n\n"
+      + "public class Item\n{\n"
+      + "    public java.lang.String name;\n}\n";
+  static final String CUSTOMERS = "package shop;\n\n"
+      + "public class Customer\n{\n"
+      + "    public java.lang.String name;\n}\n\n"
+      + "public class Item\n{\n"
+      + "    public java.lang.String name;\n}\n";
+  static final String BILLING = "package billing;\n\n"
+      + "public class Invoice\n{\n"
+      + "    public shop.Order order;\n}\n\n"
+      + "public class Item\n{\n"
+      + "    public double amount;\n}\n";
+
+  @Test
+  public void testMerge() throws Exception {
+    ModelMerger merger = new ModelMerger();
+    merger.add("orders.bom", parse(ORDERS));
+    merger.add("customers.bom", parse(CUSTOMERS));
+    DiagramModel model = merger.getModel();
+    assertEquals(2, merger.getModelCount());
+    assertEquals(3, merger.getClassCount());
+    assertTrue(merger.getConflicts().isEmpty());
+
+    DiagramType order = model.getType("shop.Order");
+    DiagramType customer = model.getType("shop.Customer");
+    // the missing reference of the first model is replaced by the class of the second one
+    assertFalse(customer.is(DiagramType.MISSING_REFERENCE));
+    assertSame(customer, order.getAttributes()[0].getType());
+    assertSame(model.getType("shop.Item"), order.getAttributes()[1].getElementType());
+    // the string type and the attribute names are shared by both models
+    assertSame(model.getType("shop.Item").getAttributes()[0].getType(), customer.getAttributes()[0].getType());
+    assertSame(model.getType("shop.Item").getAttributes()[0].getName(), customer.getAttributes()[0].getName());
+
+    DiagramPackage shop = model.getDefaultPackage().getNestedPackages()[0];
+    assertEquals(3, shop.getClasses().length);
+    assertEquals("Customer", shop.getClasses()[0].getName());
+    assertEquals(0, shop.getClasses()[0].getOrder());
+    assertEquals(2, order.getOrder());
+  }
+
+  @Test
+  public void testConflicts() throws Exception {
+    ModelMerger merger = new ModelMerger();
+    merger.add("orders.bom", parse(ORDERS));
+    merger.add("billing.bom", parse(BILLING));
+    merger.add("other.bom", parse(ORDERS.replace("java.lang.String name", "int name")));
+    DiagramModel model = merger.getModel();
+    assertEquals(1, merger.getConflicts().size());
+    ModelMerger.Conflict conflict = merger.getConflicts().get(0);
+    assertEquals("shop.Item", conflict.getFullyQualifiedName());
+    assertEquals("orders.bom", conflict.getSource());
+    assertEquals("other.bom", conflict.getOtherSource());
+    // the first definition is kept
+    assertTrue(model.getType("shop.Item").getAttributes()[0].getType().is(DiagramType.STRING));
+    // the simple names shared by two models are no longer ambiguous
+    assertEquals("shop.Item", model.getType("shop.Item").getName());
+    assertEquals("billing.Item", model.getType("billing.Item").getName());
+    assertEquals("Order", model.getType("shop.Order").getName());
+    assertSame(model.getType("shop.Order"), model.getType("billing.Invoice").getAttributes()[0].getType());
+    assertEquals(2, model.getDefaultPackage().getNestedPackages().length);
+    assertEquals("billing", model.getDefaultPackage().getNestedPackages()[0].getName());
+  }
+
+  static DiagramModel parse(String bom) throws Exception {
+    return new BomParser().read(new StringReader(bom));
+  }
+}